@@ -0,0 +1,113 @@
+package benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import util.LatencyCsvScanner;
+import util.LatencyHistogram;
+
+/**
+ * Streaming vs memory-mapped parallel analysis of a latency CSV, as done by StatisticsGenerator.
+ *
+ * Writes a CSV in CSVWriter's format with --rows rows (20 rooms, 90% TEXT, log-normal-ish latencies) unless --file
+ * already exists, then reads it with LatencyCsvScanner.readStreaming and/or readMapped and reports rows per second and
+ * the resulting percentiles; when both modes run, their histograms are checked to be identical. Run each mode once to
+ * warm the page cache first, or drop caches between runs, so both read from the same place.
+ *
+ * Run: java -cp client-benchmark/target/benchmarks.jar benchmark.CsvScanHarness --rows=50000000
+ * Options: --rows (50000000), --file (results/csvscan/latency.csv), --mode (both|stream|mmap, both),
+ *          --parallelism (available processors)
+ */
+public class CsvScanHarness {
+
+  private static final String[] TYPES = {"TEXT", "JOIN", "LEAVE"};
+
+  public static void main(String[] args) throws IOException {
+    HarnessArgs options = HarnessArgs.parse(args, "rows", "file", "mode", "parallelism");
+    long rows = options.getLong("rows", 50_000_000L);
+    Path file = Paths.get(options.get("file", "results/csvscan/latency.csv"));
+    String mode = options.get("mode", "both");
+    int parallelism = options.getInt("parallelism", Runtime.getRuntime().availableProcessors());
+    if (!mode.equals("both") && !mode.equals("stream") && !mode.equals("mmap")) {
+      throw new IllegalArgumentException("Unknown mode " + mode);
+    }
+
+    if (!Files.exists(file)) {
+      long start = System.nanoTime();
+      generate(file, rows);
+      System.out.printf("Generated %,d rows in %.1f s%n", rows, (System.nanoTime() - start) / 1e9);
+    }
+    System.out.println("========== CSV scan harness ==========");
+    System.out.printf("File: %s (%.1f MB), processors: %d%n", file, Files.size(file) / 1e6,
+        Runtime.getRuntime().availableProcessors());
+
+    List<Path> files = Collections.singletonList(file);
+    LatencyCsvScanner.Result streamed = null;
+    LatencyCsvScanner.Result mapped = null;
+    if (!mode.equals("mmap")) {
+      long start = System.nanoTime();
+      streamed = LatencyCsvScanner.readStreaming(files);
+      report("stream", streamed, System.nanoTime() - start);
+    }
+    if (!mode.equals("stream")) {
+      long start = System.nanoTime();
+      mapped = LatencyCsvScanner.readMapped(files, parallelism);
+      report("mmap x" + parallelism, mapped, System.nanoTime() - start);
+    }
+    if (streamed != null && mapped != null) {
+      System.out.println("Histograms identical: " + sameCounts(streamed, mapped));
+    }
+  }
+
+  private static void report(String name, LatencyCsvScanner.Result result, long nanos) {
+    LatencyHistogram h = result.getSnapshot().getTotal();
+    System.out.printf("%-10s %,d rows in %.2f s (%,.0f rows/sec), skipped %d%n", name, result.getRows(), nanos / 1e9,
+        result.getRows() / (nanos / 1e9), result.getSkipped());
+    System.out.printf("%-10s p50: %d  p99: %d  p99.9: %d  max: %d us, %d rooms%n", "", h.getValueAtPercentile(50),
+        h.getValueAtPercentile(99), h.getValueAtPercentile(99.9), h.getMax(), result.getSnapshot().getByRoom().size());
+  }
+
+  private static boolean sameCounts(LatencyCsvScanner.Result a, LatencyCsvScanner.Result b) {
+    LatencyHistogram x = a.getSnapshot().getTotal();
+    LatencyHistogram y = b.getSnapshot().getTotal();
+    for (double p : new double[] {1, 10, 25, 50, 75, 90, 95, 99, 99.9, 99.99, 100}) {
+      if (x.getValueAtPercentile(p) != y.getValueAtPercentile(p)) {
+        return false;
+      }
+    }
+    return a.getRows() == b.getRows() && x.getMean() == y.getMean()
+        && a.getSnapshot().getByRoom().keySet().equals(b.getSnapshot().getByRoom().keySet());
+  }
+
+  private static void generate(Path file, long rows) throws IOException {
+    if (file.getParent() != null) {
+      Files.createDirectories(file.getParent());
+    }
+    Random random = new Random(42);
+    long timestamp = System.currentTimeMillis();
+    StringBuilder line = new StringBuilder(64);
+    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 20)) {
+      out.write("timestamp,messageType,latencyMicros,statusCode,roomId\n".getBytes(StandardCharsets.US_ASCII));
+      for (long i = 0; i < rows; i++) {
+        int t = random.nextInt(100);
+//        Mostly around a millisecond with a long tail
+        long latency = (long) (800 * Math.exp(random.nextGaussian() * 0.8));
+        line.setLength(0);
+        line.append(timestamp + i / 1000).append(',')
+            .append(t < 90 ? TYPES[0] : t < 95 ? TYPES[1] : TYPES[2]).append(',')
+            .append(latency).append(",SUCCESS,")
+            .append(1 + random.nextInt(20)).append('\n');
+        for (int c = 0; c < line.length(); c++) {
+          out.write(line.charAt(c));
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,54 @@
+package benchmark;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command line of the standalone harnesses: every argument is --name=value, and only the names a harness declares
+ * are accepted. Getters return the given default when an option was not passed.
+ */
+final class HarnessArgs {
+
+//  High half of the synthetic message ids the benchmarks and harnesses assign, as ChatClient does per connection
+  static final long CONNECTION_TAG = 0x5eed_cafe_f00d_d00dL;
+
+  private final Map<String, String> values = new HashMap<>();
+
+  private HarnessArgs() {}
+
+  /**
+   * @param names the options the harness understands
+   * @throws IllegalArgumentException on an argument that is not --name=value or names an unknown option
+   */
+  static HarnessArgs parse(String[] args, String... names) {
+    List<String> known = Arrays.asList(names);
+    HarnessArgs res = new HarnessArgs();
+    for (String arg : args) {
+      String[] kv = arg.replaceFirst("^--", "").split("=", 2);
+      if (kv.length != 2) {
+        throw new IllegalArgumentException("Expected --name=value, got " + arg);
+      }
+      if (!known.contains(kv[0])) {
+        throw new IllegalArgumentException("Unknown option --" + kv[0]);
+      }
+      res.values.put(kv[0], kv[1]);
+    }
+    return res;
+  }
+
+  String get(String name, String defaultValue) {
+    return values.getOrDefault(name, defaultValue);
+  }
+
+  int getInt(String name, int defaultValue) {
+    String value = values.get(name);
+    return value == null ? defaultValue : Integer.parseInt(value);
+  }
+
+  long getLong(String name, long defaultValue) {
+    String value = values.get(name);
+    return value == null ? defaultValue : Long.parseLong(value);
+  }
+}
@@ -0,0 +1,106 @@
+package benchmark;
+
+import java.io.File;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import model.LatencyReport;
+import model.MessageType;
+import util.BinaryLatencyLogWriter;
+import util.CSVWriter;
+
+/**
+ * Throughput of the per-message latency log writers, CSVWriter vs BinaryLatencyLogWriter, fed the way ChatClient
+ * feeds them: --producers threads standing in for the ack callbacks build LatencyReports and add them to a shared
+ * LinkedBlockingQueue as fast as they can, while the writer under test drains it to a file.
+ *
+ * Reports the rate the producers achieved, how long the writer needed after the last report was queued, the writer's
+ * overall records/sec and the peak queue depth. A writer that keeps up finishes right after the producers with a
+ * small peak depth; one that does not leaves a backlog that grows with the run and shows up as heap.
+ * --producers=0 queues every report before the writer starts and measures the writer alone.
+ *
+ * Run: java -Xmx2g -cp client-benchmark/target/benchmarks.jar benchmark.LatencyLogHarness --format=binary
+ * Options: --format (csv|binary, binary), --records (5000000), --producers (4), --dir (results/latencylog)
+ */
+public class LatencyLogHarness {
+
+  private static final MessageType[] TYPES = MessageType.values();
+
+  public static void main(String[] args) throws Exception {
+    HarnessArgs options = HarnessArgs.parse(args, "format", "records", "producers", "dir");
+    String format = options.get("format", "binary");
+    int records = options.getInt("records", 5_000_000);
+    int producers = options.getInt("producers", 4);
+    String dir = options.get("dir", "results/latencylog");
+    if (!format.equals("csv") && !format.equals("binary")) {
+      throw new IllegalArgumentException("Unknown format " + format);
+    }
+
+    BlockingQueue<LatencyReport> queue = new LinkedBlockingQueue<>();
+    String fileName = "latency." + (format.equals("csv") ? "csv" : "bin");
+    Runnable writer = format.equals("csv") ? new CSVWriter(queue, dir, fileName)
+        : new BinaryLatencyLogWriter(queue, dir, fileName);
+    Thread writerThread = new Thread(writer, "log-writer");
+
+    AtomicLong peakDepth = new AtomicLong();
+    Thread sampler = new Thread(() -> {
+      while (!Thread.currentThread().isInterrupted()) {
+        peakDepth.accumulateAndGet(queue.size(), Math::max);
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+      }
+    }, "depth-sampler");
+    sampler.setDaemon(true);
+
+    AtomicLong next = new AtomicLong();
+    CountDownLatch produced = new CountDownLatch(producers);
+    long wallBase = System.currentTimeMillis();
+    int total = records;
+    if (producers == 0) {
+      for (long i = 0; i < total; i++) {
+        queue.add(report(i, wallBase));
+      }
+    }
+    long start = System.nanoTime();
+    writerThread.start();
+    sampler.start();
+    for (int p = 0; p < producers; p++) {
+      new Thread(() -> {
+        long i;
+        while ((i = next.getAndIncrement()) < total) {
+          queue.add(report(i, wallBase));
+        }
+        produced.countDown();
+      }, "producer-" + p).start();
+    }
+    produced.await();
+    long producersDone = System.nanoTime();
+    queue.add(LatencyReport.POISON_PILL);
+    writerThread.join();
+    long writerDone = System.nanoTime();
+    sampler.interrupt();
+
+    System.out.println("========== Latency log harness: " + format + " ==========");
+    System.out.println("Records: " + records + ", producers: " + producers + ", processors: "
+        + Runtime.getRuntime().availableProcessors());
+    if (producers > 0) {
+      System.out.printf("Producers: %,.0f reports/sec%n", records / ((producersDone - start) / 1e9));
+    }
+    System.out.printf("Writer: %,.0f records/sec overall, finished %.1f ms after the last report was queued%n",
+        records / ((writerDone - start) / 1e9), (writerDone - producersDone) / 1e6);
+    System.out.printf("Peak queue depth: %,d%n", peakDepth.get());
+    System.out.printf("File: %.1f MB%n", new File(dir, fileName).length() / 1e6);
+  }
+
+//  An ack as ChatClient reports it: 90% TEXT, 20 rooms, 0.5 to 2.5 ms
+  private static LatencyReport report(long i, long wallBase) {
+    long sentNanos = System.nanoTime();
+    LatencyReport report = new LatencyReport(TYPES[i % 10 == 0 ? 1 + (int) (i % 20 / 10) : 0], wallBase + i / 1000,
+        sentNanos, Integer.toString(1 + (int) (i % 20)));
+    report.setReceiveNanos(sentNanos + 1_000 * (500 + i % 2000));
+    report.setStatusCode("SUCCESS");
+    return report;
+  }
+}
@@ -0,0 +1,170 @@
+package benchmark;
+
+import client.ChatClient;
+import client.ConnectionManager;
+import client.WireProtocol;
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import util.LatencyHistogram;
+import util.LatencyRecorder;
+import util.Metrics;
+import util.PayloadPool;
+import util.PhaseExecutor;
+
+/**
+ * End-to-end loopback run: starts the embedded chat server (server-embedded/target/chat-server.jar) in a child JVM on
+ * 127.0.0.1, drives it from this JVM with the load-test client (ConnectionManager, PhaseExecutor, PayloadPool) and
+ * reports throughput and ack latency. Client and server come from the same build, so a server change can be measured
+ * without a deployment.
+ *
+ * The server runs in its own JVM because the server and the client each have a model.ClientMessage and a
+ * codec.BinaryCodec. Server tunables and profiler flags go in --serverOpts, e.g.
+ *   --serverOpts="-Dchat.ack.mode=async -Dchat.server.maxThreads=32 -XX:StartFlightRecording=filename=server.jfr"
+ * The server's PID is printed so a profiler can be attached while the run is in progress; its output goes to
+ * results/loopback/server.log.
+ *
+ * Run: java -cp client-benchmark/target/benchmarks.jar benchmark.LoopbackHarness --threads=32 --messages=200000
+ * Options: --serverJar (server-embedded/target/chat-server.jar), --threads (32), --messages (200000),
+ *          --warmup (20000), --connectionsPerRoom (1), --protocol (json|binary, json), --serverOpts ("")
+ */
+public class LoopbackHarness {
+
+  private static final int ROOMS = 20;
+
+  public static void main(String[] args) throws Exception {
+    HarnessArgs options = HarnessArgs.parse(args, "serverJar", "threads", "messages", "warmup", "connectionsPerRoom",
+        "protocol", "serverOpts");
+    String serverJar = options.get("serverJar", "server-embedded/target/chat-server.jar");
+    int threads = options.getInt("threads", 32);
+    int messages = options.getInt("messages", 200_000);
+    int warmup = options.getInt("warmup", 20_000);
+    int connectionsPerRoom = options.getInt("connectionsPerRoom", 1);
+    WireProtocol protocol = WireProtocol.valueOf(options.get("protocol", "json").toUpperCase());
+    String serverOpts = options.get("serverOpts", "");
+    if (!new File(serverJar).isFile()) {
+      throw new IllegalArgumentException(serverJar + " not found, build it with mvn package first");
+    }
+
+    int port = freePort();
+    Process server = startServer(serverJar, port, serverOpts);
+    try {
+      awaitHealthy(port, server);
+      System.out.println("========== Loopback harness ==========");
+      System.out.println("Server PID " + server.pid() + " on 127.0.0.1:" + port
+          + (serverOpts.isEmpty() ? "" : " with " + serverOpts));
+      System.out.println("Client: " + threads + " threads, " + ROOMS * connectionsPerRoom + " connections, "
+          + protocol + " frames");
+      run(port, threads, messages, warmup, connectionsPerRoom, protocol);
+    } finally {
+//      Graceful stop through the server's shutdown hook
+      server.destroy();
+      if (!server.waitFor(10, TimeUnit.SECONDS)) {
+        server.destroyForcibly();
+      }
+    }
+    System.exit(0);
+  }
+
+  private static void run(int port, int threads, int messages, int warmup, int connectionsPerRoom,
+      WireProtocol protocol) throws URISyntaxException, InterruptedException {
+    ConnectionManager connectionManager = ConnectionManager.getInstance();
+    connectionManager.setServerBaseUri("ws://127.0.0.1:" + port + "/chat/");
+    CountDownLatch connected = new CountDownLatch(ROOMS * connectionsPerRoom);
+    CountDownLatch warmupAcks = new CountDownLatch(warmup);
+    connectionManager.setupConnectionPool(connected, warmupAcks, null, ROOMS, connectionsPerRoom);
+    connectionManager.setProtocol(protocol);
+    connectionManager.setLatencyRecorder(new LatencyRecorder());
+    PayloadPool pool = new PayloadPool(4096);
+    PhaseExecutor phaseExecutor = new PhaseExecutor();
+
+    phaseExecutor.executePhase(threads, warmup, pool);
+    if (!warmupAcks.await(60, TimeUnit.SECONDS)) {
+      System.out.println("Warning: warmup timed out with " + warmupAcks.getCount() + " acks missing");
+    }
+
+    CountDownLatch acks = new CountDownLatch(messages);
+    LatencyRecorder recorder = new LatencyRecorder();
+    for (ChatClient client : connectionManager.getAllClients()) {
+      client.setResponseLatch(acks);
+      client.clearPending();
+      client.setLatencyRecorder(recorder);
+    }
+    long bytesBefore = Metrics.bytesSent.sum();
+    long start = System.nanoTime();
+    phaseExecutor.executePhase(threads, messages, pool);
+    long sendNanos = System.nanoTime() - start;
+    if (!acks.await(300, TimeUnit.SECONDS)) {
+      System.out.println("Warning: run timed out with " + acks.getCount() + " acks missing");
+    }
+    long elapsed = System.nanoTime() - start;
+    connectionManager.shutdownAll();
+
+    LatencyHistogram h = recorder.snapshot().getTotal();
+    System.out.printf("Messages: %,d acked of %,d (%,d bytes sent)%n", h.getTotalCount(), messages,
+        Metrics.bytesSent.sum() - bytesBefore);
+    System.out.printf("Throughput: %,.0f msg/sec acked (send loop done after %.0f ms)%n",
+        h.getTotalCount() / (elapsed / 1e9), sendNanos / 1e6);
+    System.out.printf("Ack latency us  p50: %d  p99: %d  p99.9: %d  max: %d  mean: %.1f%n",
+        h.getValueAtPercentile(50), h.getValueAtPercentile(99), h.getValueAtPercentile(99.9), h.getMax(),
+        h.getMean());
+    System.out.println("Acks lost: " + Metrics.lostAcks.sum() + ", reconnections: " + Metrics.reconnections);
+    if (Metrics.broadcastsReceived.sum() > 0) {
+      System.out.println("Broadcasts received: " + Metrics.broadcastsReceived.sum() + ", out of order: "
+          + Metrics.broadcastsReordered.sum() + ", sequence gaps: " + Metrics.broadcastGaps.sum());
+    }
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+
+  private static Process startServer(String serverJar, int port, String serverOpts) throws IOException {
+    List<String> command = new ArrayList<>();
+    command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+    if (!serverOpts.isBlank()) {
+      command.addAll(Arrays.asList(serverOpts.trim().split("\\s+")));
+    }
+    command.add("-Dchat.server.host=127.0.0.1");
+    command.add("-Dchat.server.port=" + port);
+    command.add("-jar");
+    command.add(serverJar);
+    File log = new File("results/loopback/server.log");
+    log.getParentFile().mkdirs();
+    return new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start();
+  }
+
+//  Polls /chat/health until AppStatusListener reports UP
+  private static void awaitHealthy(int port, Process server) throws IOException, InterruptedException {
+    URL health = new URL("http://127.0.0.1:" + port + "/chat/health");
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+    while (System.nanoTime() < deadline) {
+      if (!server.isAlive()) {
+        throw new IOException("Embedded server exited with " + server.exitValue() + ", see results/loopback/server.log");
+      }
+      try {
+        HttpURLConnection connection = (HttpURLConnection) health.openConnection();
+        if (connection.getResponseCode() == 200
+            && new String(connection.getInputStream().readAllBytes(), StandardCharsets.UTF_8).contains("\"UP\"")) {
+          return;
+        }
+      } catch (IOException e) {
+//        Not listening yet
+      }
+      Thread.sleep(200);
+    }
+    throw new IOException("Embedded server did not become healthy within 30 seconds");
+  }
+}
@@ -0,0 +1,198 @@
+package benchmark;
+
+import codec.BinaryCodec;
+import codec.PayloadTemplate;
+import com.google.gson.Gson;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Instant;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import model.ClientMessage;
+import util.BatchMessageGenerator;
+import util.PayloadPool;
+
+/**
+ * Compares the original message pipeline with {@link PayloadPool}: how fast N sender threads can produce ready-to-send
+ * frames, how many bytes each frame allocates, and how much heap the generator keeps alive.
+ *
+ *   queue  BatchMessageGenerator pre-generates every message into a LinkedBlockingQueue; senders then stamp the id and
+ *          timestamp and serialize (Gson for JSON, BinaryCodec for binary), as ChatClient.sendMsg does
+ *   pool   a pool of pre-encoded templates; senders pick one with ThreadLocalRandom and patch id and timestamp, as
+ *          ChatClient.sendPayload does
+ *
+ * Nothing is sent over the network, so the numbers are the generator's ceiling, not the load test's throughput.
+ *
+ * Run: java -cp client-benchmark/target/benchmarks.jar benchmark.MessageGeneratorHarness --threads=32
+ * Options: --messages (500000), --threads (32), --poolSize (4096), --protocol (json|binary, json)
+ */
+public class MessageGeneratorHarness {
+
+  private final int messages;
+  private final int threads;
+  private final int poolSize;
+  private final boolean binary;
+  private final AtomicLong nextSequence = new AtomicLong(0);
+  private final LongAdder checksum = new LongAdder();
+
+  private MessageGeneratorHarness(int messages, int threads, int poolSize, boolean binary) {
+    this.messages = messages;
+    this.threads = threads;
+    this.poolSize = poolSize;
+    this.binary = binary;
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    HarnessArgs options = HarnessArgs.parse(args, "messages", "threads", "poolSize", "protocol");
+    int messages = options.getInt("messages", 500_000);
+    int threads = options.getInt("threads", 32);
+    int poolSize = options.getInt("poolSize", 4096);
+    String protocol = options.get("protocol", "json");
+    if (!protocol.equals("json") && !protocol.equals("binary")) {
+      throw new IllegalArgumentException("Unknown protocol " + protocol);
+    }
+    MessageGeneratorHarness harness = new MessageGeneratorHarness(messages, threads, poolSize,
+        protocol.equals("binary"));
+    System.out.println("========== Message generator harness: " + messages + " " + protocol + " messages, "
+        + threads + " threads ==========");
+//    Once untimed so both paths run JIT-compiled code
+    harness.runQueue(false);
+    harness.runPool(false);
+    harness.runQueue(true);
+    harness.runPool(true);
+  }
+
+  private void runQueue(boolean report) throws InterruptedException {
+    long heapBefore = usedHeap();
+    BlockingQueue<ClientMessage> queue = new LinkedBlockingQueue<>();
+    long start = System.nanoTime();
+    new BatchMessageGenerator(queue, messages).run();
+    long generateNanos = System.nanoTime() - start;
+    long retained = usedHeap() - heapBefore;
+
+    Gson gson = new Gson();
+    Result send = runSenders(() -> {
+      ClientMessage msg = queue.poll();
+      msg.assignSequence(HarnessArgs.CONNECTION_TAG, nextSequence.getAndIncrement());
+      if (binary) {
+        return BinaryCodec.encode(msg, BinaryCodec.toEpochNanos(Instant.now())).remaining();
+      }
+      msg.setTimestamp(Instant.now().toString());
+      return gson.toJson(msg).length();
+    });
+    if (report) {
+      System.out.println("\n--- queue (pre-generated) ---");
+      System.out.printf("Pre-generation:  %,.0f msg/sec on 1 thread (%.0f ms before the test can start)%n",
+          messages / seconds(generateNanos), generateNanos / 1e6);
+      System.out.printf("Heap retained:   %,.1f MB for %,d queued messages (%,d bytes/message)%n",
+          retained / 1e6, messages, retained / messages);
+      send.print("Sender encode:  ");
+    }
+  }
+
+  private void runPool(boolean report) throws InterruptedException {
+    long heapBefore = usedHeap();
+    long start = System.nanoTime();
+    PayloadPool pool = new PayloadPool(poolSize);
+    long buildNanos = System.nanoTime() - start;
+    long retained = usedHeap() - heapBefore;
+
+    long epochNanos = BinaryCodec.toEpochNanos(Instant.now());
+    Result send = runSenders(() -> {
+      PayloadTemplate template = pool.next();
+      long sequence = nextSequence.getAndIncrement();
+      if (binary) {
+        return template.encodeBinary(HarnessArgs.CONNECTION_TAG, sequence, epochNanos).remaining();
+      }
+      return template.encodeJson(HarnessArgs.CONNECTION_TAG, sequence, System.currentTimeMillis()).length();
+    });
+    if (report) {
+      System.out.println("\n--- pool (pre-encoded templates, generated on demand) ---");
+      System.out.printf("Pool build:      %d templates in %.1f ms%n", pool.size(), buildNanos / 1e6);
+      System.out.printf("Heap retained:   %,.1f MB, independent of message count%n", retained / 1e6);
+      send.print("Generate+encode:");
+    }
+    checksum.add(pool.size());
+  }
+
+  /**
+   * Splits the messages across the sender threads and measures wall time and bytes allocated per message.
+   */
+  private Result runSenders(Frame frame) throws InterruptedException {
+    ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    com.sun.management.ThreadMXBean allocBean = threadBean instanceof com.sun.management.ThreadMXBean
+        ? (com.sun.management.ThreadMXBean) threadBean : null;
+    LongAdder allocated = new LongAdder();
+    CountDownLatch ready = new CountDownLatch(threads);
+    CountDownLatch go = new CountDownLatch(1);
+    Thread[] workers = new Thread[threads];
+    for (int t = 0; t < threads; t++) {
+      int share = messages / threads + (t < messages % threads ? 1 : 0);
+      workers[t] = new Thread(() -> {
+        ready.countDown();
+        try {
+          go.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+        long id = Thread.currentThread().getId();
+        long before = allocBean == null ? 0 : allocBean.getThreadAllocatedBytes(id);
+        long sum = 0;
+        for (int i = 0; i < share; i++) {
+          sum += frame.produce();
+        }
+        if (allocBean != null) {
+          allocated.add(allocBean.getThreadAllocatedBytes(id) - before);
+        }
+        checksum.add(sum);
+      });
+      workers[t].start();
+    }
+    ready.await();
+    long start = System.nanoTime();
+    go.countDown();
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    return new Result(System.nanoTime() - start, allocBean == null ? -1 : allocated.sum());
+  }
+
+  private final class Result {
+    private final long nanos;
+    private final long allocatedBytes;
+
+    Result(long nanos, long allocatedBytes) {
+      this.nanos = nanos;
+      this.allocatedBytes = allocatedBytes;
+    }
+
+    void print(String label) {
+      System.out.printf("%s %,.0f msg/sec on %d threads%n", label, messages / seconds(nanos), threads);
+      if (allocatedBytes >= 0) {
+        System.out.printf("Allocated:       %,d bytes/message on the sender threads%n", allocatedBytes / messages);
+      }
+    }
+  }
+
+  private interface Frame {
+    int produce();
+  }
+
+  private static double seconds(long nanos) {
+    return nanos / 1_000_000_000.0;
+  }
+
+//  Rough live-heap measurement; good enough to compare megabytes against kilobytes
+  private static long usedHeap() throws InterruptedException {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      Thread.sleep(100);
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -0,0 +1,113 @@
+package benchmark;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import model.ClientMessage;
+import model.LatencyReport;
+import model.MessageType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import util.PendingTable;
+
+/**
+ * Pending-message bookkeeping of 32 concurrent senders sharing one connection: the previous
+ * ConcurrentHashMap&lt;String, LatencyReport&gt; keyed by UUID string vs the sequence-keyed {@link PendingTable}.
+ *
+ * Each operation is one send and one ack. Every thread keeps WINDOW messages in flight, so an op tracks a new
+ * message and completes the one sent WINDOW ops earlier. Acked ids are fresh String copies, as Gson hands them over
+ * from the ack frame, so the map pays for hashing them. pendingTableFromId includes parsing the sequence out of that
+ * string (JSON acks) and, on the send side, building the id string from the sequence, which the map variant gets
+ * for free from its prebuilt ids; pendingTable is the binary-ack path, where the sequence arrives as a long.
+ *
+ * Run: java -jar client-benchmark/target/benchmarks.jar PendingTableBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(32)
+@State(Scope.Benchmark)
+public class PendingTableBenchmark {
+
+  private static final int WINDOW = 64;
+  private static final int IDS_PER_THREAD = 4096;
+
+  private ConcurrentHashMap<String, LatencyReport> map;
+  private PendingTable table;
+  private final AtomicLong nextSequence = new AtomicLong(0);
+
+  @Setup(Level.Iteration)
+  public void setup() {
+    map = new ConcurrentHashMap<>();
+    table = new PendingTable(16384);
+  }
+
+  /**
+   * A sender thread's ring of in-flight ids, prebuilt so id generation is not part of the measurement.
+   */
+  @State(Scope.Thread)
+  public static class Sender {
+    final String[] uuids = new String[IDS_PER_THREAD];
+    final long[] sequences = new long[IDS_PER_THREAD];
+    final String[] sequenceIds = new String[IDS_PER_THREAD];
+    int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+      for (int i = 0; i < IDS_PER_THREAD; i++) {
+        uuids[i] = UUID.randomUUID().toString();
+      }
+    }
+
+    int advance() {
+      int i = next;
+      next = (i + 1) & (IDS_PER_THREAD - 1);
+      return i;
+    }
+  }
+
+  @Benchmark
+  public LatencyReport concurrentHashMap(Sender sender) {
+    int i = sender.advance();
+    long now = System.nanoTime();
+    map.put(sender.uuids[i], new LatencyReport(MessageType.TEXT, System.currentTimeMillis(), now, "1"));
+    String acked = new String(sender.uuids[(i - WINDOW) & (IDS_PER_THREAD - 1)]);
+    LatencyReport report = map.remove(acked);
+    if (report != null) {
+      report.setReceiveNanos(now);
+    }
+    return report;
+  }
+
+  @Benchmark
+  public long pendingTable(Sender sender) {
+    int i = sender.advance();
+    long sequence = nextSequence.getAndIncrement();
+    sender.sequences[i] = sequence;
+    table.put(sequence, System.nanoTime());
+    return table.remove(sender.sequences[(i - WINDOW) & (IDS_PER_THREAD - 1)]);
+  }
+
+  @Benchmark
+  public long pendingTableFromId(Sender sender) {
+    int i = sender.advance();
+    long sequence = nextSequence.getAndIncrement();
+    sender.sequenceIds[i] = new UUID(HarnessArgs.CONNECTION_TAG, sequence).toString();
+    table.put(sequence, System.nanoTime());
+    String acked = sender.sequenceIds[(i - WINDOW) & (IDS_PER_THREAD - 1)];
+    return acked == null ? PendingTable.MISSING : table.remove(ClientMessage.sequenceOf(new String(acked)));
+  }
+}
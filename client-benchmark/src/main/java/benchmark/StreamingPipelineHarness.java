@@ -0,0 +1,163 @@
+package benchmark;
+
+import com.google.gson.Gson;
+import java.time.Instant;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import model.ClientMessage;
+import util.BatchMessageGenerator;
+import util.MpmcRingBuffer;
+import util.StreamingMessageGenerator;
+
+/**
+ * Startup-to-first-send time and peak heap of the message pipeline in LoadTestPart2, without a network.
+ *
+ * Modes:
+ *   queue   BatchMessageGenerator fills an unbounded LinkedBlockingQueue with every message, then the senders start
+ *   stream  StreamingMessageGenerator fills a bounded MpmcRingBuffer while the senders drain it
+ *
+ * Senders do what ChatClient.sendMsg does before the socket (assign the id, stamp the time, serialize to JSON) and
+ * then wait --sendMicros to stand in for the network send. Heap is sampled every few milliseconds, so run each mode
+ * in its own JVM with the same -Xmx for comparable peaks.
+ *
+ * Run: java -Xmx1g -cp client-benchmark/target/benchmarks.jar benchmark.StreamingPipelineHarness --mode=stream
+ * Options: --mode (stream), --messages (500000), --senders (32), --generators (1), --ringCapacity (8192),
+ *          --sendMicros (20)
+ */
+public class StreamingPipelineHarness {
+
+  private final int messages;
+  private final int senders;
+  private final int generators;
+  private final int ringCapacity;
+  private final long sendNanos;
+
+  private final AtomicLong nextSequence = new AtomicLong(0);
+  private final AtomicLong firstSendNanos = new AtomicLong(0);
+  private final LongAdder bytes = new LongAdder();
+  private volatile long peakHeap;
+  private volatile boolean sampling = true;
+
+  private StreamingPipelineHarness(int messages, int senders, int generators, int ringCapacity, long sendMicros) {
+    this.messages = messages;
+    this.senders = senders;
+    this.generators = generators;
+    this.ringCapacity = ringCapacity;
+    this.sendNanos = TimeUnit.MICROSECONDS.toNanos(sendMicros);
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    HarnessArgs options = HarnessArgs.parse(args, "mode", "messages", "senders", "generators", "ringCapacity",
+        "sendMicros");
+    String mode = options.get("mode", "stream");
+    int messages = options.getInt("messages", 500_000);
+    int senders = options.getInt("senders", 32);
+    int generators = options.getInt("generators", 1);
+    int ringCapacity = options.getInt("ringCapacity", 8192);
+    long sendMicros = options.getLong("sendMicros", 20);
+    StreamingPipelineHarness harness = new StreamingPipelineHarness(messages, senders, generators, ringCapacity,
+        sendMicros);
+    if (mode.equals("queue")) {
+      harness.runQueue();
+    } else if (mode.equals("stream")) {
+      harness.runStream();
+    } else {
+      throw new IllegalArgumentException("Unknown mode " + mode);
+    }
+  }
+
+  private void runQueue() throws InterruptedException {
+    Thread sampler = startSampler();
+    long start = System.nanoTime();
+    BlockingQueue<ClientMessage> queue = new LinkedBlockingQueue<>();
+//    As in LoadTestPart2: wait for generation to complete before the first send
+    new BatchMessageGenerator(queue, messages).run();
+    runSenders(queue::take);
+    report("queue", start, System.nanoTime(), sampler, "");
+  }
+
+  private void runStream() throws InterruptedException {
+    Thread sampler = startSampler();
+    long start = System.nanoTime();
+    MpmcRingBuffer<ClientMessage> ring = new MpmcRingBuffer<>(ringCapacity);
+    Thread[] producers = new Thread[generators];
+    for (int i = 0; i < generators; i++) {
+      producers[i] = new Thread(new StreamingMessageGenerator(ring,
+          messages / generators + (i < messages % generators ? 1 : 0)), "generator-" + i);
+      producers[i].start();
+    }
+    runSenders(ring::take);
+    for (Thread producer : producers) {
+      producer.join();
+    }
+    report("stream", start, System.nanoTime(), sampler, "Ring capacity: " + ring.capacity()
+        + ", generator stalls (ring full): " + ring.getProducerStalls()
+        + ", sender stalls (ring empty): " + ring.getConsumerStalls());
+  }
+
+  private void runSenders(Take take) throws InterruptedException {
+    CountDownLatch done = new CountDownLatch(senders);
+    for (int t = 0; t < senders; t++) {
+      int share = messages / senders + (t < messages % senders ? 1 : 0);
+      Thread sender = new Thread(() -> {
+        Gson gson = new Gson();
+        try {
+          for (int i = 0; i < share; i++) {
+            ClientMessage msg = take.next();
+            firstSendNanos.compareAndSet(0, System.nanoTime());
+            msg.assignSequence(HarnessArgs.CONNECTION_TAG, nextSequence.getAndIncrement());
+            msg.setTimestamp(Instant.now().toString());
+            bytes.add(gson.toJson(msg).length());
+            if (sendNanos > 0) {
+              LockSupport.parkNanos(sendNanos);
+            }
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } finally {
+          done.countDown();
+        }
+      }, "sender-" + t);
+      sender.start();
+    }
+    done.await();
+  }
+
+  private Thread startSampler() {
+    Runtime runtime = Runtime.getRuntime();
+    Thread sampler = new Thread(() -> {
+      while (sampling) {
+        peakHeap = Math.max(peakHeap, runtime.totalMemory() - runtime.freeMemory());
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(2));
+      }
+    }, "heap-sampler");
+    sampler.setDaemon(true);
+    sampler.start();
+    return sampler;
+  }
+
+  private void report(String mode, long start, long end, Thread sampler, String extra) throws InterruptedException {
+    sampling = false;
+    sampler.join();
+    System.out.println("========== Pipeline harness: " + mode + " ==========");
+    System.out.println("Messages: " + messages + ", senders: " + senders + ", send stand-in: "
+        + TimeUnit.NANOSECONDS.toMicros(sendNanos) + " us");
+    System.out.printf("Startup to first send: %.1f ms%n", (firstSendNanos.get() - start) / 1e6);
+    System.out.printf("Total time: %.1f ms (%,.0f msg/sec)%n", (end - start) / 1e6,
+        messages / ((end - start) / 1e9));
+    System.out.printf("Peak heap used (sampled): %.1f MB%n", peakHeap / 1e6);
+    if (!extra.isEmpty()) {
+      System.out.println(extra);
+    }
+    System.out.println("JSON bytes produced: " + bytes.sum());
+  }
+
+  private interface Take {
+    ClientMessage next() throws InterruptedException;
+  }
+}
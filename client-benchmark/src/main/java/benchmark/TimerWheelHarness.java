@@ -0,0 +1,192 @@
+package benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import util.TimerWheel;
+
+/**
+ * Scale check for the shared {@link TimerWheel}: simulates N clients that keep a retry/reconnect timer pending at all
+ * times, as ChatClient does under a flaky network, and reports live thread count and how late timers fire.
+ *
+ * Each simulated client schedules a timer with a random delay, cancels about one in five before it fires (a retry
+ * that became unnecessary) and reschedules when it fires, until the run ends. One fixed-rate heartbeat runs alongside.
+ *
+ * Modes:
+ *   wheel     all clients share one TimerWheel (current ChatClient behaviour)
+ *   executor  one single-thread ScheduledExecutorService per client (previous behaviour; needs one thread per client)
+ *
+ * Run: java -cp client-benchmark/target/benchmarks.jar benchmark.TimerWheelHarness --clients=10000 --mode=wheel
+ * Options: --clients (10000), --mode (wheel), --seconds (10), --minDelayMs (50), --maxDelayMs (2000)
+ */
+public class TimerWheelHarness {
+
+  private final int clients;
+  private final long seconds;
+  private final int minDelayMs;
+  private final int maxDelayMs;
+
+  private final long[] lateness;
+  private final AtomicInteger samples = new AtomicInteger(0);
+  private final AtomicLong cancels = new AtomicLong(0);
+  private final AtomicLong heartbeats = new AtomicLong(0);
+  private volatile boolean running = true;
+
+  private TimerWheelHarness(int clients, long seconds, int minDelayMs, int maxDelayMs) {
+    this.clients = clients;
+    this.seconds = seconds;
+    this.minDelayMs = minDelayMs;
+    this.maxDelayMs = maxDelayMs;
+//    Upper bound on fires: every client firing at the minimum delay for the whole run
+    long maxFires = (long) clients * (seconds * 1000 / Math.max(1, minDelayMs) + 1);
+    this.lateness = new long[(int) Math.min(Integer.MAX_VALUE - 8, maxFires)];
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    HarnessArgs options = HarnessArgs.parse(args, "clients", "mode", "seconds", "minDelayMs", "maxDelayMs");
+    int clients = options.getInt("clients", 10_000);
+    String mode = options.get("mode", "wheel");
+    long seconds = options.getLong("seconds", 10);
+    int minDelayMs = options.getInt("minDelayMs", 50);
+    int maxDelayMs = options.getInt("maxDelayMs", 2000);
+    TimerWheelHarness harness = new TimerWheelHarness(clients, seconds, minDelayMs, maxDelayMs);
+    if (mode.equals("wheel")) {
+      harness.runWheel();
+    } else if (mode.equals("executor")) {
+      harness.runExecutors();
+    } else {
+      throw new IllegalArgumentException("Unknown mode " + mode);
+    }
+  }
+
+  private void runWheel() throws InterruptedException {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    int baseline = threads.getThreadCount();
+    threads.resetPeakThreadCount();
+    TimerWheel wheel = TimerWheel.shared();
+    TimerWheel.Periodic heartbeat = wheel.scheduleAtFixedRate(heartbeats::incrementAndGet, 1, 1, TimeUnit.SECONDS);
+    for (int i = 0; i < clients; i++) {
+      new WheelClient(wheel).arm();
+    }
+    System.out.println("Scheduled " + clients + " clients on the shared timer wheel (tick "
+        + TimeUnit.NANOSECONDS.toMillis(wheel.getTickNanos()) + " ms)");
+    Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+    running = false;
+    heartbeat.cancel();
+    report("wheel", baseline, threads.getThreadCount(), threads.getPeakThreadCount(), wheel.pendingTimeouts());
+    wheel.stop();
+  }
+
+  private void runExecutors() throws InterruptedException {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    int baseline = threads.getThreadCount();
+    threads.resetPeakThreadCount();
+    ScheduledExecutorService heartbeatScheduler = Executors.newSingleThreadScheduledExecutor();
+    heartbeatScheduler.scheduleAtFixedRate(heartbeats::incrementAndGet, 1, 1, TimeUnit.SECONDS);
+    ExecutorClient[] all = new ExecutorClient[clients];
+    for (int i = 0; i < clients; i++) {
+      all[i] = new ExecutorClient();
+      all[i].arm();
+    }
+    System.out.println("Scheduled " + clients + " clients, one scheduler thread each");
+    Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+    running = false;
+    int live = threads.getThreadCount();
+    int peak = threads.getPeakThreadCount();
+    for (ExecutorClient client : all) {
+      client.scheduler.shutdownNow();
+    }
+    heartbeatScheduler.shutdownNow();
+    report("executor", baseline, live, peak, -1);
+  }
+
+  private long nextDelayMs() {
+    return ThreadLocalRandom.current().nextInt(minDelayMs, maxDelayMs + 1);
+  }
+
+  private void recordFire(long intendedNanos) {
+    int i = samples.getAndIncrement();
+    if (i < lateness.length) {
+      lateness[i] = System.nanoTime() - intendedNanos;
+    }
+  }
+
+  private void report(String mode, int baseline, int live, int peak, long pending) {
+    int n = Math.min(samples.get(), lateness.length);
+    long[] sorted = Arrays.copyOf(lateness, n);
+    Arrays.sort(sorted);
+    System.out.println("========== Timer harness: " + mode + " ==========");
+    System.out.println("Simulated Clients: " + clients);
+    System.out.println("Threads before / during run / peak: " + baseline + " / " + live + " / " + peak);
+    System.out.println("Timers Fired: " + n + ", Cancelled: " + cancels.get() + ", Heartbeats: " + heartbeats.get());
+    if (pending >= 0) {
+      System.out.println("Timeouts Still Pending: " + pending);
+    }
+    if (n > 0) {
+      System.out.printf("Fire Lateness ms  p50: %.2f  p99: %.2f  p99.9: %.2f  max: %.2f%n",
+          millis(sorted[(int) (n * 0.50)]), millis(sorted[(int) (n * 0.99)]),
+          millis(sorted[(int) (n * 0.999)]), millis(sorted[n - 1]));
+    }
+  }
+
+  private static double millis(long nanos) {
+    return nanos / 1_000_000.0;
+  }
+
+  /**
+   * Keeps one timer pending on the shared wheel, like a ChatClient waiting on a retry backoff.
+   */
+  private final class WheelClient {
+    private final TimerWheel wheel;
+
+    WheelClient(TimerWheel wheel) {
+      this.wheel = wheel;
+    }
+
+    void arm() {
+      if (!running) {
+        return;
+      }
+      long delay = nextDelayMs();
+      long intended = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+      TimerWheel.Timeout timeout = wheel.schedule(() -> {
+        recordFire(intended);
+        arm();
+      }, delay, TimeUnit.MILLISECONDS);
+      if (ThreadLocalRandom.current().nextInt(5) == 0 && timeout.cancel()) {
+        cancels.incrementAndGet();
+        arm();
+      }
+    }
+  }
+
+  /**
+   * Same workload on a private single-thread scheduler, the pre-wheel ChatClient setup.
+   */
+  private final class ExecutorClient {
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    void arm() {
+      if (!running) {
+        return;
+      }
+      long delay = nextDelayMs();
+      long intended = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+      ScheduledFuture<?> future = scheduler.schedule(() -> {
+        recordFire(intended);
+        arm();
+      }, delay, TimeUnit.MILLISECONDS);
+      if (ThreadLocalRandom.current().nextInt(5) == 0 && future.cancel(false)) {
+        cancels.incrementAndGet();
+        arm();
+      }
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package benchmark;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import util.PayloadPool;
+import util.ThreadMode;
+
+/**
+ * Platform vs virtual sender threads at high logical concurrency, through the same {@link ThreadMode} executors that
+ * PhaseExecutor uses.
+ *
+ * Each of --senders tasks encodes a pooled message and then blocks for --sendMicros, standing in for a send that
+ * waits on the network, until --messages have been sent in total. Reports throughput, per-send latency percentiles
+ * (encode plus blocking wait, so scheduling delay shows up), live/peak threads and the process RSS from
+ * /proc/self/status. Needs a Java 21 runtime for --mode=virtual.
+ *
+ * Run: java -cp client-benchmark/target/benchmarks.jar benchmark.VirtualThreadHarness --mode=virtual --senders=10000
+ * Options: --mode (virtual), --senders (10000), --messages (1000000), --sendMicros (1000)
+ */
+public class VirtualThreadHarness {
+
+  public static void main(String[] args) throws InterruptedException, IOException {
+    HarnessArgs options = HarnessArgs.parse(args, "mode", "senders", "messages", "sendMicros");
+    ThreadMode mode = ThreadMode.valueOf(options.get("mode", "virtual").toUpperCase());
+    int senders = options.getInt("senders", 10_000);
+    int messages = options.getInt("messages", 1_000_000);
+    long sendMicros = options.getLong("sendMicros", 1000);
+
+    PayloadPool pool = new PayloadPool(4096);
+    long sendNanos = TimeUnit.MICROSECONDS.toNanos(sendMicros);
+    int total = messages;
+    long[] latencies = new long[total];
+    AtomicInteger next = new AtomicInteger(0);
+    LongAdder bytes = new LongAdder();
+    CountDownLatch done = new CountDownLatch(senders);
+    long rssBefore = rssKb("VmRSS");
+
+    ExecutorService executor = mode.newExecutor(senders);
+    long start = System.nanoTime();
+    for (int s = 0; s < senders; s++) {
+      long tag = HarnessArgs.CONNECTION_TAG + s;
+      executor.execute(() -> {
+        long sequence = 0;
+        int i;
+        while ((i = next.getAndIncrement()) < total) {
+          long t0 = System.nanoTime();
+          bytes.add(pool.next().encodeJson(tag, sequence++, System.currentTimeMillis()).length());
+          LockSupport.parkNanos(sendNanos);
+          latencies[i] = System.nanoTime() - t0;
+        }
+        done.countDown();
+      });
+    }
+    done.await();
+    long elapsed = System.nanoTime() - start;
+    int peakThreads = ManagementFactory.getThreadMXBean().getPeakThreadCount();
+    long rssPeak = rssKb("VmHWM");
+    executor.shutdown();
+    executor.awaitTermination(10, TimeUnit.SECONDS);
+
+    Arrays.sort(latencies);
+    System.out.println("========== Virtual thread harness: " + mode + " ==========");
+    System.out.println("Java " + System.getProperty("java.version") + ", senders: " + senders + ", messages: "
+        + messages + ", blocking send stand-in: " + sendMicros + " us");
+    System.out.printf("Throughput: %,.0f msg/sec (ideal %,.0f)%n", messages / (elapsed / 1e9),
+        senders * 1e6 / Math.max(1, sendMicros));
+    System.out.printf("Send latency ms  p50: %.2f  p99: %.2f  p99.9: %.2f  max: %.2f%n",
+        latencies[(int) (messages * 0.50)] / 1e6, latencies[(int) (messages * 0.99)] / 1e6,
+        latencies[(int) (messages * 0.999)] / 1e6, latencies[messages - 1] / 1e6);
+    System.out.println("Peak live platform threads: " + peakThreads);
+    System.out.printf("RSS: %.1f MB before senders, %.1f MB peak%n", rssBefore / 1024.0, rssPeak / 1024.0);
+    System.out.println("JSON bytes produced: " + bytes.sum());
+  }
+
+//  Field from /proc/self/status in kB, -1 when not on Linux
+  private static long rssKb(String field) throws IOException {
+    if (!Files.exists(Paths.get("/proc/self/status"))) {
+      return -1;
+    }
+    for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+      if (line.startsWith(field + ":")) {
+        return Long.parseLong(line.replaceAll("[^0-9]", ""));
+      }
+    }
+    return -1;
+  }
+}
@@ -3,7 +3,6 @@ import java.util.concurrent.TimeoutException;
 import util.MetricsPrintUtil;
 import java.net.URISyntaxException;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -12,7 +11,6 @@ import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import model.ClientMessage;
-import model.LatencyReport;
 import util.BatchMessageGenerator;
 import util.PhaseExecutor;
 
@@ -21,7 +19,6 @@ import util.PhaseExecutor;
  */
 
 public class LoadTestPart1 {
-  public static final ConcurrentHashMap<String, LatencyReport> pendingMessages = new ConcurrentHashMap<>();
   public static final BlockingQueue<ClientMessage> messagesQueue = new LinkedBlockingQueue<>();
   public static final int NUM_OF_MESSAGES = 32_000;
   public static final int NUM_OF_THREADS = 32;
@@ -37,11 +34,11 @@ public class LoadTestPart1 {
     CountDownLatch responseLatch = new CountDownLatch(NUM_OF_MESSAGES);
 
 //    Create connection pools inside Connection Manager
-//    String curURI = "ws://localhost:8080/chat/";
-    String curURI = "ws://16.147.254.83:8080/chat/";
+//    Point the client at another server with -Dchat.server.uri, e.g. ws://localhost:8080/chat/ for server-embedded
+    String curURI = System.getProperty("chat.server.uri", "ws://16.147.254.83:8080/chat/");
     connectionManager.setServerBaseUri(curURI);
     System.out.println("Current server is on " + curURI);
-    connectionManager.setupConnectionPool(wsConnectedLatch, responseLatch, null, pendingMessages, NUM_OF_CHAT_ROOMS);
+    connectionManager.setupConnectionPool(wsConnectedLatch, responseLatch, null, NUM_OF_CHAT_ROOMS);
 
 //     One designated thread for message generation
     ExecutorService backgroundExecutor = Executors.newFixedThreadPool(1);
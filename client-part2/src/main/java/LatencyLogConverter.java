@@ -0,0 +1,24 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import util.BinaryLatencyLog;
+
+/**
+ * Converts a binary latency log written with --latencyLog=binary into the per-message CSV layout, for
+ * StatisticsGenerator or a spreadsheet.
+ *
+ * Usage: LatencyLogConverter results/part2/part2_metrics.bin [results/part2/part2_metrics.csv]
+ */
+public class LatencyLogConverter {
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1 || args.length > 2) {
+      throw new IllegalArgumentException("Usage: LatencyLogConverter log.bin [out.csv]");
+    }
+    Path log = Paths.get(args[0]);
+    Path csv = args.length == 2 ? Paths.get(args[1])
+        : Paths.get(args[0].replaceFirst("\\.bin$", "") + ".csv");
+    long start = System.nanoTime();
+    long records = BinaryLatencyLog.toCsv(log, csv);
+    System.out.printf("Converted %,d records to %s in %.1f ms%n", records, csv, (System.nanoTime() - start) / 1e6);
+  }
+}
@@ -0,0 +1,167 @@
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs LoadTestPart2 across several worker JVMs, on this host or others, when one client JVM runs out of CPU or
+ * ephemeral ports before the server does.
+ *
+ * The coordinator splits the rooms (--rooms, 20 by default), the warmup and total message counts and any open-loop
+ * rate evenly across --workers=N workers, starts the warmup and the main phase on all of them at once and merges their
+ * latency histograms and counters into one report. Thread counts and --connectionsPerRoom apply per worker.
+ *
+ * Every argument it does not recognise is passed on to the workers as LoadTestPart2 options, e.g.
+ *   LoadTestCoordinator --workers=4 64 --generator=pool --rate=40000
+ * With --launch=local (the default) the workers are started as child JVMs on this host with the same classpath and
+ * their output goes to results/part2/worker-N.log. With --launch=none the coordinator only listens on --port and
+ * workers are started by hand, on any host, with: LoadTestPart2 --coordinator=coordinator-host:port
+ */
+public class LoadTestCoordinator {
+  private static final int CONNECT_TIMEOUT_MS = 120_000;
+
+  public static void main(String[] args) throws Exception {
+    int workers = 2;
+    int port = 0;
+    boolean launchLocal = true;
+    List<String> workerArgs = new ArrayList<>();
+    for (String arg : args) {
+      if (arg.startsWith("--workers=")) {
+        workers = Integer.parseInt(arg.substring("--workers=".length()));
+      } else if (arg.startsWith("--port=")) {
+        port = Integer.parseInt(arg.substring("--port=".length()));
+      } else if (arg.startsWith("--launch=")) {
+        String launch = arg.substring("--launch=".length());
+        if (!launch.equals("local") && !launch.equals("none")) {
+          throw new IllegalArgumentException("--launch must be local or none");
+        }
+        launchLocal = launch.equals("local");
+      } else if (arg.startsWith("--coordinator=")) {
+        throw new IllegalArgumentException("--coordinator is set by the coordinator itself");
+      } else {
+        workerArgs.add(arg);
+      }
+    }
+    if (workers < 1) {
+      throw new IllegalArgumentException("--workers must be at least 1");
+    }
+    if (!launchLocal && port == 0) {
+      throw new IllegalArgumentException("--launch=none needs a fixed --port for the workers to connect to");
+    }
+//    Fail here rather than in every worker
+    LoadTestOptions options = LoadTestOptions.parse(workerArgs.toArray(new String[0]),
+        LoadTestPart2.DEFAULT_MAIN_PHASE_THREAD);
+    if (workers > options.getRooms()) {
+      throw new IllegalArgumentException("--workers must not exceed the " + options.getRooms() + " rooms");
+    }
+
+    long overallStartTime = System.currentTimeMillis();
+    List<Process> processes = new ArrayList<>();
+    List<WorkerLink> links = new ArrayList<>();
+    try (ServerSocket server = new ServerSocket(port)) {
+      server.setSoTimeout(CONNECT_TIMEOUT_MS);
+      System.out.println("===========================================");
+      System.out.println("LoadTest coordinator for " + workers + " workers on port " + server.getLocalPort());
+      System.out.println("Worker options: " + String.join(" ", workerArgs));
+      System.out.println("===========================================\n");
+      if (launchLocal) {
+        for (int i = 0; i < workers; i++) {
+          processes.add(launchWorker(i, server.getLocalPort()));
+        }
+      } else {
+        System.out.println("Start each worker with: LoadTestPart2 --coordinator="
+            + InetAddress.getLocalHost().getHostName() + ":" + server.getLocalPort());
+      }
+
+//      Workers get their plan in the order they connect
+      for (int i = 0; i < workers; i++) {
+        WorkerLink link;
+        try {
+          link = new WorkerLink(server.accept());
+        } catch (SocketTimeoutException e) {
+          throw new IOException("Only " + i + " of " + workers + " workers connected within "
+              + CONNECT_TIMEOUT_MS / 1000 + " seconds", e);
+        }
+        WorkerPlan plan = WorkerPlan.partition(i, workers, options.getRooms(), options.getWarmup(),
+            options.getMessages(), workerArgs.toArray(new String[0]));
+        link.sendPlan(plan);
+        links.add(link);
+        System.out.println("Connected " + plan);
+      }
+
+      runPhase(links, WorkerLink.WARMUP);
+      long startupMs = System.currentTimeMillis() - overallStartTime;
+      runPhase(links, WorkerLink.MAIN);
+
+      List<RunSummary> summaries = new ArrayList<>();
+      for (WorkerLink link : links) {
+        summaries.add(link.receiveSummary());
+      }
+      long overallTime = System.currentTimeMillis() - overallStartTime;
+      RunSummary.merge(summaries, overallTime, startupMs).print();
+    } finally {
+      for (WorkerLink link : links) {
+        link.close();
+      }
+      for (Process process : processes) {
+        if (!process.waitFor(30, TimeUnit.SECONDS)) {
+          System.err.println("Worker did not exit, killing it");
+          process.destroyForcibly();
+        }
+      }
+    }
+  }
+
+  /**
+   * Barrier: waits until every worker is ready for the phase, then starts it on all of them.
+   */
+  private static void runPhase(List<WorkerLink> links, String phase) throws IOException {
+    for (WorkerLink link : links) {
+      link.awaitReady(phase);
+    }
+    System.out.println("All workers ready, starting " + phase + " phase");
+    for (WorkerLink link : links) {
+      link.start(phase);
+    }
+  }
+
+  private static Process launchWorker(int index, int port) throws IOException, URISyntaxException {
+    List<String> command = new ArrayList<>();
+    command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+//    Client tunables are system properties; hand them on so every worker runs with the same settings
+    for (String name : System.getProperties().stringPropertyNames()) {
+      if (name.startsWith("chat.")) {
+        command.add("-D" + name + "=" + System.getProperty(name));
+      }
+    }
+    command.add("-cp");
+    command.add(classPath());
+    command.add(LoadTestPart2.class.getName());
+    command.add("--coordinator=127.0.0.1:" + port);
+    File log = new File("results/part2/worker-" + index + ".log");
+    log.getParentFile().mkdirs();
+    System.out.println("Launching worker " + index + ", output in " + log);
+    return new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start();
+  }
+
+//  Under mvn exec:java the project classpath lives in the plugin's class loader, not in java.class.path
+  private static String classPath() throws URISyntaxException {
+    ClassLoader loader = LoadTestCoordinator.class.getClassLoader();
+    if (loader instanceof URLClassLoader) {
+      List<String> entries = new ArrayList<>();
+      for (URL url : ((URLClassLoader) loader).getURLs()) {
+        entries.add(Paths.get(url.toURI()).toString());
+      }
+      return String.join(File.pathSeparator, entries);
+    }
+    return System.getProperty("java.class.path");
+  }
+}
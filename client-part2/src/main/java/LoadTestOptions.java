@@ -0,0 +1,339 @@
+import client.SelectionPolicy;
+import client.WireProtocol;
+import util.ArrivalSchedule;
+import util.ThreadMode;
+
+/**
+ * Command line options for {@link LoadTestPart2}.
+ * The first positional argument is still the main-phase thread count, so existing invocations keep working;
+ * every other option is passed as --name=value, e.g. -Dexec.args="128 --protocol=compare".
+ * Passing --rate switches the main phase to open-loop sending at that rate (msg/sec) with the chosen --shape.
+ * --generator picks how messages are produced, see {@link Generator}.
+ * --threadMode=virtual runs sender tasks and connection handshakes on virtual threads (Java 21 runtime).
+ * --coordinator=host:port runs this JVM as a worker of {@link LoadTestCoordinator}, which sends it the other options.
+ * --latencyLog=binary writes the per-message log in the binary format of util.BinaryLatencyLog instead of CSV.
+ * Passing auto instead of the thread count lets util.ConcurrencyController tune the main-phase senders (closed-loop
+ * only), up to --maxThreads, one --tuneWindow (seconds) at a time.
+ * --rooms, --messages and --warmup replace the default 20 rooms, 500k messages and 32k warmup messages.
+ * --interval=N prints throughput and latency every N seconds of both phases and writes them as a time series; 0 is off.
+ */
+public class LoadTestOptions {
+
+  /**
+   * Which frame format(s) the main phase uses. COMPARE splits the main phase into a JSON half and a binary half.
+   */
+  public enum ProtocolMode {
+    JSON,
+    BINARY,
+    COMPARE
+  }
+
+  /**
+   * How messages are produced. QUEUE pre-generates every message before the test starts; STREAM generates into a
+   * bounded ring while the senders drain it; POOL has the senders patch pre-encoded templates on demand.
+   */
+  public enum Generator {
+    QUEUE,
+    STREAM,
+    POOL
+  }
+
+  private int mainPhaseThreads;
+//  Main-phase sender count found at run time instead of given; mainPhaseThreads is then the upper bound
+  private boolean autoTune = false;
+  private int maxThreads = 256;
+  private double tuneWindowSeconds = 2;
+  private double latencyTolerance = 2;
+  private ProtocolMode protocolMode = ProtocolMode.JSON;
+  private int connectionsPerRoom = 1;
+  private int rooms = LoadTestPart2.NUM_OF_CHAT_ROOMS;
+//  Total messages including the warmup; without --warmup the warmup is capped at a tenth of them
+  private int messages = LoadTestPart2.TOTAL_COUNT;
+  private int warmup = -1;
+  private SelectionPolicy selectionPolicy = SelectionPolicy.ROUND_ROBIN;
+//  Open-loop main phase; rate 0 keeps the original closed-loop run
+  private double rate = 0;
+  private ArrivalSchedule.Shape shape = ArrivalSchedule.Shape.CONSTANT;
+  private int steps = 4;
+  private double stepSeconds = 10;
+  private double rampSeconds = 30;
+//  Per-message CSV, only written for offline analysis; the run summary is always computed in process
+  private boolean csvEnabled = true;
+//  Format of that per-message log: CSV text, or fixed-width binary records (see LatencyLogConverter)
+  private boolean binaryLog = false;
+//  Seconds between util.IntervalReporter lines, 0 for none
+  private double intervalSeconds = 1;
+  private Generator generator = Generator.QUEUE;
+  private int poolSize = 4096;
+  private int ringCapacity = 8192;
+  private int generatorThreads = 1;
+  private ThreadMode threadMode = ThreadMode.PLATFORM;
+//  host:port of the coordinator in worker mode, null for a standalone run
+  private String coordinator;
+  private long scheduleSeed = 42L;
+
+  private LoadTestOptions(int defaultMainPhaseThreads) {
+    this.mainPhaseThreads = defaultMainPhaseThreads;
+  }
+
+  public static LoadTestOptions parse(String[] args, int defaultMainPhaseThreads) {
+    LoadTestOptions options = new LoadTestOptions(defaultMainPhaseThreads);
+    for (String arg : args) {
+      if (arg.equals("auto")) {
+        options.autoTune = true;
+        continue;
+      }
+      if (!arg.startsWith("--")) {
+        options.mainPhaseThreads = Integer.parseInt(arg);
+        continue;
+      }
+      int eq = arg.indexOf('=');
+      if (eq < 0) {
+        throw new IllegalArgumentException("Expected --name=value but got " + arg);
+      }
+      String name = arg.substring(2, eq);
+      String value = arg.substring(eq + 1);
+      switch (name) {
+        case "protocol":
+          options.protocolMode = ProtocolMode.valueOf(value.toUpperCase());
+          break;
+        case "connectionsPerRoom":
+          options.connectionsPerRoom = Integer.parseInt(value);
+          if (options.connectionsPerRoom < 1) {
+            throw new IllegalArgumentException("--connectionsPerRoom must be at least 1");
+          }
+          break;
+        case "rooms":
+          options.rooms = Integer.parseInt(value);
+          if (options.rooms < 1) {
+            throw new IllegalArgumentException("--rooms must be at least 1");
+          }
+          break;
+        case "messages":
+          options.messages = Integer.parseInt(value);
+          break;
+        case "warmup":
+          options.warmup = Integer.parseInt(value);
+          break;
+        case "rate":
+          options.rate = Double.parseDouble(value);
+          if (options.rate <= 0) {
+            throw new IllegalArgumentException("--rate must be positive");
+          }
+          break;
+        case "shape":
+          options.shape = ArrivalSchedule.Shape.valueOf(value.toUpperCase());
+          break;
+        case "steps":
+          options.steps = Integer.parseInt(value);
+          break;
+        case "stepSeconds":
+          options.stepSeconds = Double.parseDouble(value);
+          break;
+        case "rampSeconds":
+          options.rampSeconds = Double.parseDouble(value);
+          break;
+        case "csv":
+          options.csvEnabled = Boolean.parseBoolean(value);
+          break;
+        case "latencyLog":
+          if (!value.equals("csv") && !value.equals("binary")) {
+            throw new IllegalArgumentException("--latencyLog must be csv or binary");
+          }
+          options.binaryLog = value.equals("binary");
+          break;
+        case "maxThreads":
+          options.maxThreads = Integer.parseInt(value);
+          if (options.maxThreads < 1) {
+            throw new IllegalArgumentException("--maxThreads must be at least 1");
+          }
+          break;
+        case "tuneWindow":
+          options.tuneWindowSeconds = Double.parseDouble(value);
+          if (options.tuneWindowSeconds <= 0) {
+            throw new IllegalArgumentException("--tuneWindow must be positive");
+          }
+          break;
+        case "latencyTolerance":
+          options.latencyTolerance = Double.parseDouble(value);
+          if (options.latencyTolerance <= 1) {
+            throw new IllegalArgumentException("--latencyTolerance must be above 1");
+          }
+          break;
+        case "interval":
+          options.intervalSeconds = Double.parseDouble(value);
+          if (options.intervalSeconds < 0) {
+            throw new IllegalArgumentException("--interval must not be negative");
+          }
+          break;
+        case "generator":
+          options.generator = Generator.valueOf(value.toUpperCase());
+          break;
+        case "ringCapacity":
+          options.ringCapacity = Integer.parseInt(value);
+          if (options.ringCapacity < 2) {
+            throw new IllegalArgumentException("--ringCapacity must be at least 2");
+          }
+          break;
+        case "generatorThreads":
+          options.generatorThreads = Integer.parseInt(value);
+          if (options.generatorThreads < 1) {
+            throw new IllegalArgumentException("--generatorThreads must be at least 1");
+          }
+          break;
+        case "poolSize":
+          options.poolSize = Integer.parseInt(value);
+          if (options.poolSize < 1) {
+            throw new IllegalArgumentException("--poolSize must be at least 1");
+          }
+          break;
+        case "threadMode":
+          options.threadMode = ThreadMode.valueOf(value.toUpperCase());
+          if (options.threadMode == ThreadMode.VIRTUAL && !ThreadMode.isVirtualAvailable()) {
+            throw new IllegalArgumentException("--threadMode=virtual needs Java 21 or newer, running on "
+                + System.getProperty("java.version"));
+          }
+          break;
+        case "coordinator":
+          if (value.lastIndexOf(':') < 1) {
+            throw new IllegalArgumentException("--coordinator must be host:port");
+          }
+          options.coordinator = value;
+          break;
+        case "selection":
+          options.selectionPolicy = SelectionPolicy.valueOf(value.toUpperCase().replace('-', '_'));
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown option --" + name);
+      }
+    }
+    if (options.warmup < 0) {
+      options.warmup = Math.min(LoadTestPart2.WARMUP_COUNT, options.messages / 10);
+    }
+    if (options.warmup < 1 || options.warmup >= options.messages) {
+      throw new IllegalArgumentException("Need 1 <= warmup < messages, got " + options.warmup + " of "
+          + options.messages);
+    }
+    if (options.autoTune) {
+      if (options.isOpenLoop()) {
+        throw new IllegalArgumentException("auto thread count needs a closed-loop main phase, drop --rate");
+      }
+      options.mainPhaseThreads = options.maxThreads;
+    }
+    return options;
+  }
+
+  public int getMainPhaseThreads() {
+    return mainPhaseThreads;
+  }
+
+  public boolean isAutoTune() {
+    return autoTune;
+  }
+
+  public long getTuneWindowMs() {
+    return Math.round(tuneWindowSeconds * 1000);
+  }
+
+  public double getLatencyTolerance() {
+    return latencyTolerance;
+  }
+
+  public ProtocolMode getProtocolMode() {
+    return protocolMode;
+  }
+
+  public int getRooms() {
+    return rooms;
+  }
+
+  public int getMessages() {
+    return messages;
+  }
+
+  public int getWarmup() {
+    return warmup;
+  }
+
+  public int getConnectionsPerRoom() {
+    return connectionsPerRoom;
+  }
+
+  public SelectionPolicy getSelectionPolicy() {
+    return selectionPolicy;
+  }
+
+  public boolean isCsvEnabled() {
+    return csvEnabled;
+  }
+
+  public boolean isBinaryLog() {
+    return binaryLog;
+  }
+
+  public long getReportIntervalMs() {
+    return Math.round(intervalSeconds * 1000);
+  }
+
+  public Generator getGenerator() {
+    return generator;
+  }
+
+  public int getPoolSize() {
+    return poolSize;
+  }
+
+  public int getRingCapacity() {
+    return ringCapacity;
+  }
+
+  public int getGeneratorThreads() {
+    return generatorThreads;
+  }
+
+  public ThreadMode getThreadMode() {
+    return threadMode;
+  }
+
+  public String getCoordinator() {
+    return coordinator;
+  }
+
+  /**
+   * Narrows the open-loop load to worker index of workers: each worker sends rate / workers, so together they send
+   * the requested rate, and Poisson workers draw different arrival sequences.
+   */
+  public void partition(int index, int workers) {
+    rate = rate / workers;
+    scheduleSeed = 42L + index;
+  }
+
+  public boolean isOpenLoop() {
+    return rate > 0;
+  }
+
+  /**
+   * Builds the arrival schedule for an open-loop segment of msgCount messages.
+   */
+  public ArrivalSchedule newSchedule(int msgCount) {
+    switch (shape) {
+      case STEP:
+        return ArrivalSchedule.step(rate, steps, stepSeconds, msgCount);
+      case RAMP:
+        return ArrivalSchedule.ramp(rate, rampSeconds, msgCount);
+      case POISSON:
+        return ArrivalSchedule.poisson(rate, msgCount, scheduleSeed);
+      default:
+        return ArrivalSchedule.constant(rate, msgCount);
+    }
+  }
+
+  public String describeRate() {
+    return isOpenLoop() ? "open-loop " + shape + " at " + String.format("%.0f", rate) + " msg/sec" : "closed-loop";
+  }
+
+//  Protocol for the warmup phase and for the (first half of the) main phase
+  public WireProtocol getInitialProtocol() {
+    return protocolMode == ProtocolMode.BINARY ? WireProtocol.BINARY : WireProtocol.JSON;
+  }
+}
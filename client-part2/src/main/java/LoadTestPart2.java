@@ -1,9 +1,19 @@
 import client.ChatClient;
 import client.ConnectionManager;
+import client.WireProtocol;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.io.File;
+import util.BinaryLatencyLogWriter;
 import util.CSVWriter;
+import util.ConcurrencyController;
+import util.IntervalReporter;
+import util.LatencyRecorder;
 import util.Metrics;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -13,18 +23,35 @@ import java.util.concurrent.TimeUnit;
 import model.ClientMessage;
 import model.LatencyReport;
 import util.BatchMessageGenerator;
+import util.MessageGenerator;
+import util.MessageSource;
 import util.MetricsPrintUtil;
+import util.MpmcRingBuffer;
+import util.PayloadPool;
 import util.PhaseExecutor;
+import util.StreamingMessageGenerator;
+import util.TimerCalibration;
 
 /**
  * This class is for Initial Phase and Main Phase: Initial Phase sends out 32_000 messages using 32 threads and Main Phase sends out remaining 468_000 messages using different numbers of threads to test out optimal threads
  * It makes improvement from LoadTest1 by extracting websocket connection function and runPhase function and matrix print out function to make it more friendly for testing experiments
  * It includes CSV Writer to write out Per-Message Metrics
- * It calculates and displays statistical analysis
+ * It calculates and displays statistical analysis from in-process latency histograms; the per-message CSV is optional (--csv=false)
+ * With --protocol=compare the main phase is split into a JSON half and a binary-frame half for a side-by-side comparison
+ * With --connectionsPerRoom=K each room gets K connections, and --selection picks one of them per message
+ * With --threadMode=virtual every sender task and connection handshake runs on its own virtual thread
+ * With --generator=stream messages are generated into a bounded ring while sending, with --generator=pool they are
+ * produced on demand from pre-encoded templates; the default pre-generates all of them into a queue
+ * Every second of both phases (--interval) it prints sends, acks and latency percentiles of that second and writes
+ * them to a time-series CSV next to the per-message log
+ * With auto in place of the thread count the main phase tunes its number of active senders while it runs and
+ * reports the explored curve and the concurrency at the throughput knee
+ * --rooms, --messages and --warmup change the room count and message counts; LoadTestSweep runs a matrix of them
+ * With --coordinator=host:port it runs as one worker of {@link LoadTestCoordinator}: it takes its rooms, message
+ * counts and options from the coordinator, starts each phase when told to and sends its summary back
  */
 
 public class LoadTestPart2 {
-  public static final ConcurrentHashMap<String, LatencyReport> pendingMessages = new ConcurrentHashMap<>();
   public static final BlockingQueue<LatencyReport> resultsQueue = new LinkedBlockingQueue<>();
   public static final BlockingQueue<ClientMessage> messagesQueue = new LinkedBlockingQueue<>();
   public static final int WARMUP_COUNT = 32_000;
@@ -36,53 +63,141 @@ public class LoadTestPart2 {
 
   public static void main(String[] args)
       throws Exception {
+    run(args, true);
+  }
+
+  /**
+   * Runs one complete load test. The connection manager, the Metrics counters, the heap peak and the shared queues
+   * are reset first, so several runs can follow each other in one JVM (see {@link LoadTestSweep}).
+   * @param printSummary false to only return the summary of a standalone run instead of printing it
+   */
+  static RunSummary run(String[] args, boolean printSummary) throws Exception {
 //    Record start time for overall matrix
     long overallStartTime = System.currentTimeMillis();
+    connectionManager.reset();
+    Metrics.reset();
+    resetPeakHeap();
+    resultsQueue.clear();
+    messagesQueue.clear();
 
-//    Extract Input: Allow Thread count override from command line
-    int mainPhaseThreads = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_MAIN_PHASE_THREAD;
+//    Extract Input: Allow Thread count override and options from command line
+    LoadTestOptions options = LoadTestOptions.parse(args, DEFAULT_MAIN_PHASE_THREAD);
+    int warmupCount = options.getWarmup();
+    int totalCount = options.getMessages();
+    int firstRoom = 1;
+    int roomCount = options.getRooms();
+//    In worker mode the coordinator decides this JVM's share of rooms and messages
+    WorkerLink coordinator = null;
+    String logFileBase = "part2_metrics";
+    if (options.getCoordinator() != null) {
+      coordinator = WorkerLink.connect(options.getCoordinator());
+      WorkerPlan plan = coordinator.receivePlan();
+      options = LoadTestOptions.parse(plan.args, DEFAULT_MAIN_PHASE_THREAD);
+      options.partition(plan.index, plan.workers);
+      warmupCount = plan.warmupCount;
+      totalCount = plan.totalCount;
+      firstRoom = plan.firstRoom;
+      roomCount = plan.roomCount;
+      logFileBase = "part2_metrics_worker" + plan.index;
+      System.out.println("Running as distributed " + plan);
+    }
+    MessageGenerator.setRoomRange(firstRoom, roomCount);
+    int mainPhaseThreads = options.getMainPhaseThreads();
 
     System.out.println("===========================================");
     System.out.println("Starting LoadTest Part 2");
-    System.out.println("Warmup: " + WARMUP_COUNT + " messages with " + WARMUP_THREADS + " threads");
-    System.out.println("Main: " + (TOTAL_COUNT - WARMUP_COUNT) + " messages with " + mainPhaseThreads + " threads");
+    System.out.println("Warmup: " + warmupCount + " messages with " + WARMUP_THREADS + " threads");
+    System.out.println("Main: " + (totalCount - warmupCount) + " messages with " + (options.isAutoTune()
+        ? "auto-tuned threads (at most " + mainPhaseThreads + ")" : mainPhaseThreads + " threads"));
+    System.out.println("Protocol: " + options.getProtocolMode());
+    System.out.println("Rooms: " + roomCount + (firstRoom > 1 ? " from room " + firstRoom : ""));
+    TimerCalibration calibration = TimerCalibration.run();
+    System.out.println("Timer calibration: " + calibration);
+    if (calibration.getNanoTimeResolutionNs() > 1_000) {
+      System.out.println("Warning: nanoTime resolution is coarser than 1 us, low latencies will be quantized.");
+    }
+    System.out.println("Main phase load: " + options.describeRate());
+    System.out.println("Connections per room: " + options.getConnectionsPerRoom() + " (" + options.getSelectionPolicy() + ")");
+    System.out.println("Sender threads: " + options.getThreadMode());
     System.out.println("===========================================\n");
 
 //    This wsConnectedLatch make sure the main thread wait till all websocket connections are open
-    CountDownLatch wsConnectedLatch = new CountDownLatch(NUM_OF_CHAT_ROOMS);
+    CountDownLatch wsConnectedLatch = new CountDownLatch(roomCount * options.getConnectionsPerRoom());
 //    This responseLatch ensures the main thread waits until all sent messages receive responses from the server, or a timeout occurs, whichever comes first.
-    CountDownLatch warmupResponseLatch = new CountDownLatch(WARMUP_COUNT);
+    CountDownLatch warmupResponseLatch = new CountDownLatch(warmupCount);
 
 //    Create connection pools inside Connection Manager, pass in warmupResponseLatch for now
-    //    String curURI = "ws://localhost:8080/chat/";
-    String curURI = "ws://16.147.254.83:8080/chat/";
+//    Point the client at another server with -Dchat.server.uri, e.g. ws://localhost:8080/chat/ for server-embedded
+    String curURI = System.getProperty("chat.server.uri", "ws://16.147.254.83:8080/chat/");
     connectionManager.setServerBaseUri(curURI);
     System.out.println("Current server is on " + curURI);
-    connectionManager.setupConnectionPool(wsConnectedLatch, warmupResponseLatch, resultsQueue, pendingMessages, NUM_OF_CHAT_ROOMS);
+    connectionManager.setSelectionPolicy(options.getSelectionPolicy());
+    connectionManager.setThreadMode(options.getThreadMode());
+//    Without CSV the clients get no results queue and percentiles come only from the in-process recorders
+    connectionManager.setupConnectionPool(wsConnectedLatch, warmupResponseLatch,
+        options.isCsvEnabled() ? resultsQueue : null, firstRoom, roomCount, options.getConnectionsPerRoom());
+    connectionManager.setProtocol(options.getInitialProtocol());
+    LatencyRecorder warmupRecorder = new LatencyRecorder();
+    connectionManager.setLatencyRecorder(warmupRecorder);
 
-//    backgroundExecutor manages two threads: One designated thread for csv writing and one designated thread for message generation
-    ExecutorService backgroundExecutor = Executors.newFixedThreadPool(2);
+//    backgroundExecutor manages one designated thread for csv writing and the message generation thread(s)
+    ExecutorService backgroundExecutor = Executors.newFixedThreadPool(1 + options.getGeneratorThreads());
     String outputDir = "results/part2";
-    String fileName = "part2_metrics.csv";
-    Future<?> csvFuture = backgroundExecutor.submit(new CSVWriter(resultsQueue, outputDir, fileName));
-    Future<?> msgGenFuture = backgroundExecutor.submit(new BatchMessageGenerator(messagesQueue, TOTAL_COUNT));
+    String fileName = logFileBase + (options.isBinaryLog() ? ".bin" : ".csv");
+    Runnable logWriter = options.isBinaryLog()
+        ? new BinaryLatencyLogWriter(resultsQueue, outputDir, fileName)
+        : new CSVWriter(resultsQueue, outputDir, fileName);
+    Future<?> csvFuture = options.isCsvEnabled() ? backgroundExecutor.submit(logWriter) : null;
+//    Live per-interval numbers; it only reads counters and recorders, so sending is not slowed down
+    IntervalReporter reporter = options.getReportIntervalMs() > 0
+        ? new IntervalReporter(options.getReportIntervalMs(), new File(outputDir, logFileBase + "_timeseries.csv"))
+        : null;
+    MessageSource messageSource;
+    MpmcRingBuffer<ClientMessage> ring = null;
+    if (options.getGenerator() == LoadTestOptions.Generator.POOL) {
+//      Messages are produced by the sender threads themselves, nothing is generated up front
+      messageSource = new PayloadPool(options.getPoolSize());
+      System.out.println("Payload pool ready: " + options.getPoolSize() + " pre-encoded templates\n");
+    } else if (options.getGenerator() == LoadTestOptions.Generator.STREAM) {
+//      Generation overlaps sending; a full ring holds the generators back until the senders catch up
+      ring = new MpmcRingBuffer<>(options.getRingCapacity());
+      int generators = options.getGeneratorThreads();
+      for (int i = 0; i < generators; i++) {
+        backgroundExecutor.submit(new StreamingMessageGenerator(ring,
+            totalCount / generators + (i < totalCount % generators ? 1 : 0)));
+      }
+      messageSource = MessageSource.of(ring);
+      System.out.println("Streaming generation into a ring of " + ring.capacity() + " messages with " + generators
+          + " generator thread(s)\n");
+    } else {
+      Future<?> msgGenFuture = backgroundExecutor.submit(new BatchMessageGenerator(messagesQueue, totalCount));
 
-    // Wait for message generation to complete
-    msgGenFuture.get();
-    System.out.println("Message generation complete\n");
-    System.out.println("Queue size: " + messagesQueue.size());
+      // Wait for message generation to complete
+      msgGenFuture.get();
+      System.out.println("Message generation complete\n");
+      System.out.println("Queue size: " + messagesQueue.size());
+      messageSource = MessageSource.of(messagesQueue);
+    }
 
 //    Create Phase Executor to run both phases
-    PhaseExecutor phaseExecutor = new PhaseExecutor();
+    PhaseExecutor phaseExecutor = new PhaseExecutor(options.getThreadMode());
 
 //    ==========================WARMUP PHASE============================
+    if (coordinator != null) {
+      System.out.println("Waiting for the coordinator to start the warmup...");
+      coordinator.awaitStart(WorkerLink.WARMUP);
+    }
     System.out.println(">>> Phase 1: Warmup >>>");
-    System.out.println("Sending " + WARMUP_COUNT + " messages with " + WARMUP_THREADS + " threads...");
+    System.out.println("Sending " + warmupCount + " messages with " + WARMUP_THREADS + " threads...");
 //    Log warmup start time
     long warmupStartTime = System.currentTimeMillis();
 
 //    Run Warmup Phase
-    phaseExecutor.executePhase(WARMUP_THREADS, WARMUP_COUNT, messagesQueue);
+    long warmupBytesBefore = Metrics.bytesSent.sum();
+    if (reporter != null) {
+      reporter.phase("warmup", warmupRecorder);
+    }
+    phaseExecutor.executePhase(WARMUP_THREADS, warmupCount, messageSource);
 
     boolean finished = warmupResponseLatch.await(30, TimeUnit.SECONDS);
     if (!finished) {
@@ -92,46 +207,38 @@ public class LoadTestPart2 {
 //    Calculation for warmup phase
     long warmupEndTime = System.currentTimeMillis();
     long warmupTotalTime = warmupEndTime - warmupStartTime;
-    int initialFailedMessages = (int) warmupResponseLatch.getCount();
-    int initialSuccessMessages = WARMUP_COUNT - initialFailedMessages;
+    PhaseResult warmup = new PhaseResult("Initial Phase", warmupCount, (int) warmupResponseLatch.getCount(),
+        warmupTotalTime, Metrics.bytesSent.sum() - warmupBytesBefore, null, warmupRecorder.snapshot());
 
-//    =========================MAIN PHASE Set Up=================================
-//    Reset metrics for Main Phase
-//    Metrics.successMessages.set(0);
+//    =========================MAIN PHASE=================================
 //    Calculate Main Phase message count
-    int mainMessageCount = TOTAL_COUNT - WARMUP_COUNT;
-//    Update response latches for main phase
-    CountDownLatch mainResponseLatch = new CountDownLatch(mainMessageCount);
-//    Update all clients with new response latch
-    for (ChatClient client : connectionManager.getConnectionPool().values()) {
-      client.setResponseLatch(mainResponseLatch);
+    int mainMessageCount = totalCount - warmupCount;
+    if (coordinator != null) {
+      coordinator.awaitStart(WorkerLink.MAIN);
     }
-//    Clear out pending messages
-    pendingMessages.clear();
-
-//    =========================MAIN PHASE=================================
     System.out.println(">>> Main Phase >>>");
-    System.out.println("Sending " + mainMessageCount + " messages with " + mainPhaseThreads + " threads...");
-//    Log main phase start time
-    long mainStartTime = System.currentTimeMillis();
-//    Run Main Phase
-    phaseExecutor.executePhase(mainPhaseThreads, mainMessageCount, messagesQueue);
-
-    boolean mainFinished = mainResponseLatch.await(300, TimeUnit.SECONDS);
-    if (!mainFinished) {
-      System.out.println("Warning: Phase timed out before all ACKs received.");
+    List<PhaseResult> mainSegments = new ArrayList<>();
+    if (options.getProtocolMode() == LoadTestOptions.ProtocolMode.COMPARE) {
+//      Same threads and connections for both halves, only the frame format changes
+      int jsonCount = mainMessageCount / 2;
+      mainSegments.add(runMainSegment(phaseExecutor, "Main Phase (JSON)", mainPhaseThreads, jsonCount, WireProtocol.JSON,
+          messageSource, options, reporter));
+      mainSegments.add(runMainSegment(phaseExecutor, "Main Phase (BINARY)", mainPhaseThreads,
+          mainMessageCount - jsonCount, WireProtocol.BINARY, messageSource, options, reporter));
+    } else {
+      mainSegments.add(runMainSegment(phaseExecutor, "Main Phase", mainPhaseThreads, mainMessageCount,
+          options.getInitialProtocol(), messageSource, options, reporter));
     }
 
-//    Calculation for main phase
-    long mainEndTime = System.currentTimeMillis();
-    long mainTotalTime = mainEndTime - mainStartTime;
-    int mainFailedMessages = (int) mainResponseLatch.getCount();
-    int mainSuccessMessages = mainMessageCount - mainFailedMessages;
-
 //    =======================BOTH PHASE FINISHED, CLEAN UP==================
+    if (reporter != null) {
+      reporter.close();
+    }
     // Signal CSV writer to stop
-    resultsQueue.put(LatencyReport.POISON_PILL);
-    csvFuture.get(30, TimeUnit.SECONDS);
+    if (csvFuture != null) {
+      resultsQueue.put(LatencyReport.POISON_PILL);
+      csvFuture.get(30, TimeUnit.SECONDS);
+    }
 //    Shutdown background executor
     backgroundExecutor.shutdown();
 //    Shutdown all websockets in connection manager
@@ -143,14 +250,94 @@ public class LoadTestPart2 {
     long overallTime = overallEndTime - overallStartTime;
 
 //    =======================PRINT OUT MATRIX==================
-    System.out.println("=====Load test 2 completed=====");
-    MetricsPrintUtil.printPhaseMetrics("Initial Phase", WARMUP_COUNT, initialSuccessMessages, initialFailedMessages, warmupTotalTime, WARMUP_THREADS);
-    MetricsPrintUtil.printPhaseMetrics("Main Phase", mainMessageCount, mainSuccessMessages, mainFailedMessages, mainTotalTime, mainPhaseThreads);
-    MetricsPrintUtil.printPhaseMetrics("Overall", TOTAL_COUNT, initialSuccessMessages + mainSuccessMessages, initialFailedMessages + mainFailedMessages, overallTime, mainPhaseThreads);
-    System.out.println("Total Connections: " + Metrics.connections);
-    System.out.println("Total Reconnections: " + Metrics.reconnections);
-    System.out.println("Generating detailed statistical analysis...");
-    String statsPath = outputDir + "/" + fileName;
-    StatisticsGenerator.main(new String[]{statsPath});
+    RunSummary summary = new RunSummary(warmup, mainSegments, WARMUP_THREADS, mainPhaseThreads, overallTime,
+        warmupStartTime - overallStartTime, peakHeapUsed(), ring == null ? -1 : ring.getProducerStalls(),
+        ring == null ? -1 : ring.getConsumerStalls(), Metrics.connections.get(), Metrics.reconnections.get(),
+        Metrics.broadcastsReceived.sum(), Metrics.broadcastsReordered.sum(), Metrics.broadcastGaps.sum(),
+        Metrics.lostAcks.sum(), 1);
+    if (coordinator != null) {
+//      The coordinator prints the merged report of all workers
+      coordinator.sendSummary(summary);
+      coordinator.close();
+    } else if (printSummary) {
+      summary.print();
+    }
+    if (options.isCsvEnabled() && options.isBinaryLog()) {
+      System.out.println("\nPer-message binary log written to " + outputDir + "/" + fileName
+          + ", convert it to CSV with LatencyLogConverter");
+    } else if (options.isCsvEnabled()) {
+      System.out.println("\nPer-message CSV written to " + outputDir + "/" + fileName);
+    }
+    if (reporter != null) {
+      System.out.println("Per-interval time series written to " + outputDir + "/" + logFileBase + "_timeseries.csv");
+    }
+    return summary;
+  }
+
+//  Starts the heap peak over, so each run of a sweep reports its own
+  private static void resetPeakHeap() {
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        pool.resetPeakUsage();
+      }
+    }
+  }
+
+//  Sum of the peak usage of every heap memory pool since the last resetPeakHeap
+  private static long peakHeapUsed() {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+    return peak;
+  }
+
+  /**
+   * Runs one main-phase segment with its own response latch and wire protocol, open-loop when a rate is configured.
+   */
+  private static PhaseResult runMainSegment(PhaseExecutor phaseExecutor, String name, int threads, int msgCount,
+      WireProtocol protocol, MessageSource messageSource, LoadTestOptions options, IntervalReporter reporter)
+      throws InterruptedException {
+//    Update all clients with new response latch and protocol
+    CountDownLatch responseLatch = new CountDownLatch(msgCount);
+    LatencyRecorder recorder = new LatencyRecorder();
+    for (ChatClient client : connectionManager.getAllClients()) {
+      client.setResponseLatch(responseLatch);
+//      Clear out pending messages of the previous phase
+      client.clearPending();
+      client.setLatencyRecorder(recorder);
+    }
+    connectionManager.setProtocol(protocol);
+
+    System.out.println("Sending " + msgCount + " messages with " + threads + " threads using " + protocol + " frames...");
+    long bytesBefore = Metrics.bytesSent.sum();
+    if (reporter != null) {
+      reporter.phase(name, recorder);
+    }
+    long startTime = System.currentTimeMillis();
+    PhaseExecutor.OpenLoopResult rate = null;
+    ConcurrencyController controller = null;
+    if (options.isOpenLoop()) {
+      rate = phaseExecutor.executeOpenLoopPhase(threads, messageSource, options.newSchedule(msgCount));
+    } else if (options.isAutoTune()) {
+      controller = new ConcurrencyController(Math.min(4, threads), threads, options.getLatencyTolerance());
+      phaseExecutor.executeAutoTunedPhase(threads, msgCount, messageSource, recorder, controller,
+          options.getTuneWindowMs());
+    } else {
+      phaseExecutor.executePhase(threads, msgCount, messageSource);
+    }
+
+    boolean finished = responseLatch.await(300, TimeUnit.SECONDS);
+    if (!finished) {
+      System.out.println("Warning: Phase timed out before all ACKs received.");
+    }
+    long durationMs = System.currentTimeMillis() - startTime;
+    if (controller != null) {
+      MetricsPrintUtil.printAutoTune(name, controller, (msgCount - responseLatch.getCount()) / (durationMs / 1000.0));
+    }
+    return new PhaseResult(name, msgCount, (int) responseLatch.getCount(), durationMs,
+        Metrics.bytesSent.sum() - bytesBefore, rate, recorder.snapshot());
   }
 }
@@ -0,0 +1,150 @@
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import util.LatencyHistogram;
+
+/**
+ * Runs {@link LoadTestPart2} once for every combination of the given thread counts, room counts, connections per
+ * room and message counts, in this JVM and one after another, then prints a table comparing them and writes it as
+ * CSV. Each run starts from a reset connection manager and zeroed Metrics counters, so no cell sees the connections
+ * or counts of the one before.
+ *
+ * Lists are comma separated; every other argument is passed to each run unchanged, e.g.
+ *   LoadTestSweep --threads=16,32,64 --rooms=10,20 --messages=100000 --server=ws://localhost:8080/chat/ --protocol=binary
+ * Options: --threads (32), --rooms (20), --connectionsPerRoom (1), --messages (500000),
+ *          --server (chat.server.uri), --out (results/sweep/sweep.csv), --pauseSeconds (2, between runs)
+ * The per-message CSV is off unless --csv=true is passed, since every run would overwrite it.
+ */
+public class LoadTestSweep {
+
+  private static final String CSV_HEADER = "threads,rooms,connectionsPerRoom,messages,mainThroughput,"
+      + "overallThroughput,p50Micros,p99Micros,failedMessages,failureRate,lostAcks,reconnections";
+
+  public static void main(String[] args) throws Exception {
+    List<Integer> threads = List.of(LoadTestPart2.DEFAULT_MAIN_PHASE_THREAD);
+    List<Integer> rooms = List.of(LoadTestPart2.NUM_OF_CHAT_ROOMS);
+    List<Integer> connections = List.of(1);
+    List<Integer> messages = List.of(LoadTestPart2.TOTAL_COUNT);
+    Path out = Paths.get("results/sweep/sweep.csv");
+    long pauseMs = 2_000;
+    List<String> runArgs = new ArrayList<>();
+    boolean csvGiven = false;
+    for (String arg : args) {
+      int eq = arg.indexOf('=');
+      String name = arg.startsWith("--") && eq > 0 ? arg.substring(2, eq) : "";
+      String value = eq > 0 ? arg.substring(eq + 1) : "";
+      switch (name) {
+        case "threads": threads = parseList(name, value); break;
+        case "rooms": rooms = parseList(name, value); break;
+        case "connectionsPerRoom": connections = parseList(name, value); break;
+        case "messages": messages = parseList(name, value); break;
+        case "server": System.setProperty("chat.server.uri", value); break;
+        case "out": out = Paths.get(value); break;
+        case "pauseSeconds": pauseMs = Math.round(Double.parseDouble(value) * 1000); break;
+        case "coordinator": throw new IllegalArgumentException("A sweep runs in this JVM, --coordinator is not supported");
+        default:
+          csvGiven |= name.equals("csv");
+          runArgs.add(arg);
+      }
+    }
+    if (!csvGiven) {
+      runArgs.add("--csv=false");
+    }
+
+    List<String[]> cells = new ArrayList<>();
+    for (int m : messages) {
+      for (int r : rooms) {
+        for (int c : connections) {
+          for (int t : threads) {
+            List<String> cellArgs = new ArrayList<>(runArgs);
+            cellArgs.add(0, String.valueOf(t));
+            cellArgs.add("--rooms=" + r);
+            cellArgs.add("--connectionsPerRoom=" + c);
+            cellArgs.add("--messages=" + m);
+            cells.add(cellArgs.toArray(new String[0]));
+          }
+        }
+      }
+    }
+//    Fail on a bad combination before the first run starts
+    for (String[] cell : cells) {
+      LoadTestOptions.parse(cell, LoadTestPart2.DEFAULT_MAIN_PHASE_THREAD);
+    }
+
+    if (out.getParent() != null) {
+      Files.createDirectories(out.getParent());
+    }
+    List<String> rows = new ArrayList<>();
+    try (PrintWriter csv = new PrintWriter(Files.newBufferedWriter(out, StandardCharsets.UTF_8))) {
+      csv.println(CSV_HEADER);
+      for (int i = 0; i < cells.size(); i++) {
+        System.out.println("\n########## Sweep run " + (i + 1) + " of " + cells.size() + ": "
+            + String.join(" ", cells.get(i)) + " ##########");
+        RunSummary summary = LoadTestPart2.run(cells.get(i), false);
+        LoadTestOptions options = LoadTestOptions.parse(cells.get(i), LoadTestPart2.DEFAULT_MAIN_PHASE_THREAD);
+        String row = toCsv(options, summary);
+        csv.println(row);
+        csv.flush();
+        rows.add(row);
+        if (i < cells.size() - 1) {
+//          Let the server finish closing the previous run's sessions
+          Thread.sleep(pauseMs);
+        }
+      }
+    }
+    printTable(rows);
+    System.out.println("\nSweep results written to " + out);
+  }
+
+  private static List<Integer> parseList(String name, String value) {
+    List<Integer> values = new ArrayList<>();
+    for (String part : value.split(",")) {
+      int v = Integer.parseInt(part.trim());
+      if (v < 1) {
+        throw new IllegalArgumentException("--" + name + " values must be at least 1");
+      }
+      values.add(v);
+    }
+    return values;
+  }
+
+  private static String toCsv(LoadTestOptions options, RunSummary summary) {
+    PhaseResult main = PhaseResult.merge(summary.mainSegments);
+    long mainMs = 0;
+    for (PhaseResult segment : summary.mainSegments) {
+      mainMs += segment.durationMs;
+    }
+    int total = summary.warmup.messagesSent + main.messagesSent;
+    int failed = summary.warmup.failedMessages + main.failedMessages;
+    LatencyHistogram latency = main.latency.getTotal();
+    return options.getMainPhaseThreads() + "," + options.getRooms() + "," + options.getConnectionsPerRoom() + ","
+        + options.getMessages() + "," + String.format(Locale.ROOT, "%.1f", (main.messagesSent - main.failedMessages)
+        / (Math.max(1, mainMs) / 1000.0)) + ","
+        + String.format(Locale.ROOT, "%.1f", (total - failed) / (Math.max(1, summary.overallMs) / 1000.0)) + ","
+        + latency.getValueAtPercentile(50) + "," + latency.getValueAtPercentile(99) + "," + failed + ","
+        + String.format(Locale.ROOT, "%.4f", failed / (double) total) + "," + summary.lostAcks + "," + summary.reconnections;
+  }
+
+//  Same rows as the CSV, aligned, with the best main-phase throughput marked
+  private static void printTable(List<String> rows) {
+    int best = 0;
+    for (int i = 1; i < rows.size(); i++) {
+      if (Double.parseDouble(rows.get(i).split(",")[4]) > Double.parseDouble(rows.get(best).split(",")[4])) {
+        best = i;
+      }
+    }
+    System.out.println("\n=========================== SWEEP RESULTS ===========================");
+    System.out.printf("%7s %5s %5s %9s %11s %11s %10s %10s %8s %7s %6s%n", "Threads", "Rooms", "Conns",
+        "Messages", "Main msg/s", "Total msg/s", "p50 (us)", "p99 (us)", "Failed", "Lost", "Recon");
+    for (int i = 0; i < rows.size(); i++) {
+      String[] f = rows.get(i).split(",");
+      System.out.printf("%7s %5s %5s %9s %11s %11s %10s %10s %7.2f%% %7s %6s%s%n", f[0], f[1], f[2], f[3], f[4], f[5],
+          f[6], f[7], Double.parseDouble(f[9]) * 100, f[10], f[11], i == best ? "  <- best" : "");
+    }
+  }
+}
@@ -0,0 +1,114 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+import util.ArrivalSchedule;
+import util.LatencyRecorder;
+import util.PhaseExecutor;
+
+/**
+ * Outcome of one load-test phase or main-phase segment.
+ */
+class PhaseResult {
+  final String name;
+  final int messagesSent;
+  final int failedMessages;
+  final long durationMs;
+  final long bytesSent;
+//  Requested vs achieved rate, null for closed-loop segments
+  final PhaseExecutor.OpenLoopResult rate;
+  final LatencyRecorder.Snapshot latency;
+
+  PhaseResult(String name, int messagesSent, int failedMessages, long durationMs, long bytesSent,
+      PhaseExecutor.OpenLoopResult rate, LatencyRecorder.Snapshot latency) {
+    this.name = name;
+    this.messagesSent = messagesSent;
+    this.failedMessages = failedMessages;
+    this.durationMs = durationMs;
+    this.bytesSent = bytesSent;
+    this.rate = rate;
+    this.latency = latency;
+  }
+
+  void writeTo(DataOutput out) throws IOException {
+    out.writeUTF(name);
+    out.writeInt(messagesSent);
+    out.writeInt(failedMessages);
+    out.writeLong(durationMs);
+    out.writeLong(bytesSent);
+    out.writeBoolean(rate != null);
+    if (rate != null) {
+      out.writeUTF(rate.shape.name());
+      out.writeDouble(rate.targetRate);
+      out.writeDouble(rate.requestedRate);
+      out.writeDouble(rate.achievedRate);
+      out.writeLong(rate.sent);
+      out.writeLong(rate.skipped);
+      out.writeDouble(rate.avgSendLagMs);
+      out.writeDouble(rate.maxSendLagMs);
+    }
+    latency.writeTo(out);
+  }
+
+  static PhaseResult readFrom(DataInput in) throws IOException {
+    String name = in.readUTF();
+    int messagesSent = in.readInt();
+    int failedMessages = in.readInt();
+    long durationMs = in.readLong();
+    long bytesSent = in.readLong();
+    PhaseExecutor.OpenLoopResult rate = null;
+    if (in.readBoolean()) {
+      rate = new PhaseExecutor.OpenLoopResult(ArrivalSchedule.Shape.valueOf(in.readUTF()), in.readDouble(),
+          in.readDouble(), in.readDouble(), in.readLong(), in.readLong(), in.readDouble(), in.readDouble());
+    }
+    return new PhaseResult(name, messagesSent, failedMessages, durationMs, bytesSent, rate,
+        LatencyRecorder.Snapshot.readFrom(in));
+  }
+
+  /**
+   * Combines the same phase run by several workers. Counts, bytes and rates add up; the duration is the slowest
+   * worker's, since the coordinator starts every phase on all workers together.
+   */
+  static PhaseResult merge(List<PhaseResult> parts) {
+    int sent = 0;
+    int failed = 0;
+    long durationMs = 0;
+    long bytes = 0;
+    LatencyRecorder.Snapshot latency = new LatencyRecorder.Snapshot();
+    for (PhaseResult part : parts) {
+      sent += part.messagesSent;
+      failed += part.failedMessages;
+      durationMs = Math.max(durationMs, part.durationMs);
+      bytes += part.bytesSent;
+      latency.add(part.latency);
+    }
+    return new PhaseResult(parts.get(0).name, sent, failed, durationMs, bytes, mergeRates(parts), latency);
+  }
+
+  private static PhaseExecutor.OpenLoopResult mergeRates(List<PhaseResult> parts) {
+    if (parts.get(0).rate == null) {
+      return null;
+    }
+    double target = 0;
+    double requested = 0;
+    double achieved = 0;
+    long sent = 0;
+    long skipped = 0;
+    double lagMs = 0;
+    double maxLagMs = 0;
+    for (PhaseResult part : parts) {
+      PhaseExecutor.OpenLoopResult r = part.rate;
+      target += r.targetRate;
+      requested += r.requestedRate;
+      achieved += r.achievedRate;
+      sent += r.sent;
+      skipped += r.skipped;
+//      Average lag is per attempted send, so weight each worker by its attempts
+      lagMs += r.avgSendLagMs * (r.sent + r.skipped);
+      maxLagMs = Math.max(maxLagMs, r.maxSendLagMs);
+    }
+    long attempted = sent + skipped;
+    return new PhaseExecutor.OpenLoopResult(parts.get(0).rate.shape, target, requested, achieved, sent, skipped,
+        attempted == 0 ? 0 : lagMs / attempted, maxLagMs);
+  }
+}
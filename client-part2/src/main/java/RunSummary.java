@@ -0,0 +1,198 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import util.LatencyHistogram;
+import util.LatencyRecorder;
+import util.MetricsPrintUtil;
+
+/**
+ * Everything the end-of-run report of {@link LoadTestPart2} prints. A standalone run prints its own summary; a
+ * distributed worker ships it to {@link LoadTestCoordinator}, which merges all workers' summaries and prints one.
+ */
+class RunSummary {
+  final PhaseResult warmup;
+  final List<PhaseResult> mainSegments;
+  final int warmupThreads;
+  final int mainThreads;
+  final long overallMs;
+  final long startupMs;
+  final long peakHeapBytes;
+//  Ring stalls of --generator=stream, -1 otherwise
+  final long producerStalls;
+  final long consumerStalls;
+  final int connections;
+  final int reconnections;
+  final long broadcastsReceived;
+//  Sequenced broadcasts that arrived out of room order, and sequences never received
+  final long broadcastsReordered;
+  final long broadcastGaps;
+  final long lostAcks;
+  final int workers;
+
+  RunSummary(PhaseResult warmup, List<PhaseResult> mainSegments, int warmupThreads, int mainThreads, long overallMs,
+      long startupMs, long peakHeapBytes, long producerStalls, long consumerStalls, int connections,
+      int reconnections, long broadcastsReceived, long broadcastsReordered, long broadcastGaps, long lostAcks,
+      int workers) {
+    this.warmup = warmup;
+    this.mainSegments = mainSegments;
+    this.warmupThreads = warmupThreads;
+    this.mainThreads = mainThreads;
+    this.overallMs = overallMs;
+    this.startupMs = startupMs;
+    this.peakHeapBytes = peakHeapBytes;
+    this.producerStalls = producerStalls;
+    this.consumerStalls = consumerStalls;
+    this.connections = connections;
+    this.reconnections = reconnections;
+    this.broadcastsReceived = broadcastsReceived;
+    this.broadcastsReordered = broadcastsReordered;
+    this.broadcastGaps = broadcastGaps;
+    this.lostAcks = lostAcks;
+    this.workers = workers;
+  }
+
+  void print() {
+    PhaseResult main = PhaseResult.merge(mainSegments);
+    int mainMessageCount = main.messagesSent;
+    int mainFailedMessages = main.failedMessages;
+    long mainTotalTime = 0;
+    for (PhaseResult segment : mainSegments) {
+      mainTotalTime += segment.durationMs;
+    }
+
+    System.out.println("=====Load test 2 completed=====");
+    if (workers > 1) {
+      System.out.println("Merged from " + workers + " workers; thread counts are totals across workers");
+    }
+    MetricsPrintUtil.printPhaseMetrics("Initial Phase", warmup.messagesSent, warmup.messagesSent - warmup.failedMessages,
+        warmup.failedMessages, warmup.durationMs, warmupThreads);
+    MetricsPrintUtil.printPhaseMetrics("Main Phase", mainMessageCount, mainMessageCount - mainFailedMessages,
+        mainFailedMessages, mainTotalTime, mainThreads);
+    if (mainSegments.size() > 1) {
+      for (PhaseResult segment : mainSegments) {
+        MetricsPrintUtil.printPhaseMetrics(segment.name, segment.messagesSent, segment.messagesSent - segment.failedMessages,
+            segment.failedMessages, segment.durationMs, mainThreads);
+        System.out.println("Bytes on wire per message: " + String.format("%.1f", segment.bytesSent / (double) segment.messagesSent));
+      }
+    }
+    for (PhaseResult segment : mainSegments) {
+      if (segment.rate != null) {
+        MetricsPrintUtil.printRateMetrics(segment.name, segment.rate);
+      }
+    }
+    System.out.println("\nStartup to first send: " + startupMs + " ms");
+    System.out.printf("Peak heap used%s: %.1f MB%n", workers > 1 ? " (largest worker)" : "", peakHeapBytes / 1e6);
+    if (producerStalls >= 0) {
+      System.out.println("Generator stalls on full ring: " + producerStalls
+          + ", sender stalls on empty ring: " + consumerStalls);
+    }
+    int totalCount = warmup.messagesSent + mainMessageCount;
+    int failedCount = warmup.failedMessages + mainFailedMessages;
+    MetricsPrintUtil.printPhaseMetrics("Overall", totalCount, totalCount - failedCount, failedCount, overallMs,
+        mainThreads);
+    System.out.println("Total Connections: " + connections);
+    System.out.println("Total Reconnections: " + reconnections);
+    System.out.println("Broadcast Frames Received: " + broadcastsReceived);
+    if (broadcastsReordered > 0 || broadcastGaps > 0) {
+      System.out.println("Sequenced Broadcasts Out of Order: " + broadcastsReordered + ", Sequence Gaps: "
+          + broadcastGaps);
+    }
+    System.out.println("Acks Lost (timed out or orphaned): " + lostAcks);
+
+//    Percentiles come from the in-process histograms; the CSV (if enabled) stays available for StatisticsGenerator
+    if (mainSegments.size() > 1) {
+      for (PhaseResult segment : mainSegments) {
+        LatencyHistogram h = segment.latency.getTotal();
+        System.out.println(segment.name + " latency us  p50: " + h.getValueAtPercentile(50) + "  p99: "
+            + h.getValueAtPercentile(99) + "  p99.9: " + h.getValueAtPercentile(99.9) + "  max: " + h.getMax());
+      }
+    }
+    MetricsPrintUtil.printLatencyReport("MAIN PHASE LATENCY REPORT", main.latency, "us");
+    MetricsPrintUtil.printLatencyReport("LOAD TEST PERFORMANCE REPORT",
+        new LatencyRecorder.Snapshot().add(warmup.latency).add(main.latency), "us");
+  }
+
+  void writeTo(DataOutput out) throws IOException {
+    warmup.writeTo(out);
+    out.writeInt(mainSegments.size());
+    for (PhaseResult segment : mainSegments) {
+      segment.writeTo(out);
+    }
+    out.writeInt(warmupThreads);
+    out.writeInt(mainThreads);
+    out.writeLong(overallMs);
+    out.writeLong(startupMs);
+    out.writeLong(peakHeapBytes);
+    out.writeLong(producerStalls);
+    out.writeLong(consumerStalls);
+    out.writeInt(connections);
+    out.writeInt(reconnections);
+    out.writeLong(broadcastsReceived);
+    out.writeLong(broadcastsReordered);
+    out.writeLong(broadcastGaps);
+    out.writeLong(lostAcks);
+    out.writeInt(workers);
+  }
+
+  static RunSummary readFrom(DataInput in) throws IOException {
+    PhaseResult warmup = PhaseResult.readFrom(in);
+    int segments = in.readInt();
+    List<PhaseResult> mainSegments = new ArrayList<>(segments);
+    for (int i = 0; i < segments; i++) {
+      mainSegments.add(PhaseResult.readFrom(in));
+    }
+    return new RunSummary(warmup, mainSegments, in.readInt(), in.readInt(), in.readLong(), in.readLong(),
+        in.readLong(), in.readLong(), in.readLong(), in.readInt(), in.readInt(), in.readLong(), in.readLong(),
+        in.readLong(), in.readLong(), in.readInt());
+  }
+
+  /**
+   * Merges the workers' summaries phase by phase. Times measured by the coordinator replace the workers' own:
+   * overallMs is the coordinator's wall time and startupMs how long it took until every worker was ready to send.
+   */
+  static RunSummary merge(List<RunSummary> parts, long overallMs, long startupMs) {
+    List<PhaseResult> warmups = new ArrayList<>();
+    for (RunSummary part : parts) {
+      warmups.add(part.warmup);
+    }
+    List<PhaseResult> mainSegments = new ArrayList<>();
+    for (int s = 0; s < parts.get(0).mainSegments.size(); s++) {
+      List<PhaseResult> segment = new ArrayList<>();
+      for (RunSummary part : parts) {
+        segment.add(part.mainSegments.get(s));
+      }
+      mainSegments.add(PhaseResult.merge(segment));
+    }
+    int warmupThreads = 0;
+    int mainThreads = 0;
+    long peakHeap = 0;
+    long producerStalls = -1;
+    long consumerStalls = -1;
+    int connections = 0;
+    int reconnections = 0;
+    long broadcasts = 0;
+    long reordered = 0;
+    long gaps = 0;
+    long lostAcks = 0;
+    for (RunSummary part : parts) {
+      warmupThreads += part.warmupThreads;
+      mainThreads += part.mainThreads;
+      peakHeap = Math.max(peakHeap, part.peakHeapBytes);
+      if (part.producerStalls >= 0) {
+        producerStalls = Math.max(0, producerStalls) + part.producerStalls;
+        consumerStalls = Math.max(0, consumerStalls) + part.consumerStalls;
+      }
+      connections += part.connections;
+      reconnections += part.reconnections;
+      broadcasts += part.broadcastsReceived;
+      reordered += part.broadcastsReordered;
+      gaps += part.broadcastGaps;
+      lostAcks += part.lostAcks;
+    }
+    return new RunSummary(PhaseResult.merge(warmups), mainSegments, warmupThreads, mainThreads, overallMs, startupMs,
+        peakHeap, producerStalls, consumerStalls, connections, reconnections, broadcasts, reordered, gaps, lostAcks,
+        parts.size());
+  }
+}
@@ -1,87 +1,57 @@
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import util.LatencyCsvScanner;
+import util.MetricsPrintUtil;
 
 /**
  * This class read information from CSV file that contains all latency information and calculate for statistical analysis
+ * Rows are streamed into a fixed-memory latency histogram, so no per-message list is kept or sorted
+ *
+ * Several CSV files (e.g. the per-worker files of a distributed run) can be passed at once and are reported together.
+ * --mode=mmap memory-maps the files and parses line-aligned chunks in parallel (see {@link LatencyCsvScanner}), for
+ * result files of tens of millions of rows; --parallelism sets its thread count (default: available processors).
+ *
+ * Usage: StatisticsGenerator [--mode=stream|mmap] [--parallelism=N] file.csv [file.csv ...]
  */
 public class StatisticsGenerator {
   public static void main(String[] args) {
-    String csvFile = args[0];
-    List<Long> latencies = new ArrayList<>(500000);
-    Map<String, Integer> roomCounts = new HashMap<>();
-    Map<String, Integer> typeCounts = new HashMap<>();
-
-    long sum = 0;
-    long min = Long.MAX_VALUE;
-    long max = Long.MIN_VALUE;
+    boolean mapped = false;
+    int parallelism = Runtime.getRuntime().availableProcessors();
+    List<Path> files = new ArrayList<>();
+    for (String arg : args) {
+      if (arg.startsWith("--mode=")) {
+        String mode = arg.substring("--mode=".length());
+        if (!mode.equals("stream") && !mode.equals("mmap")) {
+          throw new IllegalArgumentException("--mode must be stream or mmap");
+        }
+        mapped = mode.equals("mmap");
+      } else if (arg.startsWith("--parallelism=")) {
+        parallelism = Integer.parseInt(arg.substring("--parallelism=".length()));
+      } else {
+        files.add(Paths.get(arg));
+      }
+    }
+    if (files.isEmpty()) {
+      throw new IllegalArgumentException("Usage: StatisticsGenerator [--mode=stream|mmap] [--parallelism=N] file.csv ...");
+    }
 
     System.out.println("Processing CSV data...");
 
-    try (BufferedReader br = new BufferedReader(new FileReader(csvFile))) {
-      String line = br.readLine(); // Skip header
-
-      while ((line = br.readLine()) != null) {
-        // Format: SentTime,MessageType,Latency,StatusCode,RoomId
-        String[] values = line.split(",");
-        if (values.length < 5) continue;
-
-        // Retrieve info
-        String type = values[1];
-        long latency = Long.parseLong(values[2]);
-        String roomId = values[4];
-
-        latencies.add(latency);
-        sum += latency;
-        min = Math.min(min, latency);
-        max = Math.max(max, latency);
-
-        // Distributions
-        typeCounts.put(type, typeCounts.getOrDefault(type, 0) + 1);
-        roomCounts.put(roomId, roomCounts.getOrDefault(roomId, 0) + 1);
-      }
+    long start = System.nanoTime();
+    LatencyCsvScanner.Result result;
+    try {
+      result = mapped ? LatencyCsvScanner.readMapped(files, parallelism) : LatencyCsvScanner.readStreaming(files);
     } catch (IOException e) {
       System.out.println("Error reading CSV: " + e.getMessage());
       return;
     }
+    System.out.printf("Read %,d rows from %d file(s) in %.1f ms (%s)%s%n", result.getRows(), files.size(),
+        (System.nanoTime() - start) / 1e6, mapped ? "mmap, " + parallelism + " threads" : "stream",
+        result.getSkipped() > 0 ? ", skipped " + result.getSkipped() + " malformed rows" : "");
 
-    if (latencies.isEmpty()) {
-      System.out.println("No data found in CSV.");
-      return;
-    }
-
-    // Sort for Percentiles and Median
-    Collections.sort(latencies);
-
-    // Calculations
-    double mean = (double) sum / latencies.size();
-    long median = latencies.get(latencies.size() / 2);
-    long p95 = latencies.get((int) (latencies.size() * 0.95));
-    long p99 = latencies.get((int) (latencies.size() * 0.99));
-
-    // Display Results
-    System.out.println("\n===========================================");
-    System.out.println("       LOAD TEST PERFORMANCE REPORT        ");
-    System.out.println("===========================================");
-    System.out.printf("Total Messages Processed: %,d%n", latencies.size());
-    System.out.printf("Mean Response Time:       %.2f ms%n", mean);
-    System.out.printf("Median Response Time:     %d ms%n", median);
-    System.out.printf("95th Percentile (P95):    %d ms%n", p95);
-    System.out.printf("99th Percentile (P99):    %d ms%n", p99);
-    System.out.printf("Min Response Time:        %d ms%n", min);
-    System.out.printf("Max Response Time:        %d ms%n", max);
-
-    System.out.println("\n--- Throughput per Room (Messages Received) ---");
-    roomCounts.entrySet().stream()
-        .sorted(Map.Entry.comparingByKey())
-        .forEach(e -> System.out.printf("Room %-5s: %d msgs%n", e.getKey(), e.getValue()));
-
-    System.out.println("\n=== Message Type Distribution ===");
-    for (Map.Entry<String, Integer> entry : typeCounts.entrySet()) {
-      double percentage = (entry.getValue() * 100.0) / latencies.size();
-      System.out.printf("%-10s: %d messages (%.2f%%)%n",
-          entry.getKey(), entry.getValue(), percentage);
-    }
+    MetricsPrintUtil.printLatencyReport("LOAD TEST PERFORMANCE REPORT", result.getSnapshot(), "us");
   }
 }
@@ -0,0 +1,101 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+
+/**
+ * The TCP connection between a distributed worker and {@link LoadTestCoordinator}, used from both ends.
+ *
+ * Protocol, all with DataOutput encoding:
+ *   coordinator -> worker  the worker's {@link WorkerPlan}
+ *   worker -> coordinator  READY, phase name            (once per phase, when connections and messages are ready)
+ *   coordinator -> worker  GO, phase name               (after every worker is READY for that phase)
+ *   worker -> coordinator  SUMMARY, {@link RunSummary}   (after the last phase)
+ */
+class WorkerLink implements Closeable {
+  static final String WARMUP = "warmup";
+  static final String MAIN = "main";
+
+  private static final byte READY = 1;
+  private static final byte GO = 2;
+  private static final byte SUMMARY = 3;
+
+  private final Socket socket;
+  private final DataInputStream in;
+  private final DataOutputStream out;
+
+  WorkerLink(Socket socket) throws IOException {
+    this.socket = socket;
+    socket.setTcpNoDelay(true);
+    this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+  }
+
+//  Worker side: connects to host:port
+  static WorkerLink connect(String hostPort) throws IOException {
+    int colon = hostPort.lastIndexOf(':');
+    return new WorkerLink(new Socket(hostPort.substring(0, colon), Integer.parseInt(hostPort.substring(colon + 1))));
+  }
+
+  void sendPlan(WorkerPlan plan) throws IOException {
+    plan.writeTo(out);
+    out.flush();
+  }
+
+  WorkerPlan receivePlan() throws IOException {
+    return WorkerPlan.readFrom(in);
+  }
+
+  /**
+   * Worker side: reports READY for the phase and blocks until the coordinator starts it on every worker.
+   */
+  void awaitStart(String phase) throws IOException {
+    out.writeByte(READY);
+    out.writeUTF(phase);
+    out.flush();
+    expect(GO, phase);
+  }
+
+//  Coordinator side: waits for this worker to be READY for the phase
+  void awaitReady(String phase) throws IOException {
+    expect(READY, phase);
+  }
+
+//  Coordinator side: starts the phase on this worker
+  void start(String phase) throws IOException {
+    out.writeByte(GO);
+    out.writeUTF(phase);
+    out.flush();
+  }
+
+  void sendSummary(RunSummary summary) throws IOException {
+    out.writeByte(SUMMARY);
+    summary.writeTo(out);
+    out.flush();
+  }
+
+  RunSummary receiveSummary() throws IOException {
+    byte tag = in.readByte();
+    if (tag != SUMMARY) {
+      throw new IOException("Expected a run summary, got message " + tag);
+    }
+    return RunSummary.readFrom(in);
+  }
+
+  private void expect(byte tag, String phase) throws IOException {
+    byte got = in.readByte();
+    String gotPhase = in.readUTF();
+    if (got != tag || !gotPhase.equals(phase)) {
+      throw new IOException("Expected " + (tag == GO ? "GO " : "READY ") + phase + ", got message " + got + " "
+          + gotPhase);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    socket.close();
+  }
+}
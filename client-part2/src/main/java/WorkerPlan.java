@@ -0,0 +1,78 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * One distributed worker's share of the load test: a contiguous block of rooms, its part of the warmup and total
+ * message counts, and the LoadTestPart2 options every worker runs with. Open-loop rates are divided by
+ * {@link LoadTestOptions#partition} when the worker applies the plan.
+ */
+class WorkerPlan {
+  final int index;
+  final int workers;
+  final int firstRoom;
+  final int roomCount;
+  final int warmupCount;
+  final int totalCount;
+  final String[] args;
+
+  WorkerPlan(int index, int workers, int firstRoom, int roomCount, int warmupCount, int totalCount, String[] args) {
+    this.index = index;
+    this.workers = workers;
+    this.firstRoom = firstRoom;
+    this.roomCount = roomCount;
+    this.warmupCount = warmupCount;
+    this.totalCount = totalCount;
+    this.args = args;
+  }
+
+  /**
+   * Splits rooms 1..rooms and both message counts as evenly as possible; worker index gets the remainders first.
+   */
+  static WorkerPlan partition(int index, int workers, int rooms, int warmupCount, int totalCount, String[] args) {
+    if (workers > rooms) {
+      throw new IllegalArgumentException("Cannot split " + rooms + " rooms across " + workers + " workers");
+    }
+    int firstRoom = 1 + index * rooms / workers;
+    int nextFirstRoom = 1 + (index + 1) * rooms / workers;
+    return new WorkerPlan(index, workers, firstRoom, nextFirstRoom - firstRoom, share(warmupCount, index, workers),
+        share(totalCount, index, workers), args);
+  }
+
+  private static int share(int count, int index, int workers) {
+    return count / workers + (index < count % workers ? 1 : 0);
+  }
+
+  @Override
+  public String toString() {
+    return "worker " + index + "/" + workers + ": rooms " + firstRoom + "-" + (firstRoom + roomCount - 1) + ", "
+        + warmupCount + " warmup + " + (totalCount - warmupCount) + " main messages";
+  }
+
+  void writeTo(DataOutput out) throws IOException {
+    out.writeInt(index);
+    out.writeInt(workers);
+    out.writeInt(firstRoom);
+    out.writeInt(roomCount);
+    out.writeInt(warmupCount);
+    out.writeInt(totalCount);
+    out.writeInt(args.length);
+    for (String arg : args) {
+      out.writeUTF(arg);
+    }
+  }
+
+  static WorkerPlan readFrom(DataInput in) throws IOException {
+    int index = in.readInt();
+    int workers = in.readInt();
+    int firstRoom = in.readInt();
+    int roomCount = in.readInt();
+    int warmupCount = in.readInt();
+    int totalCount = in.readInt();
+    String[] args = new String[in.readInt()];
+    for (int i = 0; i < args.length; i++) {
+      args[i] = in.readUTF();
+    }
+    return new WorkerPlan(index, workers, firstRoom, roomCount, warmupCount, totalCount, args);
+  }
+}
@@ -0,0 +1,68 @@
+package benchmark;
+
+import codec.ClientMessageDecoder;
+import com.google.gson.Gson;
+import java.util.concurrent.TimeUnit;
+import model.ClientMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reflective Gson binding vs the streaming {@link ClientMessageDecoder} on realistic inbound frames.
+ * Add -prof gc to compare bytes allocated per decoded frame.
+ *
+ * Run: java -jar server-benchmark/target/benchmarks.jar ClientMessageDecodeBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ClientMessageDecodeBenchmark {
+
+  private static final int FRAME_COUNT = 4096;
+
+  private final Gson gson = new Gson();
+  private String[] frames;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    frames = SampleFrames.generate(FRAME_COUNT, 42L);
+  }
+
+  /**
+   * Each benchmark thread walks the frame pool with its own cursor.
+   */
+  @State(Scope.Thread)
+  public static class Cursor {
+    int next;
+
+    String take(String[] frames) {
+      String frame = frames[next];
+      next = (next + 1) & (FRAME_COUNT - 1);
+      return frame;
+    }
+  }
+
+  @Benchmark
+  public ClientMessage gsonReflective(Cursor cursor) {
+    return gson.fromJson(cursor.take(frames), ClientMessage.class);
+  }
+
+  @Benchmark
+  public ClientMessage streamingDecoder(Cursor cursor) {
+    return ClientMessageDecoder.decode(cursor.take(frames));
+  }
+}
@@ -0,0 +1,38 @@
+package benchmark;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import javax.websocket.Session;
+
+/**
+ * Creates lightweight {@link Session} stand-ins for benchmarks that only need session identity.
+ * Each proxy answers getId/getUserProperties/isOpen and uses identity for equals and hashCode, like container sessions.
+ */
+final class FakeSessions {
+
+  private FakeSessions() {}
+
+  static Session create(int id) {
+    String sessionId = String.valueOf(id);
+    Map<String, Object> userProperties = new HashMap<>();
+    return (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class<?>[]{Session.class},
+        (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            case "toString":
+            case "getId":
+              return sessionId;
+            case "getUserProperties":
+              return userProperties;
+            case "isOpen":
+              return true;
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+  }
+}
@@ -0,0 +1,93 @@
+package benchmark;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import model.ClientMessage;
+import model.MessageType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import validation.MessageValidator;
+import validation.MessageValidator.ValidationResult;
+
+/**
+ * Validations per second for MessageValidator.validate vs validateFast, for a valid message and each error category.
+ * Every category fails at a different rule, so the cost of the checks before it is included.
+ *
+ * Run: java -jar server-benchmark/target/benchmarks.jar MessageValidatorBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MessageValidatorBenchmark {
+
+  @Param({"valid", "userIdMissing", "userIdNotNumber", "userIdOutOfRange", "userNameMissing", "userNameInvalid",
+      "messageTooLong", "messageTypeMissing", "timestampInvalid"})
+  public String category;
+
+  private ClientMessage msg;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    String now = Instant.now().toString();
+    String longMessage = new String(new char[501]).replace('\0', 'x');
+    switch (category) {
+      case "valid":
+        msg = message("42017", "user42017", "Message 7", now, MessageType.TEXT);
+        break;
+      case "userIdMissing":
+        msg = message(null, "user42017", "Message 7", now, MessageType.TEXT);
+        break;
+      case "userIdNotNumber":
+        msg = message("42a17", "user42017", "Message 7", now, MessageType.TEXT);
+        break;
+      case "userIdOutOfRange":
+        msg = message("420170", "user42017", "Message 7", now, MessageType.TEXT);
+        break;
+      case "userNameMissing":
+        msg = message("42017", "", "Message 7", now, MessageType.TEXT);
+        break;
+      case "userNameInvalid":
+        msg = message("42017", "user_42017", "Message 7", now, MessageType.TEXT);
+        break;
+      case "messageTooLong":
+        msg = message("42017", "user42017", longMessage, now, MessageType.TEXT);
+        break;
+      case "messageTypeMissing":
+        msg = message("42017", "user42017", "Message 7", now, null);
+        break;
+      case "timestampInvalid":
+        msg = message("42017", "user42017", "Message 7", "2026-13-45 25:61", MessageType.TEXT);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown category " + category);
+    }
+  }
+
+  private static ClientMessage message(String userId, String username, String text, String timestamp,
+      MessageType type) {
+    return new ClientMessage(userId, username, text, timestamp, type, "6f1c2f5e-8d4b-4b8e-9a55-2a3c1d0e9f10");
+  }
+
+  @Benchmark
+  public ValidationResult legacy() {
+    return MessageValidator.validate(msg);
+  }
+
+  @Benchmark
+  public ValidationResult fast() {
+    return MessageValidator.validateFast(msg);
+  }
+}
@@ -0,0 +1,195 @@
+package benchmark;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import javax.websocket.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import websocket.RoomRegistry;
+
+/**
+ * Compares {@link RoomRegistry} with the original synchronizedSet-in-ConcurrentHashMap room tracking at 10k sessions.
+ *
+ * The "mixed" group runs broadcast iteration, session → room lookups and join/leave churn concurrently,
+ * which is the pattern a chat server sees during a connection storm while rooms are busy.
+ *
+ * Run: java -jar server-benchmark/target/benchmarks.jar RoomRegistryBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Group)
+public class RoomRegistryBenchmark {
+
+  @Param({"legacy", "registry"})
+  public String impl;
+
+  @Param({"10000"})
+  public int sessions;
+
+  @Param({"20"})
+  public int rooms;
+
+  private Membership membership;
+  private Session[] allSessions;
+  private String[] roomIds;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    membership = impl.equals("legacy") ? new LegacyMembership() : new RegistryMembership();
+    allSessions = new Session[sessions];
+    roomIds = new String[rooms];
+    for (int r = 0; r < rooms; r++) {
+      roomIds[r] = String.valueOf(r + 1);
+    }
+    for (int i = 0; i < sessions; i++) {
+      allSessions[i] = FakeSessions.create(i);
+      membership.join(roomIds[i % rooms], allSessions[i]);
+    }
+  }
+
+  @Benchmark
+  @Group("mixed")
+  @GroupThreads(4)
+  public void broadcast(Blackhole bh) {
+    membership.forEachInRoom(roomIds[ThreadLocalRandom.current().nextInt(rooms)], bh);
+  }
+
+  @Benchmark
+  @Group("mixed")
+  @GroupThreads(4)
+  public String lookup() {
+    return membership.roomOf(allSessions[ThreadLocalRandom.current().nextInt(sessions)]);
+  }
+
+  @Benchmark
+  @Group("mixed")
+  @GroupThreads(2)
+  public void churn() {
+//    Leave and rejoin the same room so the population stays at the configured size
+    int idx = ThreadLocalRandom.current().nextInt(sessions);
+    Session session = allSessions[idx];
+    if (membership.leave(session)) {
+      membership.join(roomIds[idx % rooms], session);
+    }
+  }
+
+  @Benchmark
+  @Group("iterateOnly")
+  @GroupThreads(8)
+  public void iterate(Blackhole bh) {
+    membership.forEachInRoom(roomIds[ThreadLocalRandom.current().nextInt(rooms)], bh);
+  }
+
+  /**
+   * Common view over both implementations so the benchmark bodies are identical.
+   */
+  interface Membership {
+    void join(String roomId, Session session);
+
+    boolean leave(Session session);
+
+    String roomOf(Session session);
+
+    void forEachInRoom(String roomId, Blackhole bh);
+  }
+
+  /**
+   * The structure ChatWebSocket used before RoomRegistry: a synchronized HashSet per room plus a reverse map.
+   */
+  static final class LegacyMembership implements Membership {
+    private final Map<String, Set<Session>> chatRooms = new ConcurrentHashMap<>();
+    private final Map<Session, String> webSocketToRoom = new ConcurrentHashMap<>();
+
+    @Override
+    public void join(String roomId, Session session) {
+      chatRooms.computeIfAbsent(roomId, k -> Collections.synchronizedSet(new HashSet<>())).add(session);
+      webSocketToRoom.put(session, roomId);
+    }
+
+    @Override
+    public boolean leave(Session session) {
+      String roomId = webSocketToRoom.remove(session);
+      if (roomId == null) {
+        return false;
+      }
+      Set<Session> members = chatRooms.get(roomId);
+      if (members != null) {
+        members.remove(session);
+        if (members.isEmpty()) {
+          chatRooms.remove(roomId);
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public String roomOf(Session session) {
+      return webSocketToRoom.get(session);
+    }
+
+    @Override
+    public void forEachInRoom(String roomId, Blackhole bh) {
+      Set<Session> members = chatRooms.get(roomId);
+      if (members == null) {
+        return;
+      }
+      synchronized (members) {
+        for (Session s : members) {
+          bh.consume(s);
+        }
+      }
+    }
+  }
+
+  static final class RegistryMembership implements Membership {
+    private final RoomRegistry registry = new RoomRegistry();
+
+    @Override
+    public void join(String roomId, Session session) {
+      registry.join(roomId, session);
+    }
+
+    @Override
+    public boolean leave(Session session) {
+      return registry.leave(session) != null;
+    }
+
+    @Override
+    public String roomOf(Session session) {
+      RoomRegistry.Room room = registry.roomOf(session);
+      return room == null ? null : room.getId();
+    }
+
+    @Override
+    public void forEachInRoom(String roomId, Blackhole bh) {
+      RoomRegistry.Room room = registry.getRoom(roomId);
+      if (room == null) {
+        return;
+      }
+      for (Session s : room.members()) {
+        bh.consume(s);
+      }
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import websocket.RoomRegistry;
+
+/**
+ * Cost of per-room sequencing when every thread broadcasts into the same room, the worst case for a busy room.
+ *
+ * Each operation stands in for ChatWebSocket.broadcast: serializeTokens of CPU work for building the JSON, then
+ * handoffTokens for queueing the frame on the outboxes.
+ *   none     unsequenced, as with chat.sequence.enabled=false
+ *   counter  takes a room sequence number (one atomic increment) but hands off in any order
+ *   ordered  takes a number, serializes, then waits for its turn and hands off in sequence order, as the server does
+ * The difference between counter and ordered is the price of ordered hand-off; it grows with the number of threads
+ * per room and with the hand-off time, and is worst when there are more threads than cores.
+ *
+ * Run: java -jar server-benchmark/target/benchmarks.jar RoomSequencingBenchmark -t 8
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class RoomSequencingBenchmark {
+
+  @Param({"none", "counter", "ordered"})
+  public String mode;
+
+  @Param({"200"})
+  public long serializeTokens;
+
+  @Param({"50"})
+  public long handoffTokens;
+
+  private RoomRegistry.Room room;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    RoomRegistry registry = new RoomRegistry();
+    room = registry.join("1", FakeSessions.create(0));
+  }
+
+  @Benchmark
+  public void broadcast(Blackhole bh) {
+    switch (mode) {
+      case "counter":
+        bh.consume(room.nextSequence());
+        Blackhole.consumeCPU(serializeTokens);
+        Blackhole.consumeCPU(handoffTokens);
+        break;
+      case "ordered":
+        long sequence = room.nextSequence();
+        Blackhole.consumeCPU(serializeTokens);
+        room.awaitTurn(sequence);
+        Blackhole.consumeCPU(handoffTokens);
+        room.publish(sequence);
+        break;
+      default:
+        Blackhole.consumeCPU(serializeTokens);
+        Blackhole.consumeCPU(handoffTokens);
+    }
+  }
+}
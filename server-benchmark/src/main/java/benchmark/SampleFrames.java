@@ -0,0 +1,41 @@
+package benchmark;
+
+import java.time.Instant;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Builds realistic inbound JSON frames for the server benchmarks.
+ *
+ * Field values follow the same distribution as the load-test client's util.MessageGenerator
+ * (userId 1..100000, username "user" + id, 50 fixed message texts, 90/5/5 TEXT/JOIN/LEAVE split, UUID message id)
+ * and the same field order Gson produces when ChatClient serializes a ClientMessage.
+ * The generator is mirrored rather than imported because shared-core and server both define model.ClientMessage
+ * and cannot share one classpath.
+ */
+final class SampleFrames {
+
+  private SampleFrames() {}
+
+  static String[] generate(int count, long seed) {
+    Random r = new Random(seed);
+    String[] frames = new String[count];
+    for (int i = 0; i < count; i++) {
+      String userId = String.valueOf(r.nextInt(100000) + 1);
+      String roomId = String.valueOf(r.nextInt(20) + 1);
+      String message = "Message " + (r.nextInt(50) + 1);
+      int msgTypePicker = r.nextInt(100);
+      String messageType = msgTypePicker <= 90 ? "TEXT" : msgTypePicker <= 95 ? "JOIN" : "LEAVE";
+      frames[i] = frame(userId, "user" + userId, message, Instant.now().toString(), messageType, roomId,
+          UUID.randomUUID().toString());
+    }
+    return frames;
+  }
+
+  static String frame(String userId, String username, String message, String timestamp, String messageType,
+      String roomId, String messageId) {
+    return "{\"userId\":\"" + userId + "\",\"username\":\"" + username + "\",\"message\":\"" + message
+        + "\",\"timestamp\":\"" + timestamp + "\",\"messageType\":\"" + messageType + "\",\"roomId\":\"" + roomId
+        + "\",\"messageId\":\"" + messageId + "\"}";
+  }
+}
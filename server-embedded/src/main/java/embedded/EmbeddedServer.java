@@ -0,0 +1,134 @@
+package embedded;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.servlet.ServletException;
+import javax.websocket.DeploymentException;
+import javax.websocket.server.ServerContainer;
+import listener.AppStatusListener;
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.servlets.DefaultServlet;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.websocket.server.WsSci;
+import service.Health;
+import service.Metrics;
+import websocket.ChatWebSocket;
+
+/**
+ * Runs the chat server on embedded Tomcat in this JVM: {@link ChatWebSocket} at ws://host:port/chat/{roomId},
+ * {@link Health} at /chat/health, {@link Metrics} at /chat/metrics and {@link AppStatusListener}, the same URLs as
+ * the WAR deployed as chat.war.
+ *
+ * The connector is configured from system properties, next to the server's own chat.* tunables (see ServerConfig):
+ *   chat.server.host             bind address (0.0.0.0)
+ *   chat.server.port             port (8080)
+ *   chat.server.protocol         nio or nio2 (nio)
+ *   chat.server.maxThreads       container worker threads, which run the WebSocket callbacks (200)
+ *   chat.server.minSpareThreads  worker threads kept alive when idle (10)
+ *   chat.server.acceptCount      TCP accept backlog (100)
+ *   chat.server.maxConnections   open connections before new ones wait in the backlog (10000)
+ *   chat.server.tcpNoDelay       disable Nagle on accepted sockets (true)
+ * Any other connector attribute can be set as chat.server.connector.NAME=VALUE, e.g.
+ * -Dchat.server.connector.socket.rxBufSize=65536. Tomcat 9's NIO connectors run a single acceptor and a single
+ * poller thread; acceptorThreadCount and pollerThreadCount are accepted but ignored.
+ *
+ * Run: java -Dchat.server.maxThreads=64 -jar server-embedded/target/chat-server.jar
+ */
+public final class EmbeddedServer {
+
+  private static final String CONTEXT_PATH = "/chat";
+  private static final String CONNECTOR_PREFIX = "chat.server.connector.";
+
+  private final Tomcat tomcat = new Tomcat();
+  private final Connector connector;
+
+  public EmbeddedServer(String host, int port) throws IOException {
+    File baseDir = Files.createTempDirectory("chat-tomcat").toFile();
+    baseDir.deleteOnExit();
+    tomcat.setBaseDir(baseDir.getAbsolutePath());
+
+    String protocol = System.getProperty("chat.server.protocol", "nio");
+    if (!protocol.equals("nio") && !protocol.equals("nio2")) {
+      throw new IllegalArgumentException("chat.server.protocol must be nio or nio2");
+    }
+    connector = new Connector(protocol.equals("nio2")
+        ? "org.apache.coyote.http11.Http11Nio2Protocol" : "org.apache.coyote.http11.Http11NioProtocol");
+    connector.setPort(port);
+    setConnectorProperty("address", host);
+    setConnectorProperty("maxThreads", System.getProperty("chat.server.maxThreads", "200"));
+    setConnectorProperty("minSpareThreads", System.getProperty("chat.server.minSpareThreads", "10"));
+    setConnectorProperty("acceptCount", System.getProperty("chat.server.acceptCount", "100"));
+    setConnectorProperty("maxConnections", System.getProperty("chat.server.maxConnections", "10000"));
+    setConnectorProperty("tcpNoDelay", System.getProperty("chat.server.tcpNoDelay", "true"));
+    Map<String, String> extra = new TreeMap<>();
+    for (String name : System.getProperties().stringPropertyNames()) {
+      if (name.startsWith(CONNECTOR_PREFIX)) {
+        extra.put(name.substring(CONNECTOR_PREFIX.length()), System.getProperty(name));
+      }
+    }
+    extra.forEach(this::setConnectorProperty);
+    tomcat.setConnector(connector);
+
+    Context context = tomcat.addContext(CONTEXT_PATH, baseDir.getAbsolutePath());
+//    WsSci creates the javax.websocket ServerContainer; the endpoint is registered with it once it exists
+    context.addServletContainerInitializer(new WsSci(), null);
+    context.addServletContainerInitializer((classes, servletContext) -> {
+      ServerContainer container = (ServerContainer) servletContext.getAttribute(ServerContainer.class.getName());
+      try {
+        container.addEndpoint(ChatWebSocket.class);
+      } catch (DeploymentException e) {
+        throw new ServletException("Could not register ChatWebSocket", e);
+      }
+    }, null);
+    context.addApplicationListener(AppStatusListener.class.getName());
+    Tomcat.addServlet(context, "health", new Health());
+    context.addServletMappingDecoded("/health", "health");
+    Tomcat.addServlet(context, "metrics", new Metrics());
+    context.addServletMappingDecoded("/metrics", "metrics");
+//    WsFilter performs the WebSocket upgrade, and filters only run for requests that map to some servlet
+    Tomcat.addServlet(context, "default", new DefaultServlet());
+    context.addServletMappingDecoded("/", "default");
+  }
+
+  private void setConnectorProperty(String name, String value) {
+    if (!connector.setProperty(name, value)) {
+      throw new IllegalArgumentException("Unknown connector attribute " + name + "=" + value);
+    }
+  }
+
+  public void start() throws LifecycleException {
+    tomcat.start();
+  }
+
+  public void stop() throws LifecycleException {
+    tomcat.stop();
+    tomcat.destroy();
+  }
+
+//  Port actually bound, useful when started on port 0
+  public int getPort() {
+    return connector.getLocalPort();
+  }
+
+  public static void main(String[] args) throws Exception {
+    String host = System.getProperty("chat.server.host", "0.0.0.0");
+    EmbeddedServer server = new EmbeddedServer(host, Integer.getInteger("chat.server.port", 8080));
+    server.start();
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      try {
+        server.stop();
+      } catch (LifecycleException e) {
+        System.err.println("Error stopping embedded server: " + e.getMessage());
+      }
+    }, "embedded-server-shutdown"));
+    System.out.println("Embedded chat server listening on ws://" + host + ":" + server.getPort() + CONTEXT_PATH
+        + "/{roomId} (worker threads: " + server.connector.getProperty("maxThreads") + ", protocol: "
+        + server.connector.getProtocolHandlerClassName() + ")");
+    server.tomcat.getServer().await();
+  }
+}
@@ -0,0 +1,108 @@
+package codec;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import model.ClientMessage;
+import model.MessageType;
+
+/**
+ * Server side of the compact binary framing. The client's codec.BinaryCodec (shared-core) mirrors this layout.
+ *
+ * Request frame (client → server), big-endian:
+ *   long  messageId most significant bits
+ *   long  messageId least significant bits
+ *   int   userId
+ *   byte  messageType (ordinal: TEXT=0, JOIN=1, LEAVE=2)
+ *   long  timestamp as epoch nanoseconds
+ *   byte  username length, then username UTF-8 bytes
+ *   short message length, then message UTF-8 bytes
+ *
+ * Ack frame (server → client):
+ *   long  messageId most significant bits
+ *   long  messageId least significant bits
+ *   byte  status (0 = SUCCESS)
+ *   long  server timestamp as epoch nanoseconds
+ */
+public final class BinaryCodec {
+
+  public static final int REQUEST_HEADER_SIZE = 8 + 8 + 4 + 1 + 8;
+  public static final int ACK_SIZE = 8 + 8 + 1 + 8;
+  public static final byte STATUS_SUCCESS = 0;
+
+  private static final int TYPE_OFFSET = 20;
+
+  private BinaryCodec() {}
+
+  /**
+   * Decodes a request frame. The messageId and timestamp stay in the frame (see the accessors below) and are only
+   * turned into Strings if something needs them, such as a fan-out broadcast.
+   * @throws IllegalArgumentException if the frame is truncated or its lengths are inconsistent
+   */
+  public static ClientMessage decode(ByteBuffer frame) {
+    try {
+      int base = frame.position();
+      ClientMessage msg = new ClientMessage();
+      int userId = frame.getInt(base + 16);
+      msg.setUserId(userId >= 0 && userId <= 100_000 ? ClientMessageDecoder.cachedUserId(userId) : Integer.toString(userId));
+      msg.setUserIdValue(userId);
+      msg.setMessageType(messageTypeOf(frame.get(base + TYPE_OFFSET)));
+
+      ByteBuffer body = frame.duplicate();
+      body.position(base + REQUEST_HEADER_SIZE);
+      int usernameLength = body.get() & 0xFF;
+      msg.setUsername(readUtf8(body, usernameLength));
+      int messageLength = body.getShort() & 0xFFFF;
+      msg.setMessage(readUtf8(body, messageLength));
+      if (body.hasRemaining()) {
+        throw new IllegalArgumentException(body.remaining() + " trailing bytes");
+      }
+      return msg;
+    } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+      throw new IllegalArgumentException("Truncated frame of " + frame.remaining() + " bytes");
+    }
+  }
+
+  private static String readUtf8(ByteBuffer buf, int length) {
+    if (length > buf.remaining()) {
+      throw new BufferUnderflowException();
+    }
+    String s;
+    if (buf.hasArray()) {
+      s = new String(buf.array(), buf.arrayOffset() + buf.position(), length, StandardCharsets.UTF_8);
+    } else {
+      byte[] bytes = new byte[length];
+      buf.duplicate().get(bytes);
+      s = new String(bytes, StandardCharsets.UTF_8);
+    }
+    buf.position(buf.position() + length);
+    return s;
+  }
+
+  private static MessageType messageTypeOf(byte ordinal) {
+    MessageType[] types = MessageType.values();
+    return ordinal >= 0 && ordinal < types.length ? types[ordinal] : null;
+  }
+
+//  Message id as the usual UUID String, for error frames and broadcasts
+  public static String messageIdString(ByteBuffer frame) {
+    if (frame.remaining() < 16) {
+      return null;
+    }
+    return new UUID(frame.getLong(frame.position()), frame.getLong(frame.position() + 8)).toString();
+  }
+
+  /**
+   * Builds an ack for a request frame, copying its message id bytes as-is.
+   */
+  public static ByteBuffer encodeAck(ByteBuffer request, byte status, long epochNanos) {
+    ByteBuffer ack = ByteBuffer.allocate(ACK_SIZE);
+    ack.putLong(request.getLong(request.position()))
+        .putLong(request.getLong(request.position() + 8))
+        .put(status)
+        .putLong(epochNanos);
+    ack.flip();
+    return ack;
+  }
+}
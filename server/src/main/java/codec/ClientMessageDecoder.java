@@ -0,0 +1,428 @@
+package codec;
+
+import com.google.gson.JsonSyntaxException;
+import model.ClientMessage;
+import model.MessageType;
+
+/**
+ * Streaming decoder specialised to the {@link ClientMessage} schema.
+ *
+ * Instead of Gson's reflective binding, the frame is scanned once, character by character:
+ *   - field names are matched in place with regionMatches, so no key Strings are created
+ *   - userId is parsed straight to an int; common ids reuse a cached String instead of allocating one
+ *   - messageType is mapped to the enum constant without building an intermediate String
+ *   - string values without escapes are taken with a single substring; escaped values are unescaped
+ *     into a thread-local StringBuilder that is reused across frames
+ * Unknown fields are skipped. Malformed input throws {@link JsonSyntaxException}, the same exception type
+ * the Gson path raises, so callers handle both decoders identically.
+ */
+public final class ClientMessageDecoder {
+
+//  userId values in the valid range are shared Strings, filled lazily (benign race: all writers store equal values)
+  private static final int MAX_CACHED_USER_ID = 100_000;
+  private static final String[] USER_ID_STRINGS = new String[MAX_CACHED_USER_ID + 1];
+
+  private static final ThreadLocal<ClientMessageDecoder> LOCAL = ThreadLocal.withInitial(ClientMessageDecoder::new);
+
+  private final StringBuilder scratch = new StringBuilder(256);
+  private String src;
+  private int pos;
+  private int len;
+
+  private ClientMessageDecoder() {}
+
+  /**
+   * Decodes one JSON text frame into a new ClientMessage using the calling thread's decoder.
+   */
+  public static ClientMessage decode(String frame) {
+    ClientMessageDecoder decoder = LOCAL.get();
+    try {
+      return decoder.parse(frame);
+    } finally {
+      decoder.src = null;
+    }
+  }
+
+  private ClientMessage parse(String frame) {
+    if (frame == null) {
+      throw new JsonSyntaxException("Empty frame");
+    }
+    src = frame;
+    pos = 0;
+    len = frame.length();
+
+    ClientMessage msg = new ClientMessage();
+    skipWhitespace();
+    expect('{');
+    skipWhitespace();
+    if (peek() == '}') {
+      pos++;
+      return finish(msg);
+    }
+    while (true) {
+      expect('"');
+      int keyStart = pos;
+      int keyEnd = src.indexOf('"', keyStart);
+      if (keyEnd < 0) {
+        throw error("Unterminated field name");
+      }
+      pos = keyEnd + 1;
+      skipWhitespace();
+      expect(':');
+      skipWhitespace();
+      readField(msg, keyStart, keyEnd - keyStart);
+      skipWhitespace();
+      char c = next();
+      if (c == '}') {
+        return finish(msg);
+      }
+      if (c != ',') {
+        throw error("Expected ',' or '}'");
+      }
+      skipWhitespace();
+    }
+  }
+
+  private ClientMessage finish(ClientMessage msg) {
+    skipWhitespace();
+    if (pos != len) {
+      throw error("JSON document was not fully consumed");
+    }
+    return msg;
+  }
+
+  private void readField(ClientMessage msg, int keyStart, int keyLen) {
+    switch (keyLen) {
+      case 6:
+        if (keyMatches(keyStart, "userId", keyLen)) {
+          readUserId(msg);
+          return;
+        }
+        if (keyMatches(keyStart, "roomId", keyLen)) {
+          msg.setRoomId(readString());
+          return;
+        }
+        if (keyMatches(keyStart, "status", keyLen)) {
+          msg.setStatus(readString());
+          return;
+        }
+        break;
+      case 7:
+        if (keyMatches(keyStart, "message", keyLen)) {
+          msg.setMessage(readString());
+          return;
+        }
+        break;
+      case 8:
+        if (keyMatches(keyStart, "username", keyLen)) {
+          msg.setUsername(readString());
+          return;
+        }
+        break;
+      case 9:
+        if (keyMatches(keyStart, "timestamp", keyLen)) {
+          msg.setTimestamp(readString());
+          return;
+        }
+        if (keyMatches(keyStart, "messageId", keyLen)) {
+          msg.setMessageId(readString());
+          return;
+        }
+        break;
+      case 11:
+        if (keyMatches(keyStart, "messageType", keyLen)) {
+          msg.setMessageType(readMessageType());
+          return;
+        }
+        break;
+      default:
+        break;
+    }
+    skipValue();
+  }
+
+  private boolean keyMatches(int keyStart, String name, int keyLen) {
+    return src.regionMatches(keyStart, name, 0, keyLen);
+  }
+
+  /**
+   * Reads userId as a quoted or bare number. Follows Integer.parseInt rules (optional sign, overflow is not a number)
+   * so validation gives the same answers as the Gson path; non-numeric ids are kept as text for the error message.
+   */
+  private void readUserId(ClientMessage msg) {
+    char c = peek();
+    if (c == 'n') {
+      expectLiteral("null");
+      msg.setUserId(null);
+      return;
+    }
+    boolean quoted = c == '"';
+    int start = quoted ? pos + 1 : pos;
+    int end = quoted ? scanStringEnd(start) : scanTokenEnd(start);
+    if (!quoted && end == start) {
+      throw error("Expected a value");
+    }
+    if (end < 0) {
+      // Escapes in an id can never form a number; fall back to the generic reader
+      msg.setUserId(readString());
+      return;
+    }
+    pos = quoted ? end + 1 : end;
+
+    int i = start;
+    boolean negative = false;
+    if (i < end && (src.charAt(i) == '-' || src.charAt(i) == '+')) {
+      negative = src.charAt(i) == '-';
+      i++;
+    }
+    int digitsStart = i;
+    long value = 0;
+    int significantDigits = 0;
+    while (i < end) {
+      char d = src.charAt(i);
+      if (d < '0' || d > '9') {
+        break;
+      }
+      value = value * 10 + (d - '0');
+      if (value != 0 && ++significantDigits > 10) {
+        break;
+      }
+      i++;
+    }
+    value = negative ? -value : value;
+    if (i != end || i == digitsStart || value > Integer.MAX_VALUE || value < Integer.MIN_VALUE) {
+      msg.setUserId(src.substring(start, end));
+      return;
+    }
+    int id = (int) value;
+    boolean canonical = digitsStart == start && (src.charAt(start) != '0' || end - start == 1);
+    msg.setUserId(canonical && id >= 0 && id <= MAX_CACHED_USER_ID ? cachedUserId(id) : src.substring(start, end));
+    msg.setUserIdValue(id);
+  }
+
+//  Shared String for an id in 0..100000; also used by BinaryCodec
+  static String cachedUserId(int id) {
+    String s = USER_ID_STRINGS[id];
+    if (s == null) {
+      s = Integer.toString(id);
+      USER_ID_STRINGS[id] = s;
+    }
+    return s;
+  }
+
+//  Unknown enum names decode to null, matching Gson's behaviour for enums
+  private MessageType readMessageType() {
+    char c = peek();
+    if (c != '"') {
+      skipValue();
+      return null;
+    }
+    int start = pos + 1;
+    int end = scanStringEnd(start);
+    if (end < 0) {
+      readString();
+      return null;
+    }
+    pos = end + 1;
+    int n = end - start;
+    if (n == 4 && src.regionMatches(start, "TEXT", 0, 4)) {
+      return MessageType.TEXT;
+    }
+    if (n == 4 && src.regionMatches(start, "JOIN", 0, 4)) {
+      return MessageType.JOIN;
+    }
+    if (n == 5 && src.regionMatches(start, "LEAVE", 0, 5)) {
+      return MessageType.LEAVE;
+    }
+    return null;
+  }
+
+  /**
+   * Reads a string value. Like Gson, bare numbers and booleans bound to a String field keep their literal text.
+   */
+  private String readString() {
+    char c = peek();
+    if (c == 'n') {
+      expectLiteral("null");
+      return null;
+    }
+    if (c != '"') {
+      int start = pos;
+      pos = scanTokenEnd(start);
+      if (pos == start) {
+        throw error("Expected a string value");
+      }
+      return src.substring(start, pos);
+    }
+    int start = pos + 1;
+    int end = scanStringEnd(start);
+    if (end >= 0) {
+      pos = end + 1;
+      return src.substring(start, end);
+    }
+    return readEscapedString(start);
+  }
+
+  private String readEscapedString(int start) {
+    scratch.setLength(0);
+    int i = start;
+    while (i < len) {
+      char c = src.charAt(i++);
+      if (c == '"') {
+        pos = i;
+        return scratch.toString();
+      }
+      if (c != '\\') {
+        scratch.append(c);
+        continue;
+      }
+      if (i >= len) {
+        break;
+      }
+      char e = src.charAt(i++);
+      switch (e) {
+        case '"':
+        case '\\':
+        case '/':
+          scratch.append(e);
+          break;
+        case 'b':
+          scratch.append('\b');
+          break;
+        case 'f':
+          scratch.append('\f');
+          break;
+        case 'n':
+          scratch.append('\n');
+          break;
+        case 'r':
+          scratch.append('\r');
+          break;
+        case 't':
+          scratch.append('\t');
+          break;
+        case 'u':
+          if (i + 4 > len) {
+            throw error("Truncated unicode escape");
+          }
+          int code = 0;
+          for (int k = 0; k < 4; k++) {
+            int digit = Character.digit(src.charAt(i++), 16);
+            if (digit < 0) {
+              throw error("Invalid unicode escape");
+            }
+            code = (code << 4) | digit;
+          }
+          scratch.append((char) code);
+          break;
+        default:
+          throw error("Invalid escape sequence");
+      }
+    }
+    throw error("Unterminated string");
+  }
+
+  /**
+   * Finds the closing quote of a string starting at start.
+   * @return index of the closing quote, or -1 if the string contains escapes (or is unterminated)
+   */
+  private int scanStringEnd(int start) {
+    for (int i = start; i < len; i++) {
+      char c = src.charAt(i);
+      if (c == '"') {
+        return i;
+      }
+      if (c == '\\') {
+        return -1;
+      }
+    }
+    throw error("Unterminated string");
+  }
+
+//  End of a bare token such as a number, true/false or null
+  private int scanTokenEnd(int start) {
+    int i = start;
+    while (i < len) {
+      char c = src.charAt(i);
+      if (c == ',' || c == '}' || c == ']' || c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+        break;
+      }
+      i++;
+    }
+    return i;
+  }
+
+//  Skips any JSON value, including nested objects and arrays
+  private void skipValue() {
+    char c = peek();
+    if (c == '"') {
+      readString();
+      return;
+    }
+    if (c != '{' && c != '[') {
+      int start = pos;
+      pos = scanTokenEnd(start);
+      if (pos == start) {
+        throw error("Expected a value");
+      }
+      return;
+    }
+    int depth = 0;
+    while (pos < len) {
+      char ch = src.charAt(pos);
+      if (ch == '"') {
+        readString();
+        continue;
+      }
+      pos++;
+      if (ch == '{' || ch == '[') {
+        depth++;
+      } else if (ch == '}' || ch == ']') {
+        if (--depth == 0) {
+          return;
+        }
+      }
+    }
+    throw error("Unterminated value");
+  }
+
+  private void expectLiteral(String literal) {
+    if (!src.startsWith(literal, pos)) {
+      throw error("Expected " + literal);
+    }
+    pos += literal.length();
+  }
+
+  private void expect(char expected) {
+    if (next() != expected) {
+      throw error("Expected '" + expected + "'");
+    }
+  }
+
+  private char peek() {
+    if (pos >= len) {
+      throw error("Unexpected end of input");
+    }
+    return src.charAt(pos);
+  }
+
+  private char next() {
+    char c = peek();
+    pos++;
+    return c;
+  }
+
+  private void skipWhitespace() {
+    while (pos < len) {
+      char c = src.charAt(pos);
+      if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+        return;
+      }
+      pos++;
+    }
+  }
+
+  private JsonSyntaxException error(String reason) {
+    return new JsonSyntaxException(reason + " at position " + pos);
+  }
+}
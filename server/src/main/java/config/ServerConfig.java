@@ -0,0 +1,46 @@
+package config;
+
+/**
+ * Central place for server tunables.
+ * Every value is read once from a JVM system property (e.g. -Dchat.fanout.enabled=true in Tomcat's setenv.sh),
+ * so experiments can switch modes without rebuilding the WAR. Defaults keep the original request/ack behaviour.
+ */
+public final class ServerConfig {
+
+//  Fan-out: deliver every validated message to all sessions in the room
+  public static final boolean FANOUT_ENABLED = Boolean.getBoolean("chat.fanout.enabled");
+//  Max frames buffered per session before new broadcast frames are dropped for that session
+  public static final int FANOUT_QUEUE_CAPACITY = Integer.getInteger("chat.fanout.queueCapacity", 1024);
+//  Threads that drain per-session outbound queues
+  public static final int FANOUT_WRITER_THREADS =
+      Integer.getInteger("chat.fanout.writerThreads", Runtime.getRuntime().availableProcessors());
+
+//  Ack path: "sync" (blocking basicRemote send on the container thread), "async" (per-session outbox, see
+//  websocket.SessionOutbox) or "batched" (async, plus acks grouped into one frame by websocket.AckBatcher)
+  private static final String ACK_MODE = System.getProperty("chat.ack.mode", "sync");
+  public static final boolean BATCHED_ACKS = "batched".equals(ACK_MODE);
+  public static final boolean ASYNC_ACKS = BATCHED_ACKS || "async".equals(ACK_MODE);
+//  Acks and errors waiting behind an in-flight send before the session is closed with TRY_AGAIN_LATER
+  public static final int ACK_WINDOW = Integer.getInteger("chat.ack.window", 128);
+//  Max waiting frames merged into one outbound frame once the in-flight send completes
+  public static final int ACK_COALESCE_MAX = Integer.getInteger("chat.ack.coalesceMax", 64);
+//  Batched acks: flush after N acks or T microseconds after the first ack of the batch, whichever comes first
+  public static final int ACK_BATCH_SIZE = Math.max(1, Integer.getInteger("chat.ack.batchSize", 32));
+  public static final long ACK_BATCH_MICROS = Math.max(1L, Long.getLong("chat.ack.batchMicros", 500L));
+
+//  Sessions get an outbox whenever fan-out or async acks are on; acks and broadcasts must share it because the
+//  container allows only one outstanding async send per session
+  public static final boolean OUTBOX_ENABLED = FANOUT_ENABLED || ASYNC_ACKS;
+
+//  Inbound JSON decoder: "gson" (reflective binding) or "streaming" (codec.ClientMessageDecoder)
+  public static final boolean STREAMING_DECODER = "streaming".equals(System.getProperty("chat.decoder", "gson"));
+
+//  Validation: "legacy" (MessageValidator.validate) or "fast" (MessageValidator.validateFast)
+  public static final boolean FAST_VALIDATION = "fast".equals(System.getProperty("chat.validation", "legacy"));
+
+//  Sequencing: number every accepted message per room, return the number in the JSON ack and hand broadcasts to the
+//  session outboxes in sequence order (see RoomRegistry.Room)
+  public static final boolean SEQUENCING_ENABLED = Boolean.getBoolean("chat.sequence.enabled");
+
+  private ServerConfig() {}
+}
@@ -1,8 +1,10 @@
 package listener;
 
+import config.ServerConfig;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 import javax.servlet.annotation.WebListener;
+import websocket.FanoutEngine;
 
 /**
  * AppStatusListener manages the global lifecycle of the web application.
@@ -33,6 +35,9 @@ public class AppStatusListener implements ServletContextListener {
   public void contextDestroyed(ServletContextEvent sce) {
     // Clean up global state before shutdown
     sce.getServletContext().setAttribute("webSocketServerStatus", "DOWN");
+    if (ServerConfig.OUTBOX_ENABLED) {
+      FanoutEngine.getInstance().shutdown();
+    }
     System.out.println("=== Chat Application Shutting Down: Status set to DOWN ===");
   }
 }
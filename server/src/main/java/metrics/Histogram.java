@@ -0,0 +1,58 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations in nanoseconds with power-of-two buckets, for Prometheus exposition.
+ *
+ * Bucket i counts values up to 2^(MIN_SHIFT + i) ns, from 256 ns to about 1.07 s, plus an overflow bucket. Recording
+ * is a leading-zero count and two LongAdder increments, so any number of container threads can record at once
+ * without contending on a shared cache line.
+ */
+public final class Histogram {
+
+  private static final int MIN_SHIFT = 8;
+  private static final int BUCKETS = 23;
+
+  private final LongAdder[] counts = new LongAdder[BUCKETS + 1];
+  private final LongAdder sumNanos = new LongAdder();
+
+  public Histogram() {
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = new LongAdder();
+    }
+  }
+
+  public void record(long nanos) {
+    long v = Math.max(0, nanos);
+    counts[indexOf(v)].increment();
+    sumNanos.add(v);
+  }
+
+  static int indexOf(long nanos) {
+    if (nanos <= 1L << MIN_SHIFT) {
+      return 0;
+    }
+//    ceil(log2(nanos)) - MIN_SHIFT, capped at the overflow bucket
+    int index = 64 - Long.numberOfLeadingZeros(nanos - 1) - MIN_SHIFT;
+    return Math.min(index, BUCKETS);
+  }
+
+//  Number of finite buckets; countAt(buckets()) is the overflow bucket
+  public int buckets() {
+    return BUCKETS;
+  }
+
+//  Inclusive upper bound of finite bucket i in nanoseconds
+  public long upperBoundNanos(int i) {
+    return 1L << (MIN_SHIFT + i);
+  }
+
+  public long countAt(int i) {
+    return counts[i].sum();
+  }
+
+  public long sumNanos() {
+    return sumNanos.sum();
+  }
+}
@@ -0,0 +1,61 @@
+package metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Server-wide counters and latency histograms, exported in Prometheus text format by the /metrics endpoint.
+ * Every update is a LongAdder increment (plus a nanoTime pair for the histograms), cheap enough for the per-message
+ * path of ChatWebSocket.
+ */
+public final class ServerMetrics {
+  public static final LongAdder textReceived = new LongAdder();
+  public static final LongAdder binaryReceived = new LongAdder();
+  public static final LongAdder textAcked = new LongAdder();
+  public static final LongAdder binaryAcked = new LongAdder();
+//  Payload bytes of inbound frames, text frames counted as their UTF-8 encoding
+  public static final LongAdder bytesIn = new LongAdder();
+//  Payload bytes of acks, errors and broadcast deliveries handed to the container or the session outboxes
+  public static final LongAdder bytesOut = new LongAdder();
+//  Blocking sends that threw, and async sends whose completion reported a failure
+  public static final LongAdder syncSendFailures = new LongAdder();
+  public static final LongAdder asyncSendFailures = new LongAdder();
+//  Time spent in MessageValidator, and in the ack send (the blocking write, or the hand-off to the outbox)
+  public static final Histogram validationNanos = new Histogram();
+  public static final Histogram ackSendNanos = new Histogram();
+
+//  Error frames sent, by error type (VALIDATION_ERROR, INVALID_JSON, ...)
+  private static final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+  public static void recordError(String errorType) {
+    LongAdder counter = errors.get(errorType);
+    if (counter == null) {
+      counter = errors.computeIfAbsent(errorType, k -> new LongAdder());
+    }
+    counter.increment();
+  }
+
+//  Error counts by type, sorted by type
+  public static Map<String, Long> errorCounts() {
+    Map<String, Long> res = new TreeMap<>();
+    errors.forEach((type, counter) -> res.put(type, counter.sum()));
+    return res;
+  }
+
+//  Length of the text once UTF-8 encoded, without encoding it
+  public static long utf8Length(CharSequence text) {
+    long bytes = text.length();
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c >= 0x80) {
+//        Two bytes up to U+07FF, three for the rest; a surrogate pair is four, two for each half
+        bytes += c < 0x800 || Character.isSurrogate(c) ? 1 : 2;
+      }
+    }
+    return bytes;
+  }
+
+  private ServerMetrics() {}
+}
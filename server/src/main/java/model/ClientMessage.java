@@ -14,6 +14,12 @@ public class ClientMessage {
 
   private String roomId;
   private String status;
+//  Per-room sequence number stamped by the server on broadcasts when sequencing is enabled
+  private Long sequence;
+
+//  Numeric form of userId, set by the streaming decoder so validation does not parse the string again
+  private transient int userIdValue;
+  private transient boolean userIdNumeric;
 
   public ClientMessage() {}
 
@@ -32,6 +38,22 @@ public class ClientMessage {
 
   public void setUserId(String userId) {
     this.userId = userId;
+    this.userIdNumeric = false;
+  }
+
+  public int getUserIdValue() {
+    return userIdValue;
+  }
+
+//  Records the already-parsed numeric userId; call after setUserId
+  public void setUserIdValue(int userIdValue) {
+    this.userIdValue = userIdValue;
+    this.userIdNumeric = true;
+  }
+
+//  True if userIdValue holds the parsed value of userId
+  public boolean isUserIdNumeric() {
+    return userIdNumeric;
   }
 
   public String getUsername() {
@@ -89,4 +111,12 @@ public class ClientMessage {
   public void setMessageId(String messageId) {
     this.messageId = messageId;
   }
+
+  public Long getSequence() {
+    return sequence;
+  }
+
+  public void setSequence(Long sequence) {
+    this.sequence = sequence;
+  }
 }
@@ -7,6 +7,8 @@ public class SuccessMsg {
   String messageId;
   String status;
   String timestamp;
+//  Per-room sequence number, only set when sequencing is enabled (omitted from the JSON otherwise)
+  Long sequence;
 
 
   public SuccessMsg() {}
@@ -40,4 +42,12 @@ public class SuccessMsg {
   public void setTimestamp(String timestamp) {
     this.timestamp = timestamp;
   }
+
+  public Long getSequence() {
+    return sequence;
+  }
+
+  public void setSequence(Long sequence) {
+    this.sequence = sequence;
+  }
 }
@@ -5,11 +5,13 @@ import java.util.*;
 import javax.servlet.annotation.WebServlet;
 
 import com.google.gson.Gson;
+import config.ServerConfig;
 import java.io.IOException;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import websocket.FanoutEngine;
 
 /**
  * REST Endpoint: `/health`
@@ -29,6 +31,9 @@ public class Health extends HttpServlet {
     Map<String, Object> response = new HashMap<>();
     response.put("webSocketStatus", isWsOpen ? "UP" : "DOWN");
     response.put("timestamp", Instant.now().toString());
+    if (ServerConfig.OUTBOX_ENABLED) {
+      response.put("fanout", FanoutEngine.getInstance().snapshot());
+    }
     res.getWriter().write(gson.toJson(response));
   }
 
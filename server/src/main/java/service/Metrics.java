@@ -0,0 +1,101 @@
+package service;
+
+import config.ServerConfig;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import metrics.Histogram;
+import metrics.ServerMetrics;
+import websocket.ChatWebSocket;
+import websocket.FanoutEngine;
+import websocket.RoomRegistry.Room;
+
+/**
+ * REST Endpoint: `/metrics`
+ * It GET the server counters in Prometheus text format, for scraping during load tests
+ */
+
+@WebServlet("/metrics")
+public class Metrics extends HttpServlet {
+
+  @Override
+  protected void doGet(HttpServletRequest req, HttpServletResponse res) throws ServletException, IOException {
+    res.setContentType("text/plain; version=0.0.4");
+    res.setCharacterEncoding("UTF-8");
+    PrintWriter out = res.getWriter();
+
+    List<Room> rooms = new ArrayList<>(ChatWebSocket.getRoomRegistry().rooms());
+    rooms.sort(Comparator.comparing(Room::getId));
+    header(out, "chat_sessions", "gauge", "Open WebSocket sessions");
+    out.println("chat_sessions " + ChatWebSocket.getRoomRegistry().sessionCount());
+    header(out, "chat_room_sessions", "gauge", "Open WebSocket sessions by room");
+    for (Room room : rooms) {
+      out.println("chat_room_sessions{room=\"" + escape(room.getId()) + "\"} " + room.size());
+    }
+
+    header(out, "chat_messages_received_total", "counter", "Inbound chat messages by wire protocol");
+    out.println("chat_messages_received_total{protocol=\"json\"} " + ServerMetrics.textReceived.sum());
+    out.println("chat_messages_received_total{protocol=\"binary\"} " + ServerMetrics.binaryReceived.sum());
+    header(out, "chat_messages_acked_total", "counter", "Chat messages that passed validation and were acked");
+    out.println("chat_messages_acked_total{protocol=\"json\"} " + ServerMetrics.textAcked.sum());
+    out.println("chat_messages_acked_total{protocol=\"binary\"} " + ServerMetrics.binaryAcked.sum());
+    header(out, "chat_messages_rejected_total", "counter", "Error frames sent by error type");
+    for (Map.Entry<String, Long> e : ServerMetrics.errorCounts().entrySet()) {
+      out.println("chat_messages_rejected_total{error=\"" + escape(e.getKey()) + "\"} " + e.getValue());
+    }
+
+    header(out, "chat_bytes_received_total", "counter", "Payload bytes of inbound frames");
+    out.println("chat_bytes_received_total " + ServerMetrics.bytesIn.sum());
+    header(out, "chat_bytes_sent_total", "counter", "Payload bytes of outbound acks, errors and broadcasts");
+    out.println("chat_bytes_sent_total " + ServerMetrics.bytesOut.sum());
+    header(out, "chat_send_failures_total", "counter", "Failed outbound sends by send mode");
+    out.println("chat_send_failures_total{mode=\"sync\"} " + ServerMetrics.syncSendFailures.sum());
+    out.println("chat_send_failures_total{mode=\"async\"} " + ServerMetrics.asyncSendFailures.sum());
+
+    histogram(out, "chat_validation_seconds", "Time spent validating a chat message", ServerMetrics.validationNanos);
+    histogram(out, "chat_ack_send_seconds", "Time spent sending an ack, or handing it to the outbox",
+        ServerMetrics.ackSendNanos);
+
+    if (ServerConfig.OUTBOX_ENABLED) {
+      Map<String, Object> fanout = FanoutEngine.getInstance().snapshot();
+      header(out, "chat_outbox_dropped_total", "counter", "Frames dropped by full session outboxes");
+      out.println("chat_outbox_dropped_total " + fanout.get("dropped"));
+      header(out, "chat_outbox_queue_depth", "gauge", "Frames queued across all session outboxes");
+      out.println("chat_outbox_queue_depth " + fanout.get("queueDepth"));
+    }
+    out.flush();
+  }
+
+  private static void header(PrintWriter out, String name, String type, String help) {
+    out.println("# HELP " + name + " " + help);
+    out.println("# TYPE " + name + " " + type);
+  }
+
+//  Cumulative buckets in seconds; the counts are read bucket by bucket, so a scrape racing with updates can be off by
+//  the few observations recorded while it runs
+  private static void histogram(PrintWriter out, String name, String help, Histogram h) {
+    header(out, name, "histogram", help);
+    long cumulative = 0;
+    for (int i = 0; i < h.buckets(); i++) {
+      cumulative += h.countAt(i);
+      out.println(name + "_bucket{le=\"" + h.upperBoundNanos(i) / 1e9 + "\"} " + cumulative);
+    }
+    cumulative += h.countAt(h.buckets());
+    out.println(name + "_bucket{le=\"+Inf\"} " + cumulative);
+    out.println(name + "_sum " + h.sumNanos() / 1e9);
+    out.println(name + "_count " + cumulative);
+  }
+
+//  Label values escape backslash, double quote and newline
+  private static String escape(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+}
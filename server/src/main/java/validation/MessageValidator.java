@@ -7,8 +7,30 @@ import model.MessageType;
 
 /**
  * This class is a message validator, it validates the message that client send. It returns an instance of ValidationResult containing validation result, including if the message is valid or not, if not, which validation failed
+ *
+ * {@link #validateFast(ClientMessage)} applies the same rules without regex, exceptions or per-call allocation and
+ * returns shared ValidationResult instances; it is selected with -Dchat.validation=fast.
  */
 public class MessageValidator {
+
+  private static final int MIN_USER_ID = 1;
+  private static final int MAX_USER_ID = 100000;
+  private static final int MIN_USER_NAME_LENGTH = 3;
+  private static final int MAX_USER_NAME_LENGTH = 20;
+  private static final int MAX_MESSAGE_LENGTH = 500;
+
+//  Interned results: messages are identical to the ones built by validate()
+  public static final ValidationResult VALID = new ValidationResult(true, "Valid");
+  public static final ValidationResult USER_ID_REQUIRED = new ValidationResult(false, "User Id is required");
+  public static final ValidationResult USER_ID_NOT_NUMBER = new ValidationResult(false, "User Id must be a number");
+  public static final ValidationResult USER_ID_OUT_OF_RANGE = new ValidationResult(false, "User Id must between 1 to 100000");
+  public static final ValidationResult USER_NAME_REQUIRED = new ValidationResult(false, "User name is required");
+  public static final ValidationResult USER_NAME_INVALID = new ValidationResult(false, "User name must contain 3 to 20 characters");
+  public static final ValidationResult MESSAGE_REQUIRED = new ValidationResult(false, "Message is required");
+  public static final ValidationResult MESSAGE_TOO_LONG = new ValidationResult(false, "Message must contain up to 500 characters");
+  public static final ValidationResult MESSAGE_TYPE_REQUIRED = new ValidationResult(false, "Message type is required");
+  public static final ValidationResult TIMESTAMP_INVALID = new ValidationResult(false, "Timestamp must be ISO-8601");
+
   public static ValidationResult validate(ClientMessage req) {
 //    UserId
     if (req.getUserId() == null || req.getMessage().isEmpty()) {
@@ -64,6 +86,214 @@ public class MessageValidator {
     return new ValidationResult(true, "Valid");
   }
 
+  /**
+   * Same rules and error messages as {@link #validate(ClientMessage)}, in the same order, but:
+   *   - userId is scanned by hand (or taken from the streaming decoder) instead of Integer.parseInt in a try/catch
+   *   - the username regex is replaced by a length check and an ASCII letter/digit scan
+   *   - the timestamp is checked by {@link #isIsoInstant(String)}, which only falls back to Instant.parse for rare forms
+   *   - results are the shared constants above, so nothing is allocated on success or failure
+   * Unlike validate(), a null message or timestamp is reported as an error instead of throwing NullPointerException.
+   */
+  public static ValidationResult validateFast(ClientMessage req) {
+    ValidationResult result = validateFields(req);
+    if (result != VALID) {
+      return result;
+    }
+    if (!isIsoInstant(req.getTimestamp())) {
+      return TIMESTAMP_INVALID;
+    }
+    return VALID;
+  }
+
+  /**
+   * Validation for binary frames: the timestamp travels as epoch nanos and cannot be malformed,
+   * so only the remaining fields are checked.
+   */
+  public static ValidationResult validateBinary(ClientMessage req) {
+    return validateFields(req);
+  }
+
+//  Every rule except the timestamp, in the same order as validate()
+  private static ValidationResult validateFields(ClientMessage req) {
+    String rawUserId = req.getUserId();
+    String message = req.getMessage();
+//    validate() reports an empty message as a missing user id; kept for identical results
+    if (rawUserId == null || (message != null && message.isEmpty())) {
+      return USER_ID_REQUIRED;
+    }
+    long userId = req.isUserIdNumeric() ? req.getUserIdValue() : parseUserId(rawUserId);
+    if (userId == Long.MIN_VALUE) {
+      return USER_ID_NOT_NUMBER;
+    }
+    if (userId < MIN_USER_ID || userId > MAX_USER_ID) {
+      return USER_ID_OUT_OF_RANGE;
+    }
+
+    String userName = req.getUsername();
+    if (userName == null || userName.isEmpty()) {
+      return USER_NAME_REQUIRED;
+    }
+    if (!isValidUserName(userName)) {
+      return USER_NAME_INVALID;
+    }
+
+    if (message == null) {
+      return MESSAGE_REQUIRED;
+    }
+    if (message.length() > MAX_MESSAGE_LENGTH) {
+      return MESSAGE_TOO_LONG;
+    }
+
+//    A non-null enum value is always a valid MessageType
+    if (req.getMessageType() == null) {
+      return MESSAGE_TYPE_REQUIRED;
+    }
+    return VALID;
+  }
+
+  /**
+   * Parses a userId following Integer.parseInt rules (optional sign, decimal digits, int range).
+   * @return the value, or Long.MIN_VALUE if the text is not a valid int
+   */
+  static long parseUserId(String s) {
+    int len = s.length();
+    int i = 0;
+    boolean negative = false;
+    if (len > 0 && (s.charAt(0) == '-' || s.charAt(0) == '+')) {
+      negative = s.charAt(0) == '-';
+      i = 1;
+    }
+    if (i == len) {
+      return Long.MIN_VALUE;
+    }
+    long value = 0;
+    for (; i < len; i++) {
+      char c = s.charAt(i);
+      if (c < '0' || c > '9') {
+        return Long.MIN_VALUE;
+      }
+      value = value * 10 + (c - '0');
+      if (value > (long) Integer.MAX_VALUE + 1) {
+        return Long.MIN_VALUE;
+      }
+    }
+    value = negative ? -value : value;
+    return value > Integer.MAX_VALUE || value < Integer.MIN_VALUE ? Long.MIN_VALUE : value;
+  }
+
+//  Equivalent to matches("^[a-zA-Z0-9]{3,20}$")
+  static boolean isValidUserName(String s) {
+    int len = s.length();
+    if (len < MIN_USER_NAME_LENGTH || len > MAX_USER_NAME_LENGTH) {
+      return false;
+    }
+    for (int i = 0; i < len; i++) {
+      char c = s.charAt(i);
+      if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9'))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Non-throwing check for what Instant.parse accepts.
+   * The common shape "yyyy-MM-ddTHH:mm:ss[.fffffffff]Z" (what Instant.toString produces; Instant.parse also accepts
+   * lowercase 't' and 'z') is verified field by field,
+   * including month lengths and leap years. Text that cannot be ISO-8601 at all is rejected directly. Only the rare
+   * legal variants (signed or 5+ digit years, offsets, 24:00:00, leap seconds) fall back to Instant.parse.
+   */
+  static boolean isIsoInstant(String s) {
+    if (s == null) {
+      return false;
+    }
+    int len = s.length();
+    if (len < 20 || (s.indexOf('T') < 0 && s.indexOf('t') < 0)) {
+      return false;
+    }
+    char first = s.charAt(0);
+    if (first != '+' && first != '-' && !isDigit(first)) {
+      return false;
+    }
+    char separator = s.charAt(10);
+    if (len > 30 || !isDigit(first) || s.charAt(4) != '-' || s.charAt(7) != '-' || (separator != 'T' && separator != 't')
+        || s.charAt(13) != ':' || s.charAt(16) != ':') {
+      return parsesAsInstant(s);
+    }
+    int year = digits(s, 0, 4);
+    int month = digits(s, 5, 2);
+    int day = digits(s, 8, 2);
+    int hour = digits(s, 11, 2);
+    int minute = digits(s, 14, 2);
+    int second = digits(s, 17, 2);
+    if (year < 0 || month < 0 || day < 0 || hour < 0 || minute < 0 || second < 0) {
+      return false;
+    }
+    int i = 19;
+    if (s.charAt(i) == '.') {
+      int fractionStart = ++i;
+      while (i < len && isDigit(s.charAt(i))) {
+        i++;
+      }
+      int fractionDigits = i - fractionStart;
+      if (fractionDigits == 0 || fractionDigits > 9) {
+        return parsesAsInstant(s);
+      }
+    }
+    if (i != len - 1 || (s.charAt(i) != 'Z' && s.charAt(i) != 'z')) {
+      return parsesAsInstant(s);
+    }
+    if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+      return false;
+    }
+    if (hour > 23 || second > 59) {
+      // 24:00:00 and leap seconds have special rules in Instant.parse
+      return parsesAsInstant(s);
+    }
+    return minute <= 59;
+  }
+
+  private static boolean parsesAsInstant(String s) {
+    try {
+      Instant.parse(s);
+      return true;
+    } catch (DateTimeParseException e) {
+      return false;
+    }
+  }
+
+//  Reads count decimal digits at offset, or -1 if any is not a digit
+  private static int digits(String s, int offset, int count) {
+    int value = 0;
+    for (int i = offset; i < offset + count; i++) {
+      char c = s.charAt(i);
+      if (!isDigit(c)) {
+        return -1;
+      }
+      value = value * 10 + (c - '0');
+    }
+    return value;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static int daysInMonth(int year, int month) {
+    switch (month) {
+      case 2:
+        boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+        return leap ? 29 : 28;
+      case 4:
+      case 6:
+      case 9:
+      case 11:
+        return 30;
+      default:
+        return 31;
+    }
+  }
+
   /**
    * Encapsulate validation result in this class
    */
@@ -0,0 +1,128 @@
+package websocket;
+
+import codec.BinaryCodec;
+import java.nio.ByteBuffer;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.websocket.Session;
+
+/**
+ * Accumulates the acks of one session and hands them to its {@link SessionOutbox} as a single frame.
+ * A batch is flushed once it holds {@code maxAcks} acks or {@code maxDelayMicros} after its first ack, whichever
+ * comes first. Text acks are flushed as a JSON array of SuccessMsg objects, binary acks as fixed-size acks back to back,
+ * so the client can still resolve every message id on its own.
+ */
+final class AckBatcher {
+
+  private final Session session;
+  private final int maxAcks;
+  private final long maxDelayMicros;
+  private final ScheduledExecutorService timer;
+  private final FanoutEngine.Stats stats;
+
+//  Guarded by this
+  private StringBuilder text;
+  private int textCount;
+  private ByteBuffer binary;
+  private ScheduledFuture<?> pendingFlush;
+
+  AckBatcher(Session session, int maxAcks, long maxDelayMicros, ScheduledExecutorService timer,
+      FanoutEngine.Stats stats) {
+    this.session = session;
+    this.maxAcks = maxAcks;
+    this.maxDelayMicros = maxDelayMicros;
+    this.timer = timer;
+    this.stats = stats;
+  }
+
+  void addText(String ack) {
+    boolean full;
+    synchronized (this) {
+      if (text == null) {
+        text = new StringBuilder(ack.length() * maxAcks + maxAcks + 1).append('[');
+      } else {
+        text.append(',');
+      }
+      text.append(ack);
+      textCount++;
+      full = textCount >= maxAcks;
+      if (!full) {
+        armTimer();
+      }
+    }
+    if (full) {
+      flush();
+    }
+  }
+
+  void addBinary(ByteBuffer ack) {
+    boolean full;
+    synchronized (this) {
+      if (binary == null) {
+        binary = ByteBuffer.allocate(BinaryCodec.ACK_SIZE * maxAcks);
+      }
+      binary.put(ack.duplicate());
+      full = !binary.hasRemaining();
+      if (!full) {
+        armTimer();
+      }
+    }
+    if (full) {
+      flush();
+    }
+  }
+
+//  Starts the flush deadline when the first ack of a batch arrives
+  private void armTimer() {
+    if (pendingFlush != null) {
+      return;
+    }
+    try {
+      pendingFlush = timer.schedule(this::flush, maxDelayMicros, TimeUnit.MICROSECONDS);
+    } catch (RejectedExecutionException e) {
+      // Timer is shutting down with the application; the next add flushes by size
+    }
+  }
+
+  /**
+   * Hands whatever is batched to the outbox. Safe to call from the timer and from adding threads at once;
+   * the send itself happens outside the lock.
+   */
+  void flush() {
+    String textBatch = null;
+    ByteBuffer binaryBatch = null;
+    int acks = 0;
+    synchronized (this) {
+      if (pendingFlush != null) {
+        pendingFlush.cancel(false);
+        pendingFlush = null;
+      }
+      if (text != null) {
+        textBatch = text.append(']').toString();
+        acks += textCount;
+        text = null;
+        textCount = 0;
+      }
+      if (binary != null) {
+        binary.flip();
+        binaryBatch = binary;
+        acks += binary.remaining() / BinaryCodec.ACK_SIZE;
+        binary = null;
+      }
+    }
+    if (acks == 0) {
+      return;
+    }
+    stats.ackBatches.increment();
+    stats.batchedAcks.add(acks);
+    FanoutEngine engine = FanoutEngine.getInstance();
+    if (textBatch != null) {
+      engine.sendText(session, textBatch);
+    }
+    if (binaryBatch != null) {
+      engine.sendBinary(session, binaryBatch);
+    }
+  }
+}
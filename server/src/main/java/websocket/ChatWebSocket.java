@@ -1,11 +1,14 @@
 package websocket;
 
+import codec.BinaryCodec;
+import codec.ClientMessageDecoder;
 import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
+import config.ServerConfig;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.time.Instant;
-import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.List;
 import javax.websocket.CloseReason;
 import javax.websocket.OnClose;
 import javax.websocket.OnError;
@@ -14,6 +17,7 @@ import javax.websocket.OnOpen;
 import javax.websocket.Session;
 import javax.websocket.server.PathParam;
 import javax.websocket.server.ServerEndpoint;
+import metrics.ServerMetrics;
 import model.ClientMessage;
 import model.ErrorMsg;
 import model.SuccessMsg;
@@ -22,10 +26,18 @@ import validation.MessageValidator.ValidationResult;
 
 /**
  * ChatWebSocket is a WebSocket server that manages chat rooms and client connections.
- * Each WebSocket connection is associated with exactly one chat room, identified by the URI path (/chat/{roomId}). The server tracks:
- *   room → set of WebSocket connections
- *   WebSocket → room mapping
+ * Each WebSocket connection is associated with exactly one chat room, identified by the URI path (/chat/{roomId}).
+ * Room membership (room → sessions and session → room) is tracked by a lock-free {@link RoomRegistry}.
  * The server validates incoming messages, returns success responses for valid messages, and sends structured error responses for invalid input or protocol errors.
+ * Clients may send either JSON text frames or compact binary frames ({@link BinaryCodec}); each message is acknowledged
+ * in the format it arrived in.
+ * When fan-out mode is enabled (-Dchat.fanout.enabled=true), every valid message is also broadcast to all sessions in its room through {@link FanoutEngine}.
+ * With fan-out or async acks (-Dchat.ack.mode=async) enabled, acks and errors are queued on the session's outbox
+ * instead of being written with a blocking send, so a slow client never stalls a container thread.
+ * Batched acks (-Dchat.ack.mode=batched) additionally group up to N acks per session into one frame.
+ * With sequencing (-Dchat.sequence.enabled=true) every accepted message gets the next number of its room; the number
+ * is returned in the JSON ack and carried by the broadcast, and broadcasts reach the outboxes in sequence order.
+ * Traffic, errors, validation time and ack send time are counted in {@link ServerMetrics} and served by /metrics.
  */
 
 /**
@@ -37,10 +49,13 @@ import validation.MessageValidator.ValidationResult;
 @ServerEndpoint("/{roomId}")
 public class ChatWebSocket {
   private final Gson gson = new Gson();
-//  Maps roomId to all websocket connections in that room
-  private static final Map<String, Set<Session>> chatRooms = new ConcurrentHashMap<>();
-//  Maps each websocket connection to its associated roomId
-  private static final Map<Session, String> webSocketToRoom = new ConcurrentHashMap<>();
+//  Tracks room membership for all websocket connections
+  private static final RoomRegistry roomRegistry = new RoomRegistry();
+
+//  Room membership, read by the metrics endpoint
+  public static RoomRegistry getRoomRegistry() {
+    return roomRegistry;
+  }
 
 
   /**
@@ -59,8 +74,10 @@ public class ChatWebSocket {
       return;
     }
 
-    chatRooms.computeIfAbsent(roomId, k -> Collections.synchronizedSet(new HashSet<>())).add(session);
-    webSocketToRoom.put(session, roomId);
+    if (ServerConfig.OUTBOX_ENABLED) {
+      FanoutEngine.getInstance().register(session);
+    }
+    roomRegistry.join(roomId, session);
 
     System.out.println("Connection opened: " + session.getId() + " in room " + roomId);
   }
@@ -71,15 +88,9 @@ public class ChatWebSocket {
    */
   @OnClose
   public void onClose(Session session) {
-    String roomId = webSocketToRoom.remove(session);
-    if (roomId != null) {
-      Set<Session> sessions = chatRooms.get(roomId);
-      if (sessions != null) {
-        sessions.remove(session);
-        if (sessions.isEmpty()) {
-          chatRooms.remove(roomId);
-        }
-      }
+    roomRegistry.leave(session);
+    if (ServerConfig.OUTBOX_ENABLED) {
+      FanoutEngine.getInstance().unregister(session);
     }
     System.out.println("Connection closed: " + session.getId());
   }
@@ -90,31 +101,144 @@ public class ChatWebSocket {
    */
   @OnMessage
   public void onMessage(Session session, String message) {
+    ServerMetrics.textReceived.increment();
+    ServerMetrics.bytesIn.add(ServerMetrics.utf8Length(message));
     try {
-      ClientMessage req = gson.fromJson(message, ClientMessage.class);
-      ValidationResult validationResult = MessageValidator.validate(req);
+      ClientMessage req = ServerConfig.STREAMING_DECODER
+          ? ClientMessageDecoder.decode(message)
+          : gson.fromJson(message, ClientMessage.class);
+      long validationStart = System.nanoTime();
+      ValidationResult validationResult = ServerConfig.FAST_VALIDATION
+          ? MessageValidator.validateFast(req)
+          : MessageValidator.validate(req);
+      ServerMetrics.validationNanos.record(System.nanoTime() - validationStart);
 
       if (!validationResult.getResult()) {
         sendErrorMessage(session, "VALIDATION_ERROR", validationResult.getErrorMessage(), req.getMessageId());
       } else {
-        String roomId = webSocketToRoom.get(session);
-        req.setRoomId(roomId);
+        RoomRegistry.Room room = roomRegistry.roomOf(session);
+        req.setRoomId(room == null ? null : room.getId());
         req.setStatus("SUCCESS");
         req.setTimestamp(Instant.now().toString());
+        long sequence = -1;
+        try {
+          sequence = nextSequence(room);
+          SuccessMsg successMsg = new SuccessMsg(req.getMessageId(), req.getStatus(), req.getTimestamp());
+          if (sequence >= 0) {
+            successMsg.setSequence(sequence);
+          }
+          long ackStart = System.nanoTime();
+          sendAck(session, gson.toJson(successMsg));
+          ServerMetrics.ackSendNanos.record(System.nanoTime() - ackStart);
+          ServerMetrics.textAcked.increment();
+        } finally {
+//          The message is accepted even if its ack fails, and a sequenced room waits for this number
+          if (ServerConfig.FANOUT_ENABLED) {
+            broadcast(room, req, sequence);
+          }
+        }
+      }
+
+    } catch (JsonSyntaxException e) {
+      sendErrorMessage(session, "INVALID_JSON", "Invalid JSON format: " + e.getMessage(), null);
+    }
+  }
 
-        SuccessMsg successMsg = new SuccessMsg(req.getMessageId(), req.getStatus(), req.getTimestamp());
-//        prevent multiple threads from overdriving the same socket
+  /**
+   * Handles binary-protocol messages. Mirrors {@link #onMessage(Session, String)} but acks with a binary frame that
+   * echoes the message id bytes, so no UUID or timestamp Strings are built unless fan-out needs them.
+   */
+  @OnMessage
+  public void onBinaryMessage(Session session, ByteBuffer frame) {
+    ServerMetrics.binaryReceived.increment();
+    ServerMetrics.bytesIn.add(frame.remaining());
+    ClientMessage req;
+    try {
+      req = BinaryCodec.decode(frame);
+    } catch (IllegalArgumentException e) {
+      sendErrorMessage(session, "INVALID_FRAME", "Invalid binary frame: " + e.getMessage(), BinaryCodec.messageIdString(frame));
+      return;
+    }
+    long validationStart = System.nanoTime();
+    ValidationResult validationResult = MessageValidator.validateBinary(req);
+    ServerMetrics.validationNanos.record(System.nanoTime() - validationStart);
+    if (!validationResult.getResult()) {
+      sendErrorMessage(session, "VALIDATION_ERROR", validationResult.getErrorMessage(), BinaryCodec.messageIdString(frame));
+      return;
+    }
+    RoomRegistry.Room room = roomRegistry.roomOf(session);
+    Instant now = Instant.now();
+    long sequence = -1;
+    try {
+//      The fixed-size binary ack has no sequence field; the sequence travels on the broadcast only. Taken inside the
+//      try so the finally always publishes it, even if encoding the ack fails
+      sequence = nextSequence(room);
+      ByteBuffer ack = BinaryCodec.encodeAck(frame, BinaryCodec.STATUS_SUCCESS,
+          now.getEpochSecond() * 1_000_000_000L + now.getNano());
+      ServerMetrics.bytesOut.add(ack.remaining());
+      long ackStart = System.nanoTime();
+      if (ServerConfig.OUTBOX_ENABLED) {
+        FanoutEngine.getInstance().ackBinary(session, ack);
+      } else {
         synchronized (session) {
           try {
-            session.getBasicRemote().sendText(gson.toJson(successMsg));
+            session.getBasicRemote().sendBinary(ack);
           } catch (IOException e) {
+            ServerMetrics.syncSendFailures.increment();
             System.err.println(e.getMessage());
           }
         }
       }
+      ServerMetrics.ackSendNanos.record(System.nanoTime() - ackStart);
+      ServerMetrics.binaryAcked.increment();
+    } finally {
+      if (ServerConfig.FANOUT_ENABLED) {
+        req.setRoomId(room == null ? null : room.getId());
+        req.setStatus("SUCCESS");
+        req.setMessageId(BinaryCodec.messageIdString(frame));
+        req.setTimestamp(now.toString());
+        broadcast(room, req, sequence);
+      }
+    }
+  }
 
-    } catch (JsonSyntaxException e) {
-      sendErrorMessage(session, "INVALID_JSON", "Invalid JSON format: " + e.getMessage(), null);
+//  Next sequence number of the room, or -1 when sequencing is off
+  private static long nextSequence(RoomRegistry.Room room) {
+    return ServerConfig.SEQUENCING_ENABLED && room != null ? room.nextSequence() : -1;
+  }
+
+  /**
+   * Serializes the message once and hands it to the fan-out engine for every session in the room.
+   * A sequenced message waits for its turn so the room's broadcasts are queued in sequence order, and always
+   * publishes its number, even if serialization fails, so later messages of the room are not held up.
+   */
+  private void broadcast(RoomRegistry.Room room, ClientMessage req, long sequence) {
+    if (room == null) {
+      return;
+    }
+    String payload = null;
+    try {
+      if (sequence >= 0) {
+        req.setSequence(sequence);
+      }
+      payload = gson.toJson(req);
+    } finally {
+      if (sequence >= 0) {
+        room.awaitTurn(sequence);
+        if (payload == null) {
+//          Serialization failed; nothing to hand on, but the next message of the room still needs this number
+          room.publish(sequence);
+        }
+      }
+    }
+    try {
+      List<Session> members = room.members();
+      ServerMetrics.bytesOut.add(ServerMetrics.utf8Length(payload) * members.size());
+      FanoutEngine.getInstance().broadcast(members, payload);
+    } finally {
+      if (sequence >= 0) {
+        room.publish(sequence);
+      }
     }
   }
 
@@ -133,9 +257,48 @@ public class ChatWebSocket {
    * Sends a structured error message to the client if the connection is open.
    */
   private void sendErrorMessage(Session session, String errorType, String errorMessage, String messageId) {
+    ServerMetrics.recordError(errorType);
     if (session.isOpen()) {
       ErrorMsg errorMsg = new ErrorMsg(messageId, errorType, errorMessage);
-      session.getAsyncRemote().sendText(gson.toJson(errorMsg));
+      sendText(session, gson.toJson(errorMsg));
+    }
+  }
+
+  /**
+   * Writes a text ack; in batched-ack mode it joins the session's current batch instead of going out on its own.
+   */
+  private void sendAck(Session session, String ack) {
+    ServerMetrics.bytesOut.add(ServerMetrics.utf8Length(ack));
+    if (ServerConfig.OUTBOX_ENABLED && FanoutEngine.getInstance().ackText(session, ack)) {
+      return;
+    }
+    writeText(session, ack);
+  }
+
+  /**
+   * Writes an ack or error frame and counts its bytes.
+   */
+  private void sendText(Session session, String text) {
+    ServerMetrics.bytesOut.add(ServerMetrics.utf8Length(text));
+    writeText(session, text);
+  }
+
+  /**
+   * Goes through the session outbox when one exists; otherwise uses a blocking send, synchronized so an error and
+   * an ack never overlap on the same socket.
+   */
+  private void writeText(Session session, String text) {
+    if (ServerConfig.OUTBOX_ENABLED && FanoutEngine.getInstance().sendText(session, text)) {
+      return;
+    }
+//    prevent multiple threads from overdriving the same socket
+    synchronized (session) {
+      try {
+        session.getBasicRemote().sendText(text);
+      } catch (IOException e) {
+        ServerMetrics.syncSendFailures.increment();
+        System.err.println(e.getMessage());
+      }
     }
   }
 }
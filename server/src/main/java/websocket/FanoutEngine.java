@@ -0,0 +1,238 @@
+package websocket;
+
+import config.ServerConfig;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.websocket.Session;
+
+/**
+ * FanoutEngine owns the outbound side of every session when fan-out or async acks are enabled.
+ * Each session has a {@link SessionOutbox}; callers only enqueue frames and the outbox writes them with async sends.
+ * Broadcasts serialize a message once and share the resulting {@link OutboundFrame} across all recipients, and the
+ * first write of each recipient is started from a dedicated writer pool so the receiving thread only enqueues.
+ * In batched-ack mode each session also gets an {@link AckBatcher}, flushed by size or by a shared timer thread.
+ * Counters for fan-out latency, queue depth and per-session backpressure are exposed via {@link #snapshot()}.
+ */
+public final class FanoutEngine {
+
+  private static final String OUTBOX_KEY = "chat.outbox";
+  private static final String BATCHER_KEY = "chat.ackBatcher";
+//  Sessions listed individually in the health snapshot, worst backpressure first
+  private static final int MAX_REPORTED_SESSIONS = 20;
+  private static final FanoutEngine INSTANCE = new FanoutEngine();
+
+  private final ExecutorService writerPool;
+//  Fires batched-ack deadlines; null unless batched acks are enabled
+  private final ScheduledExecutorService flushTimer;
+  private final Stats stats = new Stats();
+  private final Map<Session, SessionOutbox> outboxes = new ConcurrentHashMap<>();
+
+  private FanoutEngine() {
+    AtomicInteger threadCount = new AtomicInteger(0);
+    ThreadFactory factory = r -> {
+      Thread t = new Thread(r, "fanout-writer-" + threadCount.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    };
+    this.writerPool = Executors.newFixedThreadPool(ServerConfig.FANOUT_WRITER_THREADS, factory);
+    this.flushTimer = ServerConfig.BATCHED_ACKS
+        ? Executors.newSingleThreadScheduledExecutor(r -> {
+          Thread t = new Thread(r, "ack-flush");
+          t.setDaemon(true);
+          return t;
+        })
+        : null;
+  }
+
+  public static FanoutEngine getInstance() {
+    return INSTANCE;
+  }
+
+//  Attach an outbox to a newly opened session
+  public void register(Session session) {
+    SessionOutbox outbox = new SessionOutbox(session, ServerConfig.FANOUT_QUEUE_CAPACITY, ServerConfig.ACK_WINDOW,
+        ServerConfig.ACK_COALESCE_MAX, writerPool, stats);
+    session.getUserProperties().put(OUTBOX_KEY, outbox);
+    outboxes.put(session, outbox);
+    if (flushTimer != null) {
+      session.getUserProperties().put(BATCHER_KEY, new AckBatcher(session, ServerConfig.ACK_BATCH_SIZE,
+          ServerConfig.ACK_BATCH_MICROS, flushTimer, stats));
+    }
+  }
+
+//  Detach the outbox of a closed session and discard anything it still holds
+  public void unregister(Session session) {
+    session.getUserProperties().remove(BATCHER_KEY);
+    SessionOutbox outbox = (SessionOutbox) session.getUserProperties().remove(OUTBOX_KEY);
+    outboxes.remove(session);
+    if (outbox != null) {
+      stats.dropped.add(outbox.clear());
+    }
+  }
+
+  /**
+   * Enqueues one serialized payload for every session in the room.
+   * @param recipients sessions in the room, iterated once
+   * @param payload    frame text, serialized once by the caller
+   */
+  public void broadcast(Iterable<Session> recipients, String payload) {
+    OutboundFrame frame = OutboundFrame.text(OutboundFrame.Kind.BROADCAST, payload);
+    stats.messages.increment();
+    for (Session session : recipients) {
+      SessionOutbox outbox = outboxOf(session);
+      if (outbox == null || !outbox.offerBroadcast(frame)) {
+        stats.dropped.increment();
+        continue;
+      }
+      outbox.schedule();
+    }
+  }
+
+  /**
+   * Sends an ack or error text frame to one session through its outbox.
+   * @return false if the session has no outbox (already closed)
+   */
+  public boolean sendText(Session session, String text) {
+    return offer(session, OutboundFrame.text(OutboundFrame.Kind.ACK, text));
+  }
+
+//  Binary counterpart of sendText, used for binary-protocol acks
+  public boolean sendBinary(Session session, ByteBuffer frame) {
+    return offer(session, OutboundFrame.binary(OutboundFrame.Kind.ACK, frame));
+  }
+
+  /**
+   * Sends a text ack, adding it to the session's current batch when batched acks are enabled.
+   * @return false if the session has no outbox (already closed)
+   */
+  public boolean ackText(Session session, String ack) {
+    AckBatcher batcher = (AckBatcher) session.getUserProperties().get(BATCHER_KEY);
+    if (batcher == null) {
+      return sendText(session, ack);
+    }
+    batcher.addText(ack);
+    return true;
+  }
+
+//  Binary counterpart of ackText
+  public boolean ackBinary(Session session, ByteBuffer ack) {
+    AckBatcher batcher = (AckBatcher) session.getUserProperties().get(BATCHER_KEY);
+    if (batcher == null) {
+      return sendBinary(session, ack);
+    }
+    batcher.addBinary(ack);
+    return true;
+  }
+
+  private static boolean offer(Session session, OutboundFrame frame) {
+    SessionOutbox outbox = outboxOf(session);
+    if (outbox == null) {
+      return false;
+    }
+    outbox.offerDirect(frame);
+    return true;
+  }
+
+  private static SessionOutbox outboxOf(Session session) {
+    return (SessionOutbox) session.getUserProperties().get(OUTBOX_KEY);
+  }
+
+//  Stops the writer pool and flush timer, called when the application is undeployed
+  public void shutdown() {
+    if (flushTimer != null) {
+      flushTimer.shutdownNow();
+    }
+    writerPool.shutdown();
+    try {
+      if (!writerPool.awaitTermination(5, TimeUnit.SECONDS)) {
+        writerPool.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      writerPool.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Point-in-time view of the outbound counters, shaped for JSON output by the health endpoint.
+   */
+  public Map<String, Object> snapshot() {
+    long deliveries = stats.deliveries.sum();
+    Map<String, Object> res = new LinkedHashMap<>();
+    res.put("messagesBroadcast", stats.messages.sum());
+    res.put("deliveries", deliveries);
+    res.put("acksSent", stats.acksSent.sum());
+    long ackBatches = stats.ackBatches.sum();
+    res.put("ackBatches", ackBatches);
+    res.put("avgAcksPerBatch", ackBatches == 0 ? 0 : (double) stats.batchedAcks.sum() / ackBatches);
+    res.put("dropped", stats.dropped.sum());
+    res.put("sendFailures", stats.sendFailures.sum());
+    res.put("coalescedFrames", stats.coalescedFrames.sum());
+    res.put("queueDepth", stats.queueDepth.sum());
+    res.put("peakSessionQueueDepth", stats.peakSessionDepth.get());
+    res.put("avgFanoutLatencyMicros", deliveries == 0 ? 0 : stats.latencyNanos.sum() / deliveries / 1000);
+    res.put("maxFanoutLatencyMicros", stats.maxLatencyNanos.get() / 1000);
+    res.put("backpressureEvents", stats.backpressureEvents.sum());
+
+    List<SessionOutbox> congested = new ArrayList<>();
+    for (SessionOutbox outbox : outboxes.values()) {
+      if (outbox.backpressureEvents() > 0) {
+        congested.add(outbox);
+      }
+    }
+    congested.sort(Comparator.comparingLong(SessionOutbox::backpressureEvents).reversed());
+    List<Map<String, Object>> sessions = new ArrayList<>();
+    for (int i = 0; i < congested.size() && i < MAX_REPORTED_SESSIONS; i++) {
+      sessions.add(congested.get(i).snapshot());
+    }
+    res.put("sessionsWithBackpressure", congested.size());
+    res.put("backpressureBySession", sessions);
+    return res;
+  }
+
+  /**
+   * Outbound counters. LongAdder keeps increments cheap when many writer and container threads update them at once.
+   */
+  static final class Stats {
+    final LongAdder messages = new LongAdder();
+    final LongAdder deliveries = new LongAdder();
+    final LongAdder acksSent = new LongAdder();
+    final LongAdder ackBatches = new LongAdder();
+    final LongAdder batchedAcks = new LongAdder();
+    final LongAdder dropped = new LongAdder();
+    final LongAdder sendFailures = new LongAdder();
+    final LongAdder coalescedFrames = new LongAdder();
+    final LongAdder backpressureEvents = new LongAdder();
+    final LongAdder queueDepth = new LongAdder();
+    final LongAdder latencyNanos = new LongAdder();
+    final AtomicLong maxLatencyNanos = new AtomicLong(0);
+    final AtomicInteger peakSessionDepth = new AtomicInteger(0);
+
+    void recordDelivery(long latency) {
+      deliveries.increment();
+      latencyNanos.add(latency);
+      if (latency > maxLatencyNanos.get()) {
+        maxLatencyNanos.accumulateAndGet(latency, Math::max);
+      }
+    }
+
+    void recordSessionDepth(int depth) {
+      if (depth > peakSessionDepth.get()) {
+        peakSessionDepth.accumulateAndGet(depth, Math::max);
+      }
+    }
+  }
+}
@@ -0,0 +1,42 @@
+package websocket;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A serialized frame waiting in one or more {@link SessionOutbox} queues.
+ * Broadcast payloads are serialized once per message and the same instance is shared by every recipient,
+ * so fan-out cost does not grow with JSON encoding per subscriber.
+ */
+final class OutboundFrame {
+
+  enum Kind {
+    ACK,
+    BROADCAST
+  }
+
+  final Kind kind;
+  final String text;
+  // Binary payload; each send works on a duplicate so the original position is never moved
+  final ByteBuffer binary;
+  // Monotonic time when the frame was created, used to measure fan-out latency
+  final long createdNanos;
+
+  private OutboundFrame(Kind kind, String text, ByteBuffer binary) {
+    this.kind = kind;
+    this.text = text;
+    this.binary = binary;
+    this.createdNanos = System.nanoTime();
+  }
+
+  static OutboundFrame text(Kind kind, String text) {
+    return new OutboundFrame(kind, text, null);
+  }
+
+  static OutboundFrame binary(Kind kind, ByteBuffer binary) {
+    return new OutboundFrame(kind, null, binary);
+  }
+
+  boolean isBinary() {
+    return binary != null;
+  }
+}
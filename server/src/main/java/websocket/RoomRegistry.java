@@ -0,0 +1,195 @@
+package websocket;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import javax.websocket.Session;
+
+/**
+ * RoomRegistry tracks which sessions belong to which chat room.
+ *
+ * Each room keeps its members in an immutable array that is replaced with a compare-and-set on every join or leave
+ * (copy-on-write). Broadcast iteration therefore reads a consistent snapshot without taking any lock, and
+ * joins/leaves in one room never block readers. A room whose last member leaves is atomically retired: its array is
+ * swapped for a sentinel so no late joiner can be added to a room that has already been removed from the map.
+ * A second map gives O(1) session → room lookup.
+ */
+public final class RoomRegistry {
+
+  private static final Session[] EMPTY = new Session[0];
+//  Marks a room that has been removed from the registry; joins must retry with a fresh room
+  private static final Session[] RETIRED = new Session[0];
+
+  private final Map<String, Room> rooms = new ConcurrentHashMap<>();
+  private final Map<Session, Room> sessionToRoom = new ConcurrentHashMap<>();
+
+  /**
+   * Adds a session to a room, creating the room if needed.
+   * @return the room the session joined
+   */
+  public Room join(String roomId, Session session) {
+    while (true) {
+      Room room = rooms.computeIfAbsent(roomId, Room::new);
+      if (room.add(session)) {
+        sessionToRoom.put(session, room);
+        return room;
+      }
+//      Lost a race with the last member leaving; the retired room is gone from the map, so retry
+      rooms.remove(roomId, room);
+    }
+  }
+
+  /**
+   * Removes a session from its room, retiring the room if it became empty.
+   * @return the room the session was in, or null if it was not registered
+   */
+  public Room leave(Session session) {
+    Room room = sessionToRoom.remove(session);
+    if (room != null && room.remove(session)) {
+//      Conditional remove so a newer room with the same id is never dropped
+      rooms.remove(room.getId(), room);
+    }
+    return room;
+  }
+
+//  O(1) lookup of the room a session belongs to
+  public Room roomOf(Session session) {
+    return sessionToRoom.get(session);
+  }
+
+  public Room getRoom(String roomId) {
+    return rooms.get(roomId);
+  }
+
+  public int roomCount() {
+    return rooms.size();
+  }
+
+  public int sessionCount() {
+    return sessionToRoom.size();
+  }
+
+//  Live view of the rooms, for reporting
+  public Collection<Room> rooms() {
+    return Collections.unmodifiableCollection(rooms.values());
+  }
+
+  /**
+   * A single chat room. Membership changes are lock-free; readers always see an immutable snapshot.
+   *
+   * Sequencing: {@link #nextSequence()} hands out 0, 1, 2, ... with one atomic increment, and {@link #awaitTurn} /
+   * {@link #publish} let the threads holding those numbers hand their broadcasts on strictly in sequence order, so
+   * every member's outbox receives the room's messages in the same order. A thread only waits for holders of lower
+   * numbers that are between allocating and publishing, which is a serialization and a queue offer. If a holder
+   * stalls anyway, waiters back off to parking for up to a millisecond at a time instead of spinning.
+   */
+  public static final class Room {
+    private static final int SPINS_BEFORE_YIELD = 100;
+    private static final int SPINS_BEFORE_PARK = 1_000;
+    private static final long MIN_PARK_NANOS = 1_000;
+    private static final long MAX_PARK_NANOS = 1_000_000;
+
+    private final String id;
+    private final AtomicReference<Session[]> members = new AtomicReference<>(EMPTY);
+    private final AtomicLong nextSequence = new AtomicLong(0);
+//    Lowest sequence not yet published
+    private final AtomicLong published = new AtomicLong(0);
+
+    Room(String id) {
+      this.id = id;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+//    Returns false if the room was retired before the session could be added
+    boolean add(Session session) {
+      while (true) {
+        Session[] cur = members.get();
+        if (cur == RETIRED) {
+          return false;
+        }
+        Session[] next = Arrays.copyOf(cur, cur.length + 1);
+        next[cur.length] = session;
+        if (members.compareAndSet(cur, next)) {
+          return true;
+        }
+      }
+    }
+
+//    Returns true if this call removed the last member and retired the room
+    boolean remove(Session session) {
+      while (true) {
+        Session[] cur = members.get();
+        int idx = indexOf(cur, session);
+        if (idx < 0) {
+          return false;
+        }
+        Session[] next;
+        if (cur.length == 1) {
+          next = RETIRED;
+        } else {
+          next = new Session[cur.length - 1];
+          System.arraycopy(cur, 0, next, 0, idx);
+          System.arraycopy(cur, idx + 1, next, idx, cur.length - idx - 1);
+        }
+        if (members.compareAndSet(cur, next)) {
+          return next == RETIRED;
+        }
+      }
+    }
+
+    private static int indexOf(Session[] arr, Session session) {
+      for (int i = 0; i < arr.length; i++) {
+        if (arr[i] == session) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Immutable view of the current members, safe to iterate without locking.
+     */
+    public List<Session> members() {
+      return Collections.unmodifiableList(Arrays.asList(members.get()));
+    }
+
+    public int size() {
+      return members.get().length;
+    }
+
+    public long nextSequence() {
+      return nextSequence.getAndIncrement();
+    }
+
+//    Waits until every lower sequence has been published; spins briefly, yields for a while, then parks with a
+//    doubling back-off so a stalled holder does not keep container threads busy
+    public void awaitTurn(long sequence) {
+      int spins = 0;
+      long parkNanos = MIN_PARK_NANOS;
+      while (published.get() != sequence) {
+        if (++spins < SPINS_BEFORE_YIELD) {
+          Thread.onSpinWait();
+        } else if (spins < SPINS_BEFORE_PARK) {
+          Thread.yield();
+        } else {
+          LockSupport.parkNanos(parkNanos);
+          parkNanos = Math.min(parkNanos * 2, MAX_PARK_NANOS);
+        }
+      }
+    }
+
+//    Lets the holder of the next sequence proceed; must follow awaitTurn for the same sequence, even on failure
+    public void publish(long sequence) {
+      published.set(sequence + 1);
+    }
+  }
+}
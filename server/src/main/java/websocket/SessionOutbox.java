@@ -0,0 +1,321 @@
+package websocket;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.websocket.CloseReason;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import metrics.ServerMetrics;
+
+/**
+ * Non-blocking outbound pipeline for a single WebSocket session; every ack, error and broadcast frame for the session
+ * goes through it.
+ *
+ * The container allows only one outstanding async send per session, so at most one frame is in flight. Frames that
+ * arrive meanwhile wait in the queue, and when the in-flight send completes (its {@link SendHandler} fires) everything
+ * waiting is coalesced: text frames are sent as one JSON array frame, binary acks as one concatenated binary frame.
+ * The next send is started from the writer pool, never from the container's completion thread.
+ *
+ * Broadcast frames are bounded by the fan-out queue capacity and dropped when it is full. Acks and errors are bounded
+ * by the pending-send window: a client whose waiting acks and errors reach it is not reading them, so instead of
+ * queueing more or blocking the container thread, the outbox counts a backpressure event and closes the session with
+ * TRY_AGAIN_LATER from the writer pool. Frames offered after that are dropped.
+ */
+final class SessionOutbox {
+
+  private final Session session;
+  private final int capacity;
+  private final int window;
+  private final int coalesceMax;
+  private final Executor executor;
+  private final FanoutEngine.Stats stats;
+
+  private final Queue<OutboundFrame> queue = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger depth = new AtomicInteger(0);
+//  True while an async send is outstanding; only the holder polls the queue
+  private final AtomicBoolean sending = new AtomicBoolean(false);
+//  Acks and errors among the waiting frames, checked against the window
+  private final AtomicInteger directDepth = new AtomicInteger(0);
+//  Set once the window overflowed and the session is being closed
+  private final AtomicBoolean closing = new AtomicBoolean(false);
+
+//  Per-session counters reported by the health endpoint
+  private final AtomicLong backpressureEvents = new AtomicLong(0);
+  private final AtomicLong coalescedFrames = new AtomicLong(0);
+  private final AtomicLong dropped = new AtomicLong(0);
+  private final AtomicInteger peakDepth = new AtomicInteger(0);
+
+  SessionOutbox(Session session, int capacity, int window, int coalesceMax, Executor executor,
+      FanoutEngine.Stats stats) {
+    this.session = session;
+    this.capacity = capacity;
+    this.window = window;
+    this.coalesceMax = coalesceMax;
+    this.executor = executor;
+    this.stats = stats;
+  }
+
+  /**
+   * Queues a broadcast frame; the caller starts sending with {@link #schedule()}.
+   * @return false if the queue is full and the frame was dropped for this session
+   */
+  boolean offerBroadcast(OutboundFrame frame) {
+    if (depth.get() >= capacity) {
+      dropped.incrementAndGet();
+      return false;
+    }
+    enqueue(frame);
+    return true;
+  }
+
+  /**
+   * Queues an ack or error frame and starts sending it if nothing is in flight. Never blocks; if the session's waiting
+   * acks and errors are already at the window the frame is dropped and the session closed.
+   */
+  void offerDirect(OutboundFrame frame) {
+    if (closing.get() || directDepth.get() >= window) {
+      overflow();
+      return;
+    }
+    enqueue(frame);
+    kick();
+  }
+
+  private void overflow() {
+    stats.dropped.increment();
+    if (!closing.compareAndSet(false, true)) {
+      return;
+    }
+    backpressureEvents.incrementAndGet();
+    stats.backpressureEvents.increment();
+//    Closing writes a close frame behind the in-flight send, so it runs on the writer pool, not the caller's thread
+    try {
+      executor.execute(() -> {
+        try {
+          session.close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "Outbound window full"));
+        } catch (IOException e) {
+          System.err.println(e.getMessage());
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      // Writer pool is shutting down with the application, which closes the session anyway
+    }
+  }
+
+  private void enqueue(OutboundFrame frame) {
+    if (frame.kind == OutboundFrame.Kind.ACK) {
+      directDepth.incrementAndGet();
+    }
+    queue.offer(frame);
+    int d = depth.incrementAndGet();
+    stats.queueDepth.increment();
+    if (d > peakDepth.get()) {
+      peakDepth.accumulateAndGet(d, Math::max);
+      stats.recordSessionDepth(d);
+    }
+  }
+
+//  Starts an async send if frames are waiting and none is in flight
+  private void kick() {
+    if (!queue.isEmpty() && sending.compareAndSet(false, true)) {
+      sendNext();
+    }
+  }
+
+  private void sendNext() {
+    OutboundFrame first = queue.poll();
+    if (first == null) {
+      release();
+      return;
+    }
+    dequeued(first);
+    if (!session.isOpen()) {
+      dropped.incrementAndGet();
+      stats.dropped.increment();
+      release();
+      return;
+    }
+    if (first.isBinary()) {
+      sendBinary(first);
+    } else {
+      sendText(first);
+    }
+  }
+
+  private void sendText(OutboundFrame first) {
+    OutboundFrame next = queue.peek();
+    if (next == null || next.isBinary()) {
+      startText(first.text, new OutboundFrame[] {first}, 1);
+      return;
+    }
+    StringBuilder text = new StringBuilder(first.text.length() * 4).append('[').append(first.text);
+    int count = 1;
+    OutboundFrame[] batch = new OutboundFrame[coalesceMax];
+    batch[0] = first;
+    while (count < coalesceMax && (next = queue.peek()) != null && !next.isBinary()) {
+      queue.poll();
+      dequeued(next);
+      text.append(',').append(next.text);
+      batch[count++] = next;
+    }
+    coalescedFrames.incrementAndGet();
+    stats.coalescedFrames.increment();
+    startText(text.append(']').toString(), batch, count);
+  }
+
+  private void sendBinary(OutboundFrame first) {
+    OutboundFrame next = queue.peek();
+    if (next == null || !next.isBinary()) {
+      startBinary(first.binary.duplicate(), new OutboundFrame[] {first}, 1);
+      return;
+    }
+//    Binary acks are fixed-size, so concatenating them keeps every ack decodable
+    int count = 1;
+    int bytes = first.binary.remaining();
+    OutboundFrame[] batch = new OutboundFrame[coalesceMax];
+    batch[0] = first;
+    while (count < coalesceMax && (next = queue.peek()) != null && next.isBinary()) {
+      queue.poll();
+      dequeued(next);
+      batch[count++] = next;
+      bytes += next.binary.remaining();
+    }
+    ByteBuffer merged = ByteBuffer.allocate(bytes);
+    for (int i = 0; i < count; i++) {
+      merged.put(batch[i].binary.duplicate());
+    }
+    merged.flip();
+    coalescedFrames.incrementAndGet();
+    stats.coalescedFrames.increment();
+    startBinary(merged, batch, count);
+  }
+
+//  Starts the async send of the first count frames of batch, already taken off the queue
+  private void startText(String text, OutboundFrame[] batch, int count) {
+    try {
+      session.getAsyncRemote().sendText(text, new Completion(batch, count));
+    } catch (RuntimeException e) {
+      // IllegalStateException if the session closed or another write slipped in; every frame of the send is lost
+      failed(count);
+      release();
+    }
+  }
+
+  private void startBinary(ByteBuffer binary, OutboundFrame[] batch, int count) {
+    try {
+      session.getAsyncRemote().sendBinary(binary, new Completion(batch, count));
+    } catch (RuntimeException e) {
+      failed(count);
+      release();
+    }
+  }
+
+  private void failed(int frames) {
+    stats.sendFailures.add(frames);
+    ServerMetrics.asyncSendFailures.add(frames);
+  }
+
+  private void dequeued(OutboundFrame frame) {
+    depth.decrementAndGet();
+    stats.queueDepth.decrement();
+    if (frame.kind == OutboundFrame.Kind.ACK) {
+      directDepth.decrementAndGet();
+    }
+  }
+
+//  Counts a frame as sent, once its send completed successfully
+  private void record(OutboundFrame frame) {
+    if (frame.kind == OutboundFrame.Kind.BROADCAST) {
+      stats.recordDelivery(System.nanoTime() - frame.createdNanos);
+    } else {
+      stats.acksSent.increment();
+    }
+  }
+
+  private void release() {
+    sending.set(false);
+    schedule();
+  }
+
+//  Hands the next send to the writer pool, unless frames are not waiting or a send is already in flight
+  void schedule() {
+    if (queue.isEmpty() || !sending.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      executor.execute(this::sendNext);
+    } catch (RejectedExecutionException e) {
+      // Writer pool is shutting down with the application
+      int cleared = clear();
+      stats.dropped.add(cleared);
+      sending.set(false);
+    }
+  }
+
+  /**
+   * Completion callback for one async send; counts its frames as sent or failed, releases the in-flight slot and
+   * hands any waiting frames to the writer pool.
+   */
+  private final class Completion implements SendHandler {
+    private final OutboundFrame[] batch;
+    private final int frames;
+
+    Completion(OutboundFrame[] batch, int frames) {
+      this.batch = batch;
+      this.frames = frames;
+    }
+
+    @Override
+    public void onResult(SendResult result) {
+      if (result.isOK()) {
+        for (int i = 0; i < frames; i++) {
+          record(batch[i]);
+        }
+      } else {
+        failed(frames);
+      }
+      release();
+    }
+  }
+
+//  Discards everything still queued, returning the number of frames dropped
+  int clear() {
+    int cleared = 0;
+    OutboundFrame frame;
+    while ((frame = queue.poll()) != null) {
+      dequeued(frame);
+      cleared++;
+    }
+    return cleared;
+  }
+
+  int depth() {
+    return depth.get();
+  }
+
+  long backpressureEvents() {
+    return backpressureEvents.get();
+  }
+
+//  Per-session view for the health endpoint
+  Map<String, Object> snapshot() {
+    Map<String, Object> res = new LinkedHashMap<>();
+    res.put("sessionId", session.getId());
+    res.put("pending", depth.get());
+    res.put("peakPending", peakDepth.get());
+    res.put("backpressureEvents", backpressureEvents.get());
+    res.put("coalescedFrames", coalescedFrames.get());
+    res.put("droppedBroadcasts", dropped.get());
+    return res;
+  }
+}
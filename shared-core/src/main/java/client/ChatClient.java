@@ -1,18 +1,21 @@
 package client;
 
+import codec.BinaryCodec;
+import codec.PayloadTemplate;
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.websocket.ClientEndpoint;
 import javax.websocket.CloseReason;
 import javax.websocket.ContainerProvider;
@@ -25,9 +28,14 @@ import javax.websocket.Session;
 import javax.websocket.WebSocketContainer;
 import model.ClientMessage;
 import model.LatencyReport;
+import model.MessageType;
 import model.ResponseMessage;
 import util.BackOffUtil;
+import util.LatencyRecorder;
 import util.Metrics;
+import util.PendingTable;
+import util.ReorderBuffer;
+import util.TimerWheel;
 
 /**
  * Standard-compliant WebSocket client designed for high-concurrency load testing.
@@ -40,15 +48,39 @@ public class ChatClient {
   private final String roomId;
   private final URI serverUri;
   private Session session; // Managed by the Container (Tomcat)
-
-//  Single-threaded scheduler ensures thread-safety for retries and reconnections
-  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+//  Frame format for outgoing messages, can be switched between phases
+  private volatile WireProtocol protocol = WireProtocol.JSON;
+
+//  Retries and reconnects go on the process-wide timer wheel instead of a scheduler thread per connection
+  private final TimerWheel timer = TimerWheel.shared();
+//  Set by cleanup(); no new retries or reconnects are scheduled afterwards
+  private volatile boolean cleanedUp = false;
+
+//  In-flight messages: sequence -> send nanos, with the message type packed into the two low bits
+  private static final int PENDING_CAPACITY = Integer.getInteger("chat.client.pendingCapacity", 16384);
+  private static final long ACK_TIMEOUT_NANOS =
+      TimeUnit.MILLISECONDS.toNanos(Long.getLong("chat.client.ackTimeoutMs", 60_000L));
+  private static final long TYPE_MASK = 3L;
+  private static final MessageType[] TYPES = MessageType.values();
+  private final PendingTable pending = new PendingTable(PENDING_CAPACITY);
+  private final AtomicLong nextSequence = new AtomicLong(0);
+//  High half of every message id sent on this connection, keeps ids unique across connections
+  private final long connectionTag = ThreadLocalRandom.current().nextLong();
+//  Maps send nanos back to wall-clock time for the CSV timestamp column
+  private final long wallBaseMillis = System.currentTimeMillis();
+  private final long nanoBase = System.nanoTime();
+
+//  Puts sequenced broadcasts back in room order and counts gaps; a new one per session, since a reconnect rejoins
+//  the room mid-stream. The load test only counts broadcasts, so in-order frames are released to a no-op sink
+  private static final int REORDER_WINDOW = Integer.getInteger("chat.client.reorderWindow", 1024);
+  private volatile ReorderBuffer<JsonObject> broadcastOrder = newBroadcastOrder();
 
 //  Shared Resources
-  private ConcurrentHashMap<String, LatencyReport> pendingMessages;
   private BlockingQueue<LatencyReport> resultsQueue;
   private CountDownLatch wsConnectedLatch;
   private CountDownLatch responseLatch;
+//  In-process percentiles; null when the driver only wants the CSV
+  private volatile LatencyRecorder latencyRecorder;
 
 //  Reconnection fields
   private boolean initialReconnectionEstablished = false;
@@ -60,6 +92,8 @@ public class ChatClient {
   private static final int MAX_RECONNECTION_ALLOWED = 5;
 //  Limit: Allow 5 resend message attempt
   private static final int MAX_SEND_ALLOWED = 5;
+//  Messages sent on this connection and not yet acked, used by load-aware connection selection
+  private final AtomicInteger pendingCount = new AtomicInteger(0);
 // Update lastSeen for heartbeat mechanism
   private volatile long lastSeen = System.currentTimeMillis();
 
@@ -67,17 +101,13 @@ public class ChatClient {
    * Creates a ChatClient instance for connecting to a WebSocket server
    *
    * This client is designed for performance testing. It tracks in-flight
-   * messages, records round-trip latency for each message, and coordinates
+   * messages by a per-connection sequence number carried in the message id,
+   * records round-trip latency for each message, and coordinates
    * connection and response synchronization using latches.
    *
    * @param serverUri
    *        URI of the WebSocket server to connect
    *
-   * @param pendingMessages
-   *        A map of messageId to LatencyReport used to track messages that have
-   *        been sent but not yet acknowledged by the server. The send timestamp
-   *        is recorded here and matched when a response is received.
-   *
    * @param resultsQueue
    *        A thread-safe queue where completed LatencyReport objects are placed
    *        after a response is received. This queue is consumed by CSV writer.
@@ -96,10 +126,9 @@ public class ChatClient {
    *        Identifier of the chat room this client joins or sends messages to.
    */
 
-  public ChatClient(URI serverUri, ConcurrentHashMap<String, LatencyReport> pendingMessages,
-      BlockingQueue<LatencyReport> resultsQueue, CountDownLatch wsConnectedLatch, CountDownLatch responseLatch, String roomId) {
+  public ChatClient(URI serverUri, BlockingQueue<LatencyReport> resultsQueue, CountDownLatch wsConnectedLatch,
+      CountDownLatch responseLatch, String roomId) {
     this.serverUri = serverUri;
-    this.pendingMessages = pendingMessages;
     this.resultsQueue = resultsQueue;
     this.wsConnectedLatch = wsConnectedLatch;
     this.responseLatch = responseLatch;
@@ -134,6 +163,13 @@ public class ChatClient {
     this.session = session;
     this.lastSeen = System.currentTimeMillis();
     this.reconnectionAttemptCount = 0;
+    this.broadcastOrder = newBroadcastOrder();
+//    Acks for messages sent on a previous session will never arrive on this one
+    int lost = pending.clear();
+    if (lost > 0) {
+      pendingCount.addAndGet(-lost);
+      Metrics.lostAcks.add(lost);
+    }
 //    Only increment global metrics on the first successful connection
     if (!initialReconnectionEstablished) {
       initialReconnectionEstablished = true;
@@ -151,43 +187,113 @@ public class ChatClient {
    */
   @OnMessage
   public void onMessage(String message) {
+    long receiveNanos = System.nanoTime();
     this.lastSeen = System.currentTimeMillis();
-    long receiveTime = System.currentTimeMillis();
 
     try {
-//      Parse Server Response into JSON
-      JsonObject json = gson.fromJson(message, JsonObject.class);
-//      Identify Error Message. If it is error message, it is logged but not included in latency matrix
-      if (json.has("errorType")) {
-        System.err.println("Server Error [" + roomId + "]: " + json.get("errorMessage"));
-        return;
-      }
-      /*
-       * Handle successful response:
-       *
-       * 1. Extract messageId from server acknowledgement
-       * 2. Retrieve the matching pending latency report
-       * 3. Record receive timestamp
-       * 4. Update message status
-       * 5. Push completed latency report to results queue for CSV logging
-       */
-      ResponseMessage response = gson.fromJson(message, ResponseMessage.class);
-      String messageId = response.getMessageId();
-      LatencyReport latencyReport = pendingMessages.remove(messageId);
-
-      if (latencyReport != null) {
-        latencyReport.setReceiveTime(receiveTime);
-        latencyReport.setStatusCode(response.getStatus().equals("SUCCESS") ? "SUCCESS" : "UNKNOWN");
-        responseLatch.countDown();
-        if (resultsQueue != null) {
-          resultsQueue.add(latencyReport);
-        }
-      }
+//      Parse Server Response into JSON. Batched acks and coalesced frames arrive as (possibly nested) JSON arrays
+      handleElement(gson.fromJson(message, JsonElement.class), receiveNanos);
     } catch (Exception e) {
       System.err.println("Failed to parse message in room " + roomId + ": " + e.getMessage());
     }
   }
 
+//  Every ack in a batch is resolved on its own, so each message keeps its own RTT entry
+  private void handleElement(JsonElement element, long receiveNanos) {
+    if (element.isJsonArray()) {
+      for (JsonElement child : element.getAsJsonArray()) {
+        handleElement(child, receiveNanos);
+      }
+    } else {
+      handleFrame(element.getAsJsonObject(), receiveNanos);
+    }
+  }
+
+  private void handleFrame(JsonObject json, long receiveNanos) {
+//    Identify Error Message. If it is error message, it is logged but not included in latency matrix
+    if (json.has("errorType")) {
+      System.err.println("Server Error [" + roomId + "]: " + json.get("errorMessage"));
+      return;
+    }
+//    Broadcast frames (server fan-out mode) carry the original chat message and are not acknowledgements
+    if (json.has("message")) {
+      Metrics.broadcastsReceived.increment();
+      JsonElement sequence = json.get("sequence");
+      if (sequence != null) {
+        ReorderBuffer<JsonObject> order = broadcastOrder;
+        long reordered = order.getReordered();
+        long gaps = order.getGaps();
+        order.offer(sequence.getAsLong(), json);
+        Metrics.broadcastsReordered.add(order.getReordered() - reordered);
+        Metrics.broadcastGaps.add(order.getGaps() - gaps);
+      }
+      return;
+    }
+    /*
+     * Handle successful response:
+     *
+     * 1. Extract the sequence number from the acknowledged messageId
+     * 2. Remove the matching pending send time
+     * 3. Record the RTT
+     * 4. Push a latency report to results queue for CSV logging
+     */
+    ResponseMessage response = gson.fromJson(json, ResponseMessage.class);
+    completeAck(ClientMessage.sequenceOf(response.getMessageId()), "SUCCESS".equals(response.getStatus()),
+        receiveNanos);
+  }
+
+  private static ReorderBuffer<JsonObject> newBroadcastOrder() {
+    return new ReorderBuffer<>(REORDER_WINDOW, frame -> { });
+  }
+
+  /**
+   * Invoked when a binary acknowledgement is received (binary protocol).
+   * The ack carries the message id as two longs, the low one being the sequence, so no JSON parsing is needed.
+   */
+  @OnMessage
+  public void onBinaryMessage(ByteBuffer frame) {
+    long receiveNanos = System.nanoTime();
+    this.lastSeen = System.currentTimeMillis();
+    if (!BinaryCodec.isAck(frame)) {
+      System.err.println("Unexpected binary frame of " + frame.remaining() + " bytes in room " + roomId);
+      return;
+    }
+//    Coalesced acks arrive back to back in one frame
+    int acks = BinaryCodec.ackCount(frame);
+    for (int i = 0; i < acks; i++) {
+      completeAck(BinaryCodec.ackMessageIdLeastBits(frame), BinaryCodec.ackStatus(frame) == BinaryCodec.STATUS_SUCCESS,
+          receiveNanos);
+      frame.position(frame.position() + BinaryCodec.ACK_SIZE);
+    }
+  }
+
+  /**
+   * Matches an acknowledgement to its pending message, records the RTT and, when a CSV is written, hands a report to
+   * the results queue. Acks for unknown sequences (duplicates, or already swept as lost) are ignored.
+   */
+  private void completeAck(long sequence, boolean success, long receiveNanos) {
+    long entry = pending.remove(sequence);
+    if (entry == PendingTable.MISSING) {
+      return;
+    }
+    pendingCount.decrementAndGet();
+    responseLatch.countDown();
+    long sentNanos = entry & ~TYPE_MASK;
+    int typeIndex = (int) (entry & TYPE_MASK);
+    MessageType type = typeIndex < TYPES.length ? TYPES[typeIndex] : null;
+    LatencyRecorder recorder = latencyRecorder;
+    if (recorder != null) {
+      recorder.record(roomId, type, (receiveNanos - sentNanos) / 1_000);
+    }
+    if (resultsQueue != null) {
+      long sentTime = wallBaseMillis + TimeUnit.NANOSECONDS.toMillis(sentNanos - nanoBase);
+      LatencyReport latencyReport = new LatencyReport(type, sentTime, sentNanos, roomId);
+      latencyReport.setReceiveNanos(receiveNanos);
+      latencyReport.setStatusCode(success ? "SUCCESS" : "UNKNOWN");
+      resultsQueue.add(latencyReport);
+    }
+  }
+
   /**
    * Lifecycle event: Socket closed.
    * If it is invoked unintendedly, trigger exponential backoff connection
@@ -238,10 +344,35 @@ public class ChatClient {
    *        The ClientMessage object to be sent.
    */
   public void sendMsg(ClientMessage msg) {
+//    Retries reuse the frame, so the sequence is assigned once per message
+    long sequence = nextSequence.getAndIncrement();
+    msg.assignSequence(connectionTag, sequence);
+    if (protocol == WireProtocol.BINARY) {
+//      The binary frame carries the send time as epoch nanos, so no timestamp string is built
+      ByteBuffer frame = BinaryCodec.encode(msg, BinaryCodec.toEpochNanos(Instant.now()));
+      sendBinaryWithRetry(sequence, msg.getMessageType(), msg.getIntendedSendNanos(), frame, 0);
+      return;
+    }
 //    Update timestamp to current time and send message
     msg.setTimestamp(Instant.now().toString());
     String json = gson.toJson(msg);
-    sendMsgWithRetry(msg, json, 0);
+    sendMsgWithRetry(sequence, msg.getMessageType(), msg.getIntendedSendNanos(), json, 0);
+  }
+
+  /**
+   * Sends a pre-encoded message from a {@link util.PayloadPool}: the template is copied with this connection's next
+   * sequence and the current time patched in, so no ClientMessage is built or serialized.
+   * @param intendedSendNanos scheduled send time in open-loop runs, 0 to start the RTT at the actual send
+   */
+  public void sendPayload(PayloadTemplate template, long intendedSendNanos) {
+    long sequence = nextSequence.getAndIncrement();
+    if (protocol == WireProtocol.BINARY) {
+      ByteBuffer frame = template.encodeBinary(connectionTag, sequence, BinaryCodec.toEpochNanos(Instant.now()));
+      sendBinaryWithRetry(sequence, template.getMessageType(), intendedSendNanos, frame, 0);
+      return;
+    }
+    String json = template.encodeJson(connectionTag, sequence, System.currentTimeMillis());
+    sendMsgWithRetry(sequence, template.getMessageType(), intendedSendNanos, json, 0);
   }
 
   /**
@@ -251,32 +382,111 @@ public class ChatClient {
    * measurement, and retrying the send in case of failures. It is designed
    * to support performance testing by tracking successful and failed messages.
    */
-  public void sendMsgWithRetry(ClientMessage msg, String json, int attempt) {
+  public void sendMsgWithRetry(long sequence, MessageType type, long intendedSendNanos, String json, int attempt) {
     if (session == null || !session.isOpen()) {
-      retrySend(msg, json, attempt);
+      retrySend(sequence, type, intendedSendNanos, json, attempt);
       return;
     }
 //    Prevent multiple thread access the same session
     synchronized (this.session) {
+//      Stamp and register before the send so a fast ack always finds its report
+      track(sequence, type, intendedSendNanos);
       try {
         // Standard JSR 356 async send
         session.getAsyncRemote().sendText(json);
-        LatencyReport latencyReport = new LatencyReport(msg.getMessageType(), System.currentTimeMillis(),
-            msg.getRoomId());
-        pendingMessages.put(msg.getMessageId(), latencyReport);
+        Metrics.bytesSent.add(json.length());
+        Metrics.messagesSent.increment();
+      } catch (Exception e) {
+        untrack(sequence);
+        retrySend(sequence, type, intendedSendNanos, json, attempt);
+      }
+    }
+  }
+
+  /**
+   * Binary-protocol counterpart of {@link #sendMsgWithRetry}. Each attempt sends a duplicate of the frame so a
+   * failed attempt cannot leave the buffer position moved for the retry.
+   */
+  public void sendBinaryWithRetry(long sequence, MessageType type, long intendedSendNanos, ByteBuffer frame,
+      int attempt) {
+    if (session == null || !session.isOpen()) {
+      retryBinarySend(sequence, type, intendedSendNanos, frame, attempt);
+      return;
+    }
+    synchronized (this.session) {
+      track(sequence, type, intendedSendNanos);
+      try {
+        session.getAsyncRemote().sendBinary(frame.duplicate());
+        Metrics.bytesSent.add(frame.remaining());
+        Metrics.messagesSent.increment();
       } catch (Exception e) {
-        retrySend(msg, json, attempt);
+        untrack(sequence);
+        retryBinarySend(sequence, type, intendedSendNanos, frame, attempt);
       }
     }
   }
+  /**
+   * Registers the send time of a message about to be sent under its sequence number.
+   * The RTT starts now, or at the scheduled send time in open-loop runs, so time a message spent waiting behind a
+   * slow connection or a busy sender counts as latency (no coordinated omission).
+   * The two low bits of the stored nanos hold the message type (3 = none), which costs at most 3 ns of precision.
+   */
+  private void track(long sequence, MessageType type, long intendedSendNanos) {
+    long sentNanos = intendedSendNanos != 0 ? intendedSendNanos : System.nanoTime();
+    long entry = (sentNanos & ~TYPE_MASK) | (type == null ? TYPE_MASK : type.ordinal());
+    pendingCount.incrementAndGet();
+    if (pending.put(sequence, entry) != PendingTable.MISSING) {
+//      The slot still held a message PENDING_CAPACITY sends older, whose ack is given up on
+      pendingCount.decrementAndGet();
+      Metrics.lostAcks.increment();
+    }
+  }
+
+//  Drops the entry of a send that failed before reaching the socket
+  private void untrack(long sequence) {
+    if (pending.remove(sequence) != PendingTable.MISSING) {
+      pendingCount.decrementAndGet();
+    }
+  }
+
+  /**
+   * Gives up on messages that have waited longer than chat.client.ackTimeoutMs for an ack, so lost acks do not hold
+   * slots forever. Called periodically by ConnectionManager's heartbeat.
+   * @return number of messages counted as lost
+   */
+  public int expireUnacked() {
+    long cutoff = System.nanoTime() - ACK_TIMEOUT_NANOS;
+    int lost = pending.removeIf(entry -> (entry & ~TYPE_MASK) - cutoff < 0);
+    if (lost > 0) {
+      pendingCount.addAndGet(-lost);
+      Metrics.lostAcks.add(lost);
+    }
+    return lost;
+  }
+
   /**
    * Schedules a message resend with exponential backoff if the socket is busy or failing.
    */
-  private void retrySend(ClientMessage msg, String json, int attempt) {
+  private void retrySend(long sequence, MessageType type, long intendedSendNanos, String json, int attempt) {
+    int nextAttempt = attempt + 1;
+    if (nextAttempt < MAX_SEND_ALLOWED && !cleanedUp) {
+      int waitTime = BackOffUtil.calculateExponentialBackoff(nextAttempt);
+      timer.schedule(() -> sendMsgWithRetry(sequence, type, intendedSendNanos, json, nextAttempt), waitTime,
+          TimeUnit.MILLISECONDS);
+    } else {
+      Metrics.sendFailures.increment();
+    }
+  }
+
+  private void retryBinarySend(long sequence, MessageType type, long intendedSendNanos, ByteBuffer frame,
+      int attempt) {
     int nextAttempt = attempt + 1;
-    if (nextAttempt < MAX_SEND_ALLOWED) {
+    if (nextAttempt < MAX_SEND_ALLOWED && !cleanedUp) {
       int waitTime = BackOffUtil.calculateExponentialBackoff(nextAttempt);
-      scheduler.schedule(() -> sendMsgWithRetry(msg, json, nextAttempt), waitTime, TimeUnit.MILLISECONDS);
+      timer.schedule(() -> sendBinaryWithRetry(sequence, type, intendedSendNanos, frame, nextAttempt), waitTime,
+          TimeUnit.MILLISECONDS);
+    } else {
+      Metrics.sendFailures.increment();
     }
   }
 
@@ -291,13 +501,13 @@ public class ChatClient {
    */
 
   private void attemptReconnect() {
-    if (!reconnecting.compareAndSet(false, true)) {
+    if (cleanedUp || !reconnecting.compareAndSet(false, true)) {
       return;
     }
     Metrics.reconnections.getAndIncrement();
     reconnectionAttemptCount++;
     int waitTime = BackOffUtil.calculateExponentialBackoff(reconnectionAttemptCount);
-    scheduler.schedule(() -> {
+    timer.schedule(() -> {
       try {
         connect();
         System.out.println("Reconnection for room"+ roomId + "this is the " + reconnectionAttemptCount + " time try");
@@ -324,7 +534,7 @@ public class ChatClient {
    */
   public void cleanup() {
     disableReconnection();
-    scheduler.shutdown();
+    cleanedUp = true;
     this.close();
   }
 
@@ -347,6 +557,27 @@ public class ChatClient {
     this.responseLatch = newLatch;
   }
 
+//  Switches the recorder that receives latencies, e.g. a new one per phase
+  public void setLatencyRecorder(LatencyRecorder latencyRecorder) {
+    this.latencyRecorder = latencyRecorder;
+  }
+
+//  Unacked messages on this connection
+  public int getPendingCount() {
+    return pendingCount.get();
+  }
+
+//  Forgets unacked messages, called by the driver between phases
+  public void clearPending() {
+    pending.clear();
+    pendingCount.set(0);
+  }
+
+//  Switches the frame format used for subsequent sends
+  public void setProtocol(WireProtocol protocol) {
+    this.protocol = protocol;
+  }
+
 
 //  Helper function to get lastSeen timestamp, used by
   public long getLastSeen() {
@@ -2,29 +2,40 @@ package client;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import model.LatencyReport;
+import util.LatencyRecorder;
 import util.Metrics;
+import util.ThreadMode;
+import util.TimerWheel;
 
 /**
  * A thread-safe Singleton that manages a pool of WebSocket connections, maintaining a mapping of room identifiers to active clients.
+ * Each room can hold several connections; {@link #selectClient} spreads a room's traffic across them with the
+ * configured {@link SelectionPolicy}, so sender threads no longer all contend on one session lock per room.
  * It incorporates a heartbeat mechanism to ensure connection persistence and proactive failure detection.
  */
 public class ConnectionManager {
 
   // Static instance of the class
   private static ConnectionManager instance;
-  private final Map<String, ChatClient> connectionPool;
+  private final Map<String, RoomConnections> connectionPool;
   private String serverBaseUri;
+//  How sender threads pick among a room's connections, applied to rooms created afterwards
+  private SelectionPolicy selectionPolicy = SelectionPolicy.ROUND_ROBIN;
+//  PLATFORM opens connections one after another; VIRTUAL runs every handshake on its own virtual thread
+  private ThreadMode threadMode = ThreadMode.PLATFORM;
 
   //  Heartbeat mechanism field
-  private final ScheduledExecutorService heartbeatScheduler = Executors.newSingleThreadScheduledExecutor();
+  private TimerWheel.Periodic heartbeat;
   private static final int HEARTBEAT_INTERVAL_SECONDS = 20;
 
   // Private constructor to prevent manual instantiation
@@ -52,14 +63,28 @@ public class ConnectionManager {
     this.serverBaseUri = serverBaseUri;
   }
 
+//  Must be set before setupConnectionPool
+  public void setSelectionPolicy(SelectionPolicy selectionPolicy) {
+    this.selectionPolicy = selectionPolicy;
+  }
+
+
+//  Must be set before setupConnectionPool
+  public void setThreadMode(ThreadMode threadMode) {
+    this.threadMode = threadMode;
+  }
 
-//  Periodically checks all connections in the pool.
+
+//  Periodically checks all connections in the pool and expires messages whose ack never came.
   private void startHeartbeat() {
-    heartbeatScheduler.scheduleAtFixedRate(() -> {
+    heartbeat = TimerWheel.shared().scheduleAtFixedRate(() -> {
       if (connectionPool.isEmpty()) return;
 
       long now = System.currentTimeMillis();
-      connectionPool.forEach((roomId, client) -> {
+      connectionPool.forEach((roomId, room) -> room.forEach(client -> {
+        if (client != null) {
+          client.expireUnacked();
+        }
 //        We do not need to send a ping since the client might be trying to connect
         if (client == null || !client.isOpen()) {
           System.err.println("[Heartbeat] ALERT: Room " + roomId + " connection is DOWN.");
@@ -73,36 +98,69 @@ public class ConnectionManager {
             client.sendPing();
           }
         }
-      });
+      }));
     }, HEARTBEAT_INTERVAL_SECONDS, HEARTBEAT_INTERVAL_SECONDS, TimeUnit.SECONDS);
   }
 
 //  Set up connection pool
   public void setupConnectionPool(CountDownLatch wsConnectedLatch, CountDownLatch responseLatch,
       BlockingQueue<LatencyReport> resultsQueue,
-      ConcurrentHashMap<String, LatencyReport> pendingMessages,
       int numChatRooms) throws URISyntaxException {
-    for (int roomId = 1; roomId <= numChatRooms; roomId++) {
-      try {
-        String roomIdStr = String.valueOf(roomId);
-        URI uri = new URI(serverBaseUri + roomIdStr);
-        ChatClient chatClient = new ChatClient(uri, pendingMessages, resultsQueue, wsConnectedLatch, responseLatch,
-            roomIdStr);
-        chatClient.connect();
-        connectionPool.put(roomIdStr, chatClient);
-      } catch (Exception e) {
-        System.err.println("Failed to connect to room " + roomId + ": " + e.getMessage());
+    setupConnectionPool(wsConnectedLatch, responseLatch, resultsQueue, numChatRooms, 1);
+  }
+
+  /**
+   * Opens connectionsPerRoom connections to every room. wsConnectedLatch must count numChatRooms * connectionsPerRoom.
+   */
+  public void setupConnectionPool(CountDownLatch wsConnectedLatch, CountDownLatch responseLatch,
+      BlockingQueue<LatencyReport> resultsQueue,
+      int numChatRooms, int connectionsPerRoom) throws URISyntaxException {
+    setupConnectionPool(wsConnectedLatch, responseLatch, resultsQueue, 1, numChatRooms, connectionsPerRoom);
+  }
+
+  /**
+   * Opens connectionsPerRoom connections to each of rooms firstRoom .. firstRoom + numChatRooms - 1, e.g. the share
+   * of one distributed load-test worker.
+   */
+  public void setupConnectionPool(CountDownLatch wsConnectedLatch, CountDownLatch responseLatch,
+      BlockingQueue<LatencyReport> resultsQueue,
+      int firstRoom, int numChatRooms, int connectionsPerRoom) throws URISyntaxException {
+    ExecutorService handshakes = threadMode == ThreadMode.VIRTUAL ? threadMode.newExecutor(0) : null;
+    for (int roomId = firstRoom; roomId < firstRoom + numChatRooms; roomId++) {
+      String roomIdStr = String.valueOf(roomId);
+      URI uri = new URI(serverBaseUri + roomIdStr);
+      List<ChatClient> clients = new ArrayList<>(connectionsPerRoom);
+      for (int k = 0; k < connectionsPerRoom; k++) {
+        try {
+          ChatClient chatClient = new ChatClient(uri, resultsQueue, wsConnectedLatch, responseLatch, roomIdStr);
+          if (handshakes != null) {
+//            connect() handles its own failures by scheduling a reconnect
+            handshakes.execute(chatClient::connect);
+          } else {
+            chatClient.connect();
+          }
+          clients.add(chatClient);
+        } catch (Exception e) {
+          System.err.println("Failed to connect to room " + roomId + ": " + e.getMessage());
+        }
+      }
+      if (!clients.isEmpty()) {
+        connectionPool.put(roomIdStr, new RoomConnections(clients.toArray(new ChatClient[0]),
+            selectionPolicy.newSelector()));
       }
     }
-    waitForConnections(wsConnectedLatch, numChatRooms);
+    if (handshakes != null) {
+      handshakes.shutdown();
+    }
+    waitForConnections(wsConnectedLatch, numChatRooms * connectionsPerRoom);
   }
 
-  private void waitForConnections(CountDownLatch wsConnectedLatch, int expectedRooms) {
+  private void waitForConnections(CountDownLatch wsConnectedLatch, int expectedConnections) {
     try {
       wsConnectedLatch.await(30, TimeUnit.SECONDS);
       // Assuming Metrics.connections is a global AtomicInteger tracking active sockets
-      if (Metrics.connections.get() == expectedRooms) {
-        System.out.println("All " + expectedRooms + " rooms are connected successfully.");
+      if (Metrics.connections.get() == expectedConnections) {
+        System.out.println("All " + expectedConnections + " connections are connected successfully.");
       }
     } catch (InterruptedException e) {
       Thread.currentThread().interrupt();
@@ -117,18 +175,84 @@ public class ConnectionManager {
     if (connectionPool.isEmpty()) {
       return;
     }
-//    Shutdown heartbeat scheduler (force shutdonw)
-    heartbeatScheduler.shutdownNow();
+//    Stop the heartbeat; the shared timer wheel keeps running for other clients
+    heartbeat.cancel();
 //    Shutdown all websocket
-    System.out.println("Closing " + connectionPool.size() + " WebSocket connections...");
-    for (ChatClient chatClient : connectionPool.values()) {
+    List<ChatClient> clients = getAllClients();
+    System.out.println("Closing " + clients.size() + " WebSocket connections...");
+    for (ChatClient chatClient : clients) {
       chatClient.cleanup();
     }
 //    Clear the connectionPool map
     connectionPool.clear();
   }
 
-  public Map<String, ChatClient> getConnectionPool() {
-    return this.connectionPool;
+  /**
+   * Closes every connection and puts the manager back in its initial state: no server URI, default selection
+   * policy and thread mode, and a fresh heartbeat (shutdownAll stops it). Lets one JVM run several load tests in a
+   * row, e.g. the cells of a parameter sweep, without the singleton carrying anything from one into the next.
+   */
+  public synchronized void reset() {
+    shutdownAll();
+    heartbeat.cancel();
+    serverBaseUri = null;
+    selectionPolicy = SelectionPolicy.ROUND_ROBIN;
+    threadMode = ThreadMode.PLATFORM;
+    startHeartbeat();
+  }
+
+//  Applies a frame format to every client in the pool
+  public void setProtocol(WireProtocol protocol) {
+    for (ChatClient chatClient : getAllClients()) {
+      chatClient.setProtocol(protocol);
+    }
+  }
+
+//  Routes every client's latencies to the given recorder
+  public void setLatencyRecorder(LatencyRecorder latencyRecorder) {
+    for (ChatClient chatClient : getAllClients()) {
+      chatClient.setLatencyRecorder(latencyRecorder);
+    }
+  }
+
+  /**
+   * Picks the connection for the next message to a room.
+   * @return null if the room has no connections
+   */
+  public ChatClient selectClient(String roomId) {
+    RoomConnections room = connectionPool.get(roomId);
+    return room == null ? null : room.select();
+  }
+
+//  Every connection in the pool, across all rooms
+  public List<ChatClient> getAllClients() {
+    List<ChatClient> clients = new ArrayList<>();
+    for (RoomConnections room : connectionPool.values()) {
+      room.forEach(clients::add);
+    }
+    return clients;
+  }
+
+  /**
+   * The connections of one room together with the selector that spreads traffic across them.
+   */
+  private static final class RoomConnections {
+    private final ChatClient[] clients;
+    private final ConnectionSelector selector;
+
+    RoomConnections(ChatClient[] clients, ConnectionSelector selector) {
+      this.clients = clients;
+      this.selector = selector;
+    }
+
+    ChatClient select() {
+      return clients.length == 1 ? clients[0] : selector.select(clients);
+    }
+
+    void forEach(Consumer<ChatClient> action) {
+      for (ChatClient client : clients) {
+        action.accept(client);
+      }
+    }
   }
 }
@@ -0,0 +1,14 @@
+package client;
+
+/**
+ * Picks which of a room's connections carries the next message.
+ * ConnectionManager creates one selector per room, and sender threads call {@link #select} concurrently.
+ */
+public interface ConnectionSelector {
+
+  /**
+   * @param connections every connection of one room, never empty
+   * @return the connection to send on; may be closed if none of them is open
+   */
+  ChatClient select(ChatClient[] connections);
+}
@@ -0,0 +1,80 @@
+package client;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Built-in {@link ConnectionSelector}s for rooms with several connections.
+ * Load-aware policies compare {@link ChatClient#getPendingCount()}, the messages sent on a connection and not yet acked.
+ */
+public enum SelectionPolicy {
+//  Cycle through the room's connections, skipping closed ones
+  ROUND_ROBIN {
+    @Override
+    public ConnectionSelector newSelector() {
+      AtomicInteger cursor = new AtomicInteger(0);
+      return connections -> {
+        int n = connections.length;
+        int start = Math.floorMod(cursor.getAndIncrement(), n);
+        for (int i = 0; i < n; i++) {
+          ChatClient candidate = connections[(start + i) % n];
+          if (candidate.isOpen()) {
+            return candidate;
+          }
+        }
+        return connections[start];
+      };
+    }
+  },
+//  Scan every connection and take the one with the fewest unacked messages
+  LEAST_PENDING {
+    @Override
+    public ConnectionSelector newSelector() {
+      return connections -> {
+        int n = connections.length;
+//        Random starting point so ties do not always favour the first connection
+        int start = n == 1 ? 0 : ThreadLocalRandom.current().nextInt(n);
+        ChatClient best = connections[start];
+        int bestLoad = load(best);
+        for (int i = 1; i < n; i++) {
+          ChatClient candidate = connections[(start + i) % n];
+          int candidateLoad = load(candidate);
+          if (candidateLoad < bestLoad) {
+            best = candidate;
+            bestLoad = candidateLoad;
+          }
+        }
+        return best;
+      };
+    }
+  },
+//  Sample two connections at random and take the less loaded one; O(1) and close to LEAST_PENDING in balance
+  POWER_OF_TWO {
+    @Override
+    public ConnectionSelector newSelector() {
+      return connections -> {
+        int n = connections.length;
+        if (n == 1) {
+          return connections[0];
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int a = random.nextInt(n);
+        int b = random.nextInt(n - 1);
+        if (b >= a) {
+          b++;
+        }
+        return load(connections[a]) <= load(connections[b]) ? connections[a] : connections[b];
+      };
+    }
+  };
+
+  /**
+   * Creates a selector for one room; selectors may keep per-room state such as a round-robin cursor.
+   */
+  public abstract ConnectionSelector newSelector();
+
+//  Closed connections rank last so they are only chosen when nothing is open
+  private static int load(ChatClient client) {
+    return client.isOpen() ? client.getPendingCount() : Integer.MAX_VALUE;
+  }
+}
@@ -0,0 +1,10 @@
+package client;
+
+/**
+ * Frame format a {@link ChatClient} uses to send messages.
+ * The server answers in the format of the frame it received, so no handshake is needed to switch.
+ */
+public enum WireProtocol {
+  JSON,
+  BINARY
+}
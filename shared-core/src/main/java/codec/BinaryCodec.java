@@ -0,0 +1,90 @@
+package codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import model.ClientMessage;
+import model.MessageType;
+
+/**
+ * Compact binary framing for chat messages, the alternative to JSON text frames.
+ * The server's codec.BinaryCodec mirrors this layout; both sides must change together.
+ *
+ * Request frame (client → server), big-endian:
+ *   long  messageId most significant bits
+ *   long  messageId least significant bits
+ *   int   userId
+ *   byte  messageType (ordinal: TEXT=0, JOIN=1, LEAVE=2)
+ *   long  timestamp as epoch nanoseconds
+ *   byte  username length, then username UTF-8 bytes
+ *   short message length, then message UTF-8 bytes
+ *
+ * Ack frame (server → client):
+ *   long  messageId most significant bits
+ *   long  messageId least significant bits
+ *   byte  status (0 = SUCCESS)
+ *   long  server timestamp as epoch nanoseconds
+ *
+ * A single binary frame may carry several acks back to back when the server coalesces them; see {@link #ackCount}.
+ * Errors are still sent as JSON text frames.
+ */
+public final class BinaryCodec {
+
+  public static final int REQUEST_HEADER_SIZE = 8 + 8 + 4 + 1 + 8;
+  public static final int ACK_SIZE = 8 + 8 + 1 + 8;
+  public static final byte STATUS_SUCCESS = 0;
+
+  private BinaryCodec() {}
+
+  /**
+   * Encodes a message into a new heap buffer, ready to send.
+   * The userId must be numeric; the load-test generator always produces numeric ids.
+   */
+  public static ByteBuffer encode(ClientMessage msg, long epochNanos) {
+    byte[] username = msg.getUsername().getBytes(StandardCharsets.UTF_8);
+    byte[] body = msg.getMessage().getBytes(StandardCharsets.UTF_8);
+    ByteBuffer frame = ByteBuffer.allocate(REQUEST_HEADER_SIZE + 1 + username.length + 2 + body.length);
+    frame.putLong(msg.getMessageIdMostBits())
+        .putLong(msg.getMessageIdLeastBits())
+        .putInt(Integer.parseInt(msg.getUserId()))
+        .put((byte) msg.getMessageType().ordinal())
+        .putLong(epochNanos)
+        .put((byte) username.length)
+        .put(username)
+        .putShort((short) body.length)
+        .put(body);
+    frame.flip();
+    return frame;
+  }
+
+  public static long toEpochNanos(Instant instant) {
+    return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+  }
+
+//  Ack accessors read at fixed offsets, so the buffer position is left untouched
+  public static long ackMessageIdMostBits(ByteBuffer ack) {
+    return ack.getLong(ack.position());
+  }
+
+  public static long ackMessageIdLeastBits(ByteBuffer ack) {
+    return ack.getLong(ack.position() + 8);
+  }
+
+  public static byte ackStatus(ByteBuffer ack) {
+    return ack.get(ack.position() + 16);
+  }
+
+  public static boolean isAck(ByteBuffer frame) {
+    return frame.remaining() > 0 && frame.remaining() % ACK_SIZE == 0;
+  }
+
+//  Number of fixed-size acks concatenated in the frame
+  public static int ackCount(ByteBuffer frame) {
+    return frame.remaining() / ACK_SIZE;
+  }
+
+  public static MessageType messageTypeOf(byte ordinal) {
+    MessageType[] types = MessageType.values();
+    return ordinal >= 0 && ordinal < types.length ? types[ordinal] : null;
+  }
+}
@@ -0,0 +1,159 @@
+package codec;
+
+import com.google.gson.Gson;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import model.ClientMessage;
+import model.MessageType;
+
+/**
+ * A chat message encoded once, both as a JSON text frame and as a {@link BinaryCodec} frame, with the message id and
+ * timestamp left as fixed-width placeholders. Sending copies the encoded form and patches only those two fields, so
+ * no ClientMessage, UUID, timestamp string or JSON serialization is built per message.
+ *
+ * The JSON timestamp is written with millisecond precision, e.g. 2026-01-31T12:00:00.123Z, so it always has the same
+ * width. Templates must be ASCII, which the load-test generator guarantees; the JSON form is kept as one byte per char.
+ */
+public final class PayloadTemplate {
+
+  private static final Gson GSON = new Gson();
+  private static final String TIMESTAMP_PLACEHOLDER = "1970-01-01T00:00:00.000Z";
+  private static final int BINARY_TIMESTAMP_OFFSET = 8 + 8 + 4 + 1;
+  private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+//  Per-thread buffer the JSON frame is patched in before it is copied into the outgoing String
+  private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[256]);
+//  "yyyy-MM-ddTHH:mm:ss" of the current second, rebuilt once per second
+  private static volatile SecondPrefix secondPrefix = new SecondPrefix(0);
+
+  private final String roomId;
+  private final MessageType messageType;
+  private final byte[] json;
+  private final int jsonIdOffset;
+  private final int jsonTimestampOffset;
+  private final byte[] binary;
+
+  private PayloadTemplate(String roomId, MessageType messageType, byte[] json, int jsonIdOffset,
+      int jsonTimestampOffset, byte[] binary) {
+    this.roomId = roomId;
+    this.messageType = messageType;
+    this.json = json;
+    this.jsonIdOffset = jsonIdOffset;
+    this.jsonTimestampOffset = jsonTimestampOffset;
+    this.binary = binary;
+  }
+
+  /**
+   * Encodes a message's user, room, type and text; its id and timestamp are ignored.
+   * @throws IllegalArgumentException if the message is not ASCII or its userId is not numeric
+   */
+  public static PayloadTemplate of(ClientMessage msg) {
+    ClientMessage copy = new ClientMessage(msg.getUserId(), msg.getUsername(), msg.getMessage(),
+        TIMESTAMP_PLACEHOLDER, msg.getMessageType(), msg.getRoomId());
+    copy.assignSequence(0, 0);
+    String text = GSON.toJson(copy);
+    for (int i = 0; i < text.length(); i++) {
+      if (text.charAt(i) > 127) {
+        throw new IllegalArgumentException("Payload templates must be ASCII: " + text);
+      }
+    }
+    int idOffset = valueOffset(text, "messageId");
+    int timestampOffset = valueOffset(text, "timestamp");
+    ByteBuffer frame = BinaryCodec.encode(copy, 0);
+    byte[] binary = new byte[frame.remaining()];
+    frame.get(binary);
+    return new PayloadTemplate(msg.getRoomId(), msg.getMessageType(), text.getBytes(StandardCharsets.US_ASCII),
+        idOffset, timestampOffset, binary);
+  }
+
+  private static int valueOffset(String json, String field) {
+    String key = "\"" + field + "\":\"";
+    int at = json.indexOf(key);
+    if (at < 0) {
+      throw new IllegalArgumentException("No " + field + " in " + json);
+    }
+    return at + key.length();
+  }
+
+  /**
+   * JSON text frame with the id new UUID(connectionTag, sequence) and the given send time.
+   */
+  public String encodeJson(long connectionTag, long sequence, long epochMillis) {
+    byte[] buffer = SCRATCH.get();
+    if (buffer.length < json.length) {
+      buffer = new byte[json.length];
+      SCRATCH.set(buffer);
+    }
+    System.arraycopy(json, 0, buffer, 0, json.length);
+    writeUuid(buffer, jsonIdOffset, connectionTag, sequence);
+    writeTimestamp(buffer, jsonTimestampOffset, epochMillis);
+    return new String(buffer, 0, json.length, StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * Binary frame with the id new UUID(connectionTag, sequence) and the given send time, in a new buffer ready to send.
+   */
+  public ByteBuffer encodeBinary(long connectionTag, long sequence, long epochNanos) {
+    ByteBuffer frame = ByteBuffer.allocate(binary.length);
+    frame.put(binary);
+    frame.putLong(0, connectionTag)
+        .putLong(8, sequence)
+        .putLong(BINARY_TIMESTAMP_OFFSET, epochNanos);
+    frame.flip();
+    return frame;
+  }
+
+  public String getRoomId() {
+    return roomId;
+  }
+
+  public MessageType getMessageType() {
+    return messageType;
+  }
+
+//  Same layout as UUID.toString(): 8-4-4-4-12 lowercase hex digits
+  private static void writeUuid(byte[] buffer, int offset, long mostBits, long leastBits) {
+    writeHex(buffer, offset, mostBits >>> 32, 8);
+    writeHex(buffer, offset + 9, mostBits >>> 16, 4);
+    writeHex(buffer, offset + 14, mostBits, 4);
+    writeHex(buffer, offset + 19, leastBits >>> 48, 4);
+    writeHex(buffer, offset + 24, leastBits, 12);
+  }
+
+  private static void writeHex(byte[] buffer, int offset, long value, int digits) {
+    for (int i = digits - 1; i >= 0; i--) {
+      buffer[offset + i] = HEX[(int) (value & 0xF)];
+      value >>>= 4;
+    }
+  }
+
+  private static void writeTimestamp(byte[] buffer, int offset, long epochMillis) {
+    long second = Math.floorDiv(epochMillis, 1000);
+    SecondPrefix prefix = secondPrefix;
+    if (prefix.second != second) {
+      prefix = new SecondPrefix(second);
+      secondPrefix = prefix;
+    }
+    System.arraycopy(prefix.bytes, 0, buffer, offset, prefix.bytes.length);
+    int millis = (int) Math.floorMod(epochMillis, 1000);
+    buffer[offset + 19] = '.';
+    buffer[offset + 20] = (byte) ('0' + millis / 100);
+    buffer[offset + 21] = (byte) ('0' + millis / 10 % 10);
+    buffer[offset + 22] = (byte) ('0' + millis % 10);
+    buffer[offset + 23] = 'Z';
+  }
+
+  private static final class SecondPrefix {
+    private final long second;
+    private final byte[] bytes;
+
+    SecondPrefix(long second) {
+      this.second = second;
+      LocalDateTime time = LocalDateTime.ofEpochSecond(second, 0, ZoneOffset.UTC);
+      this.bytes = String.format("%04d-%02d-%02dT%02d:%02d:%02d", time.getYear(), time.getMonthValue(),
+          time.getDayOfMonth(), time.getHour(), time.getMinute(), time.getSecond()).getBytes(StandardCharsets.US_ASCII);
+    }
+  }
+}
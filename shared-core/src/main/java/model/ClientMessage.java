@@ -14,16 +14,27 @@ public class ClientMessage {
   private String timestamp;
   private MessageType messageType;
   private String roomId;
-  private final String messageId;
+  private String messageId;
+//  Numeric form of messageId for the binary protocol; transient so JSON frames are unchanged
+  private transient long messageIdMostBits;
+  private transient long messageIdLeastBits;
+//  Open-loop runs: System.nanoTime() at which the schedule wanted this message sent, 0 when sent closed-loop
+  private transient long intendedSendNanos;
 
   public ClientMessage() {
-    this.messageId = UUID.randomUUID().toString();
+    UUID uuid = UUID.randomUUID();
+    this.messageId = uuid.toString();
+    this.messageIdMostBits = uuid.getMostSignificantBits();
+    this.messageIdLeastBits = uuid.getLeastSignificantBits();
   }
 
   public ClientMessage(String userId, String username, String message, String timestamp, MessageType messageType,
       String roomId) {
 //    Generate a unique identifier for this message
-    this.messageId = UUID.randomUUID().toString();
+    UUID uuid = UUID.randomUUID();
+    this.messageId = uuid.toString();
+    this.messageIdMostBits = uuid.getMostSignificantBits();
+    this.messageIdLeastBits = uuid.getLeastSignificantBits();
     this.userId = userId;
     this.username = username;
     this.message = message;
@@ -80,9 +91,62 @@ public class ClientMessage {
     this.roomId = roomId;
   }
 
-//  We do not have setter for MessageId since it is generated by the system
+//  We do not have setter for MessageId since it is generated by the system, see assignSequence
   public String getMessageId() {
     return messageId;
   }
-}
 
+  public long getMessageIdMostBits() {
+    return messageIdMostBits;
+  }
+
+  public long getMessageIdLeastBits() {
+    return messageIdLeastBits;
+  }
+
+  /**
+   * Replaces the random id with one that carries the sending connection's tag and sequence number, so the ack the
+   * server echoes back can be matched by sequence instead of by string lookup. The id is still a valid UUID string.
+   */
+  public void assignSequence(long connectionTag, long sequence) {
+    this.messageIdMostBits = connectionTag;
+    this.messageIdLeastBits = sequence;
+    this.messageId = new UUID(connectionTag, sequence).toString();
+  }
+
+//  Sequence assigned by assignSequence, i.e. the low half of the id
+  public long getSequence() {
+    return messageIdLeastBits;
+  }
+
+  /**
+   * Reads the sequence back out of an id built by {@link #assignSequence}: the last 16 hex digits of the UUID
+   * string, parsed in place without allocating.
+   * @return the sequence, or -1 if the id is not a UUID string
+   */
+  public static long sequenceOf(String messageId) {
+    if (messageId == null || messageId.length() != 36 || messageId.charAt(23) != '-') {
+      return -1;
+    }
+    long sequence = 0;
+    for (int i = 19; i < 36; i++) {
+      if (i == 23) {
+        continue;
+      }
+      int digit = Character.digit(messageId.charAt(i), 16);
+      if (digit < 0) {
+        return -1;
+      }
+      sequence = (sequence << 4) | digit;
+    }
+    return sequence;
+  }
+
+  public long getIntendedSendNanos() {
+    return intendedSendNanos;
+  }
+
+  public void setIntendedSendNanos(long intendedSendNanos) {
+    this.intendedSendNanos = intendedSendNanos;
+  }
+}
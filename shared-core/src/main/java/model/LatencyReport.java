@@ -6,18 +6,24 @@ package model;
  *
  * Includes details such as message type, sent and received timestamps,
  * room ID, status code, and computed latency.
+ *
+ * Latency is measured with the monotonic System.nanoTime() and reported in microseconds;
+ * the wall-clock sentTime is only kept for the CSV timestamp column.
  */
 public class LatencyReport {
   private MessageType messageType;
   private long sentTime;
-  private long receiveTime;
+//  Monotonic timestamps from System.nanoTime(), only meaningful relative to each other
+  private long sentNanos;
+  private long receiveNanos;
   private String statusCode;
   private String roomId;
   private long latency;
 
-  public LatencyReport(MessageType messageType, long sentTime, String roomId) {
+  public LatencyReport(MessageType messageType, long sentTime, long sentNanos, String roomId) {
     this.messageType = messageType;
     this.sentTime = sentTime;
+    this.sentNanos = sentNanos;
     this.roomId = roomId;
   }
 
@@ -38,13 +44,17 @@ public class LatencyReport {
     this.sentTime = sentTime;
   }
 
-  public long getReceiveTime() {
-    return receiveTime;
+  public long getSentNanos() {
+    return sentNanos;
+  }
+
+  public long getReceiveNanos() {
+    return receiveNanos;
   }
 
-  public void setReceiveTime(long receiveTime) {
-    this.receiveTime = receiveTime;
-    this.latency = receiveTime - sentTime;
+  public void setReceiveNanos(long receiveNanos) {
+    this.receiveNanos = receiveNanos;
+    this.latency = (receiveNanos - sentNanos) / 1_000;
   }
 
   public String getStatusCode() {
@@ -63,7 +73,7 @@ public class LatencyReport {
     this.roomId = roomId;
   }
 
-//  We do not have setter for latency, it is calculated when message is received
+//  We do not have setter for latency, it is calculated when message is received. Unit: microseconds
   public long getLatency() {
     return latency;
   }
@@ -75,5 +85,5 @@ public class LatencyReport {
   }
 
   public static final LatencyReport POISON_PILL =
-      new LatencyReport(null, -1L, null);
+      new LatencyReport(null, -1L, -1L, null);
 }
@@ -10,6 +10,8 @@ public class ResponseMessage {
   private String messageId;
   private String status;
   private String timestamp;
+//  Per-room sequence number, present when the server runs with sequencing enabled
+  private Long sequence;
 
   public ResponseMessage() {}
 
@@ -42,4 +44,12 @@ public class ResponseMessage {
   public void setTimestamp(String timestamp) {
     this.timestamp = timestamp;
   }
+
+  public Long getSequence() {
+    return sequence;
+  }
+
+  public void setSequence(Long sequence) {
+    this.sequence = sequence;
+  }
 }
@@ -0,0 +1,49 @@
+package util;
+
+import client.ConnectionManager;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Closed-loop sender of an auto-tuned phase. Like {@link MessageSender} it sends as fast as it can, but it claims
+ * messages one at a time from a budget shared by all senders, and before each one waits until its index is inside
+ * the {@link ConcurrencyController}'s limit, so the number of active senders can change during the phase.
+ */
+public class AdaptiveSender implements Runnable {
+
+  private final MessageSource messageSource;
+  private final CountDownLatch producerLatch;
+  private final AtomicInteger remaining;
+  private final ConcurrencyController controller;
+  private final int index;
+
+  public AdaptiveSender(MessageSource messageSource, CountDownLatch producerLatch, AtomicInteger remaining,
+      ConcurrencyController controller, int index) {
+    this.messageSource = messageSource;
+    this.producerLatch = producerLatch;
+    this.remaining = remaining;
+    this.controller = controller;
+    this.index = index;
+  }
+
+  @Override
+  public void run() {
+    ConnectionManager connectionManager = ConnectionManager.getInstance();
+    try {
+      while (true) {
+        controller.awaitTurn(index);
+        if (remaining.getAndDecrement() <= 0) {
+//          Budget spent: release the senders still parked outside the limit so they can exit too
+          controller.finish();
+          break;
+        }
+        messageSource.sendNext(connectionManager, 0);
+      }
+    } catch (InterruptedException e) {
+      System.out.println("Thread Error");
+      Thread.currentThread().interrupt();
+    } finally {
+      producerLatch.countDown();
+    }
+  }
+}
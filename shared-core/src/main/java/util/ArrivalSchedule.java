@@ -0,0 +1,117 @@
+package util;
+
+import java.util.Random;
+
+/**
+ * Intended send times for an open-loop phase. Sender threads claim slots with {@link #next()} and send at the slot's
+ * time regardless of how earlier messages are doing, so the offered load does not back off when the server slows down.
+ *
+ * Shapes, for a target rate R msg/s:
+ *   CONSTANT  R throughout
+ *   STEP      R/steps for the first stepSeconds, then R*2/steps, ... up to R
+ *   RAMP      linear from R/100 to R over rampSeconds, then R
+ *   POISSON   exponential inter-arrival times with mean 1/R (bursty, same average rate)
+ */
+public final class ArrivalSchedule {
+
+  public enum Shape {
+    CONSTANT,
+    STEP,
+    RAMP,
+    POISSON
+  }
+
+  private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+  private final Shape shape;
+  private final double targetRate;
+  private final int steps;
+  private final double stepNanos;
+  private final double rampNanos;
+  private final long count;
+  private final Random random;
+
+//  Guarded by this
+  private long issued;
+  private double nextNanos;
+  private long lastSlotNanos;
+
+  private ArrivalSchedule(Shape shape, double targetRate, int steps, double stepSeconds, double rampSeconds,
+      long count, long seed) {
+    if (targetRate <= 0) {
+      throw new IllegalArgumentException("Target rate must be positive: " + targetRate);
+    }
+    this.shape = shape;
+    this.targetRate = targetRate;
+    this.steps = Math.max(1, steps);
+    this.stepNanos = stepSeconds * NANOS_PER_SECOND;
+    this.rampNanos = rampSeconds * NANOS_PER_SECOND;
+    this.count = count;
+    this.random = new Random(seed);
+  }
+
+  public static ArrivalSchedule constant(double rate, long count) {
+    return new ArrivalSchedule(Shape.CONSTANT, rate, 1, 0, 0, count, 0);
+  }
+
+  public static ArrivalSchedule step(double rate, int steps, double stepSeconds, long count) {
+    return new ArrivalSchedule(Shape.STEP, rate, steps, stepSeconds, 0, count, 0);
+  }
+
+  public static ArrivalSchedule ramp(double rate, double rampSeconds, long count) {
+    return new ArrivalSchedule(Shape.RAMP, rate, 1, 0, rampSeconds, count, 0);
+  }
+
+//  Fixed seed keeps runs comparable
+  public static ArrivalSchedule poisson(double rate, long count, long seed) {
+    return new ArrivalSchedule(Shape.POISSON, rate, 1, 0, 0, count, seed);
+  }
+
+  /**
+   * Claims the next send slot.
+   * @return nanoseconds after the phase start at which the message should be sent, or -1 when all slots are taken
+   */
+  public synchronized long next() {
+    if (issued >= count) {
+      return -1;
+    }
+    issued++;
+    long slot = (long) nextNanos;
+    lastSlotNanos = slot;
+    double rate = rateAt(nextNanos);
+    double interval = shape == Shape.POISSON
+        ? -Math.log(1.0 - random.nextDouble()) / rate
+        : 1.0 / rate;
+    nextNanos += interval * NANOS_PER_SECOND;
+    return slot;
+  }
+
+//  Instantaneous rate in msg/s at the given offset into the phase
+  private double rateAt(double tNanos) {
+    switch (shape) {
+      case STEP:
+        int step = stepNanos <= 0 ? steps : (int) Math.min(steps, Math.floor(tNanos / stepNanos) + 1);
+        return targetRate * step / steps;
+      case RAMP:
+        double fraction = rampNanos <= 0 ? 1.0 : Math.min(1.0, tNanos / rampNanos);
+        return targetRate * Math.max(0.01, fraction);
+      default:
+        return targetRate;
+    }
+  }
+
+  public Shape getShape() {
+    return shape;
+  }
+
+  public double getTargetRate() {
+    return targetRate;
+  }
+
+  /**
+   * Average rate the schedule asked for over the slots handed out so far.
+   */
+  public synchronized double requestedRate() {
+    return lastSlotNanos <= 0 ? targetRate : (issued - 1) * NANOS_PER_SECOND / lastSlotNanos;
+  }
+}
@@ -0,0 +1,132 @@
+package util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import model.LatencyReport;
+import model.MessageType;
+
+/**
+ * Fixed-width binary form of the per-message latency log, written by {@link BinaryLatencyLogWriter} instead of the
+ * CSV when a run produces more acks per second than formatting text can keep up with.
+ *
+ * File header (big-endian): int magic "LATL", int version, int record size.
+ * Record, 18 bytes:
+ *   long  sent time, wall-clock epoch millis (the CSV timestamp column)
+ *   int   latency in microseconds, capped at Integer.MAX_VALUE
+ *   byte  message type ordinal, -1 for none
+ *   byte  status index into STATUSES (SUCCESS, UNKNOWN)
+ *   int   room id, -1 if it is not a number
+ *
+ * {@link #toCsv} turns a log back into exactly the CSVWriter layout, so StatisticsGenerator and other tools keep
+ * working on it.
+ */
+public final class BinaryLatencyLog {
+
+  public static final int MAGIC = 0x4c41544c;
+  public static final int VERSION = 1;
+  public static final int HEADER_SIZE = 12;
+  public static final int RECORD_SIZE = 8 + 4 + 1 + 1 + 4;
+  public static final String CSV_HEADER = "timestamp,messageType,latencyMicros,statusCode,roomId";
+
+  private static final String[] STATUSES = {"SUCCESS", "UNKNOWN"};
+  private static final MessageType[] TYPES = MessageType.values();
+
+  private BinaryLatencyLog() {}
+
+  static void writeHeader(ByteBuffer buf) {
+    buf.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE);
+  }
+
+  static void encode(LatencyReport report, ByteBuffer buf) {
+    MessageType type = report.getMessageType();
+    buf.putLong(report.getSentTime())
+        .putInt((int) Math.min(Integer.MAX_VALUE, Math.max(0, report.getLatency())))
+        .put(type == null ? -1 : (byte) type.ordinal())
+        .put("SUCCESS".equals(report.getStatusCode()) ? (byte) 0 : (byte) 1)
+        .putInt(roomNumber(report.getRoomId()));
+  }
+
+//  Room ids of the load test are small numbers; parsed by hand to keep the writer free of exceptions and garbage
+  private static int roomNumber(String roomId) {
+    if (roomId == null || roomId.isEmpty() || roomId.length() > 9) {
+      return -1;
+    }
+    int value = 0;
+    for (int i = 0; i < roomId.length(); i++) {
+      int digit = roomId.charAt(i) - '0';
+      if (digit < 0 || digit > 9) {
+        return -1;
+      }
+      value = value * 10 + digit;
+    }
+    return value;
+  }
+
+  /**
+   * Writes a binary log as CSV in the CSVWriter layout.
+   * @return number of records converted
+   * @throws IOException if the file cannot be read or is not a latency log of this version
+   */
+  public static long toCsv(Path log, Path csv) throws IOException {
+    long records = 0;
+    try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ);
+        BufferedWriter out = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+      ByteBuffer buf = ByteBuffer.allocateDirect(RECORD_SIZE * 16384);
+      readFully(channel, buf, HEADER_SIZE);
+      if (buf.getInt() != MAGIC || buf.getInt() != VERSION || buf.getInt() != RECORD_SIZE) {
+        throw new IOException(log + " is not a version " + VERSION + " latency log");
+      }
+      buf.clear();
+      out.write(CSV_HEADER);
+      out.write('\n');
+      StringBuilder line = new StringBuilder(64);
+      while (true) {
+        int read = channel.read(buf);
+        buf.flip();
+        while (buf.remaining() >= RECORD_SIZE) {
+          long sentTime = buf.getLong();
+          int latency = buf.getInt();
+          byte type = buf.get();
+          byte status = buf.get();
+          int room = buf.getInt();
+          line.setLength(0);
+          line.append(sentTime).append(',')
+              .append(type >= 0 && type < TYPES.length ? TYPES[type].toString() : "null").append(',')
+              .append(latency).append(',')
+              .append(status >= 0 && status < STATUSES.length ? STATUSES[status] : "UNKNOWN").append(',');
+          if (room >= 0) {
+            line.append(room);
+          } else {
+            line.append("null");
+          }
+          out.append(line).append('\n');
+          records++;
+        }
+        if (read < 0) {
+          if (buf.hasRemaining()) {
+            throw new IOException(log + " ends with a partial record of " + buf.remaining() + " bytes");
+          }
+          break;
+        }
+        buf.compact();
+      }
+    }
+    return records;
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buf, int length) throws IOException {
+    buf.limit(length);
+    while (buf.hasRemaining()) {
+      if (channel.read(buf) < 0) {
+        throw new IOException("Latency log shorter than its " + length + "-byte header");
+      }
+    }
+    buf.flip();
+  }
+}
@@ -0,0 +1,130 @@
+package util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import model.LatencyReport;
+
+/**
+ * Drop-in replacement for {@link CSVWriter} that writes the {@link BinaryLatencyLog} format.
+ *
+ * The writer thread takes reports from the queue in batches with drainTo and encodes each into an 18-byte record in
+ * a direct buffer. Two buffers alternate: when one is full it is handed to a flusher thread that writes it to the
+ * FileChannel while the writer fills the other, so encoding only waits for the disk when both buffers are full.
+ * Stops at {@link LatencyReport#POISON_PILL} like CSVWriter.
+ */
+public class BinaryLatencyLogWriter implements Runnable {
+
+  private static final int BUFFER_BYTES = BinaryLatencyLog.RECORD_SIZE * 32768;
+  private static final int BATCH_SIZE = 4096;
+//  Handed to the flusher after the last buffer
+  private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+  private final BlockingQueue<LatencyReport> resultsQueue;
+  private final File outputFile;
+  private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(2);
+  private final BlockingQueue<ByteBuffer> full = new ArrayBlockingQueue<>(3);
+  private volatile IOException flushError;
+  private volatile long written;
+
+  public BinaryLatencyLogWriter(BlockingQueue<LatencyReport> resultsQueue, String outputDir, String fileName) {
+    this.resultsQueue = resultsQueue;
+    File dir = new File(outputDir);
+    if (!dir.exists() && !dir.mkdirs()) {
+      System.err.println("CRITICAL: Could not create " + dir.getAbsolutePath());
+    }
+    this.outputFile = new File(dir, fileName);
+  }
+
+  @Override
+  public void run() {
+    try (FileChannel channel = FileChannel.open(outputFile.toPath(), StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      free.add(ByteBuffer.allocateDirect(BUFFER_BYTES));
+      free.add(ByteBuffer.allocateDirect(BUFFER_BYTES));
+      Thread flusher = new Thread(() -> flush(channel), "latency-log-flusher");
+      flusher.start();
+
+      ByteBuffer buf = free.take();
+      BinaryLatencyLog.writeHeader(buf);
+      List<LatencyReport> batch = new ArrayList<>(BATCH_SIZE);
+      long count = 0;
+      boolean done = false;
+      try {
+        while (!done) {
+          batch.add(resultsQueue.take());
+          resultsQueue.drainTo(batch, BATCH_SIZE - 1);
+          for (LatencyReport record : batch) {
+            if (record == LatencyReport.POISON_PILL) {
+              done = true;
+              break;
+            }
+            if (buf.remaining() < BinaryLatencyLog.RECORD_SIZE) {
+              full.add(buf);
+//              Handed off; cleared so an interrupt in take() does not queue it a second time
+              buf = null;
+              buf = free.take();
+            }
+            BinaryLatencyLog.encode(record, buf);
+            count++;
+          }
+          batch.clear();
+          written = count;
+        }
+      } finally {
+//        Room for both buffers and END, so these never block, even when interrupted
+        if (buf != null) {
+          full.add(buf);
+        }
+        full.add(END);
+        flusher.join();
+      }
+      if (flushError != null) {
+        throw flushError;
+      }
+      System.out.println("Binary latency log complete: " + count + " records written to "
+          + outputFile.getAbsolutePath());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      System.out.println("Binary latency log writer interrupted, exiting early");
+    } catch (IOException e) {
+      System.err.println("Error writing binary latency log: " + e.getMessage());
+    }
+  }
+
+//  Flusher thread: writes full buffers in order and returns them; after a write error it only recycles them
+  private void flush(FileChannel channel) {
+    while (true) {
+      ByteBuffer buf;
+      try {
+        buf = full.take();
+      } catch (InterruptedException e) {
+        return;
+      }
+      if (buf == END) {
+        return;
+      }
+      buf.flip();
+      try {
+        while (flushError == null && buf.hasRemaining()) {
+          channel.write(buf);
+        }
+      } catch (IOException e) {
+        flushError = e;
+      }
+      buf.clear();
+      free.add(buf);
+    }
+  }
+
+//  Records encoded so far, updated once per batch
+  public long getWritten() {
+    return written;
+  }
+}
@@ -38,7 +38,8 @@ public class CSVWriter implements Runnable{
   public void run() {
     try (BufferedWriter bw = new BufferedWriter(new FileWriter(outputFile));
         PrintWriter writer = new PrintWriter(bw)) {
-      writer.println("timestamp,messageType,latency,statusCode,roomId");
+//      timestamp is wall-clock epoch millis, latency is in microseconds
+      writer.println("timestamp,messageType,latencyMicros,statusCode,roomId");
 
       StringBuilder batch = new StringBuilder();
       int written = 0;
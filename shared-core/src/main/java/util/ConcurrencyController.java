@@ -0,0 +1,211 @@
+package util;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * AIMD limit on the number of active sender threads, tuned from the ack rate and p99 latency of each measurement
+ * window, in the spirit of TCP congestion control and Netflix's concurrency-limits.
+ *
+ * Starts in slow start, doubling the limit every window while the ack rate still grows by at least MIN_GAIN. After
+ * that it adds max(1, limit / 16) per window. When a window's p99 exceeds latencyTolerance times the long-term p99,
+ * or the ack rate drops by more than MAX_DROP right after an increase, the senders are queueing rather than adding
+ * throughput, and the limit is cut to three quarters. As in concurrency-limits' Gradient2, the long-term values are
+ * moving averages rather than the best window ever seen, so JIT warm-up or a server slowing down over the run does
+ * not leave the baseline behind.
+ *
+ * Every window is kept in a curve by concurrency level, both raw and relative to the long-term values at the time,
+ * and levels are compared on the relative values for the same reason. The chosen concurrency is the knee of that
+ * curve: the lowest level that reaches 95% of the best relative ack rate among levels whose relative p99 is within
+ * the tolerance. Levels measured only once are used only when no level has more windows.
+ *
+ * Sender threads call {@link #awaitTurn(int)} before each message; threads whose index is at or above the limit park
+ * there until the limit grows or {@link #finish()} releases them.
+ */
+public final class ConcurrencyController {
+
+  private static final double MIN_GAIN = 0.05;
+  private static final double MAX_DROP = 0.10;
+  private static final double DECREASE = 0.75;
+  private static final double KNEE_FRACTION = 0.95;
+//  Weight of the newest window in the long-term averages
+  private static final double LONG_TERM_WEIGHT = 0.2;
+
+  private final int maxLimit;
+  private final double latencyTolerance;
+  private volatile int limit;
+  private volatile boolean finished;
+
+//  Touched only by the thread calling onWindow
+  private boolean slowStart = true;
+  private boolean increased;
+  private double lastThroughput;
+  private double longThroughput;
+  private double longP99;
+  private final TreeMap<Integer, Level> curve = new TreeMap<>();
+
+  /**
+   * @param initialLimit     active senders in the first window
+   * @param maxLimit         sender threads available, the limit never goes above it
+   * @param latencyTolerance how many times the long-term (moving-average) p99 a window may reach before the limit is cut
+   */
+  public ConcurrencyController(int initialLimit, int maxLimit, double latencyTolerance) {
+    if (initialLimit < 1 || maxLimit < initialLimit) {
+      throw new IllegalArgumentException("Need 1 <= initial limit <= max limit");
+    }
+    if (latencyTolerance <= 1) {
+      throw new IllegalArgumentException("Latency tolerance must be above 1");
+    }
+    this.maxLimit = maxLimit;
+    this.latencyTolerance = latencyTolerance;
+    this.limit = initialLimit;
+  }
+
+  /**
+   * Ack rate and latency measured while one concurrency level was active.
+   */
+  public static final class Level {
+    private int windows;
+    private double throughputSum;
+    private long p99Sum;
+    private double relativeThroughputSum;
+    private double relativeP99Sum;
+
+    public int getWindows() {
+      return windows;
+    }
+
+    public double getMeanThroughput() {
+      return throughputSum / windows;
+    }
+
+    public long getMeanP99() {
+      return p99Sum / windows;
+    }
+
+//    Ack rate and p99 as a fraction of the long-term averages when they were measured
+    public double getRelativeThroughput() {
+      return relativeThroughputSum / windows;
+    }
+
+    public double getRelativeP99() {
+      return relativeP99Sum / windows;
+    }
+  }
+
+  /**
+   * Blocks the sender with the given index (0-based) while it is outside the limit.
+   */
+  public void awaitTurn(int index) throws InterruptedException {
+    if (index < limit || finished) {
+      return;
+    }
+    synchronized (this) {
+      while (index >= limit && !finished) {
+        wait();
+      }
+    }
+  }
+
+  /**
+   * Lets every parked sender through, e.g. once all messages of the phase are claimed.
+   */
+  public synchronized void finish() {
+    finished = true;
+    notifyAll();
+  }
+
+  /**
+   * Feeds one window's measurements at the current limit and moves the limit.
+   * @param throughput acks per second in the window
+   * @param p99        p99 latency of those acks
+   * @return the new limit
+   */
+  public int onWindow(double throughput, long p99) {
+    int current = limit;
+    if (throughput <= 0 || finished) {
+      return current;
+    }
+    if (longThroughput == 0) {
+      longThroughput = throughput;
+      longP99 = Math.max(1, p99);
+    }
+    Level level = curve.computeIfAbsent(current, k -> new Level());
+    level.windows++;
+    level.throughputSum += throughput;
+    level.p99Sum += p99;
+    level.relativeThroughputSum += throughput / longThroughput;
+    level.relativeP99Sum += p99 / longP99;
+
+    boolean congested = p99 > longP99 * latencyTolerance
+        || (increased && throughput < lastThroughput * (1 - MAX_DROP));
+    longThroughput += LONG_TERM_WEIGHT * (throughput - longThroughput);
+    longP99 += LONG_TERM_WEIGHT * (Math.max(1, p99) - longP99);
+    int next;
+    if (congested) {
+      slowStart = false;
+      next = (int) (current * DECREASE);
+    } else if (slowStart && (lastThroughput == 0 || throughput >= lastThroughput * (1 + MIN_GAIN))) {
+      next = current * 2;
+    } else {
+      slowStart = false;
+      next = current + Math.max(1, current / 16);
+    }
+    next = Math.max(1, Math.min(maxLimit, next));
+    increased = next > current;
+    lastThroughput = throughput;
+    setLimit(next);
+    return next;
+  }
+
+  private synchronized void setLimit(int next) {
+    limit = next;
+    notifyAll();
+  }
+
+  public int getLimit() {
+    return limit;
+  }
+
+  /**
+   * Knee of the explored curve, or the current limit if no window has been measured.
+   */
+  public int getChosenLimit() {
+    int minWindows = 1;
+    for (Level level : curve.values()) {
+      if (level.windows > 1) {
+        minWindows = 2;
+        break;
+      }
+    }
+    double best = 0;
+    boolean anyWithin = false;
+    for (Level level : curve.values()) {
+      if (level.windows >= minWindows && level.getRelativeP99() <= latencyTolerance) {
+        best = Math.max(best, level.getRelativeThroughput());
+        anyWithin = true;
+      }
+    }
+    if (!anyWithin) {
+//      Every level was slower than the tolerance allows; fall back to the ack rate alone
+      for (Level level : curve.values()) {
+        if (level.windows >= minWindows) {
+          best = Math.max(best, level.getRelativeThroughput());
+        }
+      }
+    }
+    for (Map.Entry<Integer, Level> entry : curve.entrySet()) {
+      Level level = entry.getValue();
+      if (level.windows >= minWindows && (!anyWithin || level.getRelativeP99() <= latencyTolerance)
+          && level.getRelativeThroughput() >= best * KNEE_FRACTION) {
+        return entry.getKey();
+      }
+    }
+    return limit;
+  }
+
+//  Windows measured per concurrency level, in increasing level order
+  public Map<Integer, Level> getCurve() {
+    return curve;
+  }
+}
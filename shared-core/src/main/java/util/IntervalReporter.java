@@ -0,0 +1,138 @@
+package util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prints a live line and appends a row to a time-series CSV every interval while a load test runs: messages sent,
+ * acks received, send failures, lost acks and reconnections in the interval, and p50 / p99 / max of the acks that
+ * arrived in it.
+ *
+ * Nothing is added to the send or ack path beyond the counters in {@link Metrics}; the reporter reads those and
+ * {@link LatencyRecorder#totalSnapshot()} on a {@link TimerWheel} task thread and diffs them against the previous
+ * tick. {@link #phase} switches to the next phase's recorder so a run shows warmup and main phase in one series.
+ *
+ * Counts in the time series are per row; elapsedMs lets a reader turn them into rates.
+ * Time series columns: timestamp,elapsedMs,phase,sent,acked,failed,lostAcks,reconnections,p50Micros,p99Micros,maxMicros
+ */
+public final class IntervalReporter implements AutoCloseable {
+
+  public static final String CSV_HEADER =
+      "timestamp,elapsedMs,phase,sent,acked,failed,lostAcks,reconnections,p50Micros,p99Micros,maxMicros";
+
+  private final long intervalMs;
+  private final BufferedWriter out;
+  private final long startNanos = System.nanoTime();
+  private TimerWheel.Periodic task;
+
+//  Guarded by this: the phase being reported and the counters at the previous tick
+  private String phase;
+  private LatencyRecorder recorder;
+  private LatencyHistogram lastLatencies;
+  private long lastTickNanos = startNanos;
+  private long lastSent;
+  private long lastFailures;
+  private long lastLostAcks;
+  private long lastReconnections;
+
+  /**
+   * @param timeSeriesFile CSV to write the series to, or null to only print
+   * @throws IOException if the file cannot be created
+   */
+  public IntervalReporter(long intervalMs, File timeSeriesFile) throws IOException {
+    if (intervalMs <= 0) {
+      throw new IllegalArgumentException("Report interval must be positive");
+    }
+    this.intervalMs = intervalMs;
+    if (timeSeriesFile != null) {
+      File dir = timeSeriesFile.getAbsoluteFile().getParentFile();
+      if (!dir.exists() && !dir.mkdirs()) {
+        throw new IOException("Could not create " + dir);
+      }
+      out = Files.newBufferedWriter(timeSeriesFile.toPath(), StandardCharsets.UTF_8);
+      out.write(CSV_HEADER);
+      out.newLine();
+    } else {
+      out = null;
+    }
+    lastSent = Metrics.messagesSent.sum();
+    lastFailures = Metrics.sendFailures.sum();
+    lastLostAcks = Metrics.lostAcks.sum();
+    lastReconnections = Metrics.reconnections.get();
+  }
+
+  /**
+   * Reports the given phase from now on, after closing the previous phase with a row for its last partial interval.
+   * Acks are counted by the recorder they land in, so stragglers of the previous phase are not counted.
+   */
+  public synchronized void phase(String name, LatencyRecorder phaseRecorder) {
+    tick();
+    phase = name;
+    recorder = phaseRecorder;
+    lastLatencies = phaseRecorder.totalSnapshot();
+    if (task == null) {
+      task = TimerWheel.shared().scheduleAtFixedRate(this::tick, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  synchronized void tick() {
+    if (recorder == null) {
+      return;
+    }
+    LatencyHistogram latencies = recorder.totalSnapshot();
+    LatencyHistogram interval = latencies.since(lastLatencies);
+    long sent = Metrics.messagesSent.sum();
+    long failures = Metrics.sendFailures.sum();
+    long lostAcks = Metrics.lostAcks.sum();
+    long reconnections = Metrics.reconnections.get();
+    long now = System.nanoTime();
+    long elapsedMs = TimeUnit.NANOSECONDS.toMillis(now - startNanos);
+    long p50 = interval.getValueAtPercentile(50);
+    long p99 = interval.getValueAtPercentile(99);
+    long max = interval.getMax();
+//    Rates use the actual time since the last tick, which can run late on a busy machine
+    double perSecond = 1e9 / Math.max(1, now - lastTickNanos);
+
+    System.out.printf("[%6.1fs] %-12s sent %,9.0f/s  acked %,9.0f/s  p50 %,7d us  p99 %,8d us  max %,8d us"
+            + "  failed %d  lost %d  reconnects %d%n", elapsedMs / 1000.0, phase, (sent - lastSent) * perSecond,
+        interval.getTotalCount() * perSecond, p50, p99, max, failures - lastFailures, lostAcks - lastLostAcks,
+        reconnections - lastReconnections);
+    if (out != null) {
+      try {
+        out.write(System.currentTimeMillis() + "," + elapsedMs + "," + phase + "," + (sent - lastSent) + ","
+            + interval.getTotalCount() + "," + (failures - lastFailures) + "," + (lostAcks - lastLostAcks) + ","
+            + (reconnections - lastReconnections) + "," + p50 + "," + p99 + "," + max);
+        out.newLine();
+        out.flush();
+      } catch (IOException e) {
+        System.err.println("Error writing time series: " + e.getMessage());
+      }
+    }
+    lastLatencies = latencies;
+    lastTickNanos = now;
+    lastSent = sent;
+    lastFailures = failures;
+    lastLostAcks = lostAcks;
+    lastReconnections = reconnections;
+  }
+
+  /**
+   * Reports the partial interval since the last tick, so the series adds up to the whole run, then stops the ticks
+   * and closes the time series.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (task != null) {
+      task.cancel();
+    }
+    tick();
+    recorder = null;
+    if (out != null) {
+      out.close();
+    }
+  }
+}
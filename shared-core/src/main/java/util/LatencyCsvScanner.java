@@ -0,0 +1,316 @@
+package util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import model.MessageType;
+
+/**
+ * Reads the latency CSVs written by {@link CSVWriter} (timestamp,messageType,latencyMicros,statusCode,roomId) into a
+ * {@link LatencyRecorder.Snapshot}.
+ *
+ * {@link #readStreaming} goes line by line through a BufferedReader and String.split, one thread for all files.
+ * {@link #readMapped} memory-maps every file, cuts it into line-aligned chunks and parses the chunks in parallel on a
+ * ForkJoinPool straight from the mapped bytes: latency and room id are parsed as numbers, the message type is matched
+ * by its bytes, and no String is built per row except for rooms with non-numeric or large ids. Each chunk records
+ * into its own histograms and the chunks are merged as the fork-join tasks complete, so memory stays fixed however
+ * many rows there are, and percentiles are read from the merged histograms without sorting anything.
+ *
+ * Blank lines are ignored; a row is counted as skipped when it has fewer than five fields or a latency that is not a
+ * non-negative integer.
+ */
+public final class LatencyCsvScanner {
+
+//  Chunk length; a chunk also maps up to MAX_LINE bytes past its end for the line it finishes
+  private static final long CHUNK_BYTES = 64L << 20;
+  private static final int MAX_LINE = 4096;
+  private static final int CACHED_ROOMS = 1024;
+  private static final String[] ROOM_IDS = new String[CACHED_ROOMS];
+  private static final byte[][] TYPE_NAMES = new byte[MessageType.values().length][];
+
+  static {
+    for (int i = 0; i < CACHED_ROOMS; i++) {
+      ROOM_IDS[i] = Integer.toString(i);
+    }
+    for (MessageType type : MessageType.values()) {
+      TYPE_NAMES[type.ordinal()] = type.name().getBytes(StandardCharsets.US_ASCII);
+    }
+  }
+
+  private LatencyCsvScanner() {}
+
+  /**
+   * Rows parsed from a set of files and their latency breakdowns.
+   */
+  public static final class Result {
+    private final LatencyRecorder.Snapshot snapshot;
+    private final long rows;
+    private final long skipped;
+
+    Result(LatencyRecorder.Snapshot snapshot, long rows, long skipped) {
+      this.snapshot = snapshot;
+      this.rows = rows;
+      this.skipped = skipped;
+    }
+
+    Result add(Result other) {
+      return new Result(snapshot.add(other.snapshot), rows + other.rows, skipped + other.skipped);
+    }
+
+    public LatencyRecorder.Snapshot getSnapshot() {
+      return snapshot;
+    }
+
+    public long getRows() {
+      return rows;
+    }
+
+    public long getSkipped() {
+      return skipped;
+    }
+  }
+
+  public static Result readStreaming(List<Path> files) throws IOException {
+    LatencyRecorder recorder = new LatencyRecorder();
+    long rows = 0;
+    long skipped = 0;
+    for (Path file : files) {
+      try (BufferedReader br = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+        String line = br.readLine(); // Skip header
+        while ((line = br.readLine()) != null) {
+          if (line.isEmpty()) {
+            continue;
+          }
+          String[] values = line.split(",");
+          long latency = values.length < 5 ? -1 : parseLatency(values[2]);
+          if (latency < 0) {
+            skipped++;
+            continue;
+          }
+          recorder.record(values[4], parseType(values[1]), latency);
+          rows++;
+        }
+      }
+    }
+    return new Result(recorder.snapshot(), rows, skipped);
+  }
+
+  /**
+   * @param parallelism fork-join worker threads; chunks of all files are spread over them
+   */
+  public static Result readMapped(List<Path> files, int parallelism) throws IOException {
+    List<Chunk> chunks = new ArrayList<>();
+    for (Path file : files) {
+      long size = Files.size(file);
+      for (long start = 0; start < size; start += CHUNK_BYTES) {
+        chunks.add(new Chunk(file, start, Math.min(size, start + CHUNK_BYTES), size));
+      }
+    }
+    if (chunks.isEmpty()) {
+      return new Result(new LatencyRecorder.Snapshot(), 0, 0);
+    }
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      return pool.invoke(new ScanTask(chunks, 0, chunks.size()));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Splits its range of chunks in halves until one chunk is left, then parses it.
+   */
+  private static final class ScanTask extends RecursiveTask<Result> {
+    private final List<Chunk> chunks;
+    private final int from;
+    private final int to;
+
+    ScanTask(List<Chunk> chunks, int from, int to) {
+      this.chunks = chunks;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected Result compute() {
+      if (to - from == 1) {
+        try {
+          return chunks.get(from).scan();
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+      int mid = (from + to) >>> 1;
+      ScanTask left = new ScanTask(chunks, from, mid);
+      left.fork();
+      Result right = new ScanTask(chunks, mid, to).compute();
+      return left.join().add(right);
+    }
+  }
+
+  /**
+   * Byte range [start, end) of a file. The chunk owns every line that starts inside the range; the line in progress
+   * at start belongs to the previous chunk, and the line in progress at end is finished from the extra mapped bytes.
+   */
+  private static final class Chunk {
+    private final Path file;
+    private final long start;
+    private final long end;
+    private final long fileSize;
+
+    Chunk(Path file, long start, long end, long fileSize) {
+      this.file = file;
+      this.start = start;
+      this.end = end;
+      this.fileSize = fileSize;
+    }
+
+    Result scan() throws IOException {
+//      One byte before start tells whether a line begins exactly at start
+      long mapStart = Math.max(0, start - 1);
+      long mapEnd = Math.min(fileSize, end + MAX_LINE);
+      MappedByteBuffer buf;
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        buf = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+      }
+      int limit = (int) (mapEnd - mapStart);
+      int ownedEnd = (int) (end - mapStart);
+      int pos;
+      if (start == 0) {
+        pos = nextLine(buf, 0, limit); // Skip header
+      } else {
+        pos = buf.get(0) == '\n' ? 1 : nextLine(buf, 1, limit);
+      }
+
+      LatencyRecorder recorder = new LatencyRecorder();
+      int[] commas = new int[4];
+      long rows = 0;
+      long skipped = 0;
+      while (pos < ownedEnd) {
+        int lineEnd = pos;
+        while (lineEnd < limit && buf.get(lineEnd) != '\n') {
+          lineEnd++;
+        }
+        int contentEnd = lineEnd > pos && buf.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+        if (contentEnd > pos) {
+          if (parseRow(buf, pos, contentEnd, commas, recorder)) {
+            rows++;
+          } else {
+            skipped++;
+          }
+        }
+        pos = lineEnd + 1;
+      }
+      return new Result(recorder.snapshot(), rows, skipped);
+    }
+  }
+
+  private static int nextLine(MappedByteBuffer buf, int pos, int limit) {
+    while (pos < limit && buf.get(pos) != '\n') {
+      pos++;
+    }
+    return pos + 1;
+  }
+
+//  Parses one row from [from, to) and records it; false if it is malformed. commas is scratch space for the field ends
+  private static boolean parseRow(MappedByteBuffer buf, int from, int to, int[] commas, LatencyRecorder recorder) {
+    int found = 0;
+    for (int i = from; i < to && found < 4; i++) {
+      if (buf.get(i) == ',') {
+        commas[found++] = i;
+      }
+    }
+    if (found < 4) {
+      return false;
+    }
+    long latency = parseLong(buf, commas[1] + 1, commas[2]);
+    if (latency < 0) {
+      return false;
+    }
+    MessageType type = matchType(buf, commas[0] + 1, commas[1]);
+//    Like split(","), the room is the text up to the next comma
+    int roomEnd = commas[3] + 1;
+    while (roomEnd < to && buf.get(roomEnd) != ',') {
+      roomEnd++;
+    }
+    if (roomEnd == commas[3] + 1) {
+      return false;
+    }
+    recorder.record(roomId(buf, commas[3] + 1, roomEnd), type, latency);
+    return true;
+  }
+
+//  Non-negative decimal in [from, to), or -1
+  private static long parseLong(MappedByteBuffer buf, int from, int to) {
+    if (from >= to || to - from > 18) {
+      return -1;
+    }
+    long value = 0;
+    for (int i = from; i < to; i++) {
+      int digit = buf.get(i) - '0';
+      if (digit < 0 || digit > 9) {
+        return -1;
+      }
+      value = value * 10 + digit;
+    }
+    return value;
+  }
+
+  private static MessageType matchType(MappedByteBuffer buf, int from, int to) {
+    MessageType[] types = MessageType.values();
+    for (int t = 0; t < TYPE_NAMES.length; t++) {
+      byte[] name = TYPE_NAMES[t];
+      if (name.length == to - from) {
+        int i = 0;
+        while (i < name.length && buf.get(from + i) == name[i]) {
+          i++;
+        }
+        if (i == name.length) {
+          return types[t];
+        }
+      }
+    }
+    return null;
+  }
+
+  private static String roomId(MappedByteBuffer buf, int from, int to) {
+    long id = parseLong(buf, from, to);
+    if (id >= 0 && id < CACHED_ROOMS && (to - from == 1 || buf.get(from) != '0')) {
+      return ROOM_IDS[(int) id];
+    }
+    byte[] bytes = new byte[to - from];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = buf.get(from + i);
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static long parseLatency(String value) {
+    try {
+      long latency = Long.parseLong(value);
+      return latency < 0 ? -1 : latency;
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  private static MessageType parseType(String value) {
+    try {
+      return MessageType.valueOf(value);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,200 @@
+package util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-memory log-linear histogram of non-negative long values, in the style of HdrHistogram.
+ *
+ * Values below 2^SUB_BUCKET_BITS are counted exactly. Above that, every power-of-two range is split into
+ * 2^(SUB_BUCKET_BITS - 1) equal sub-buckets, so any recorded value is reported within 1/64 (about 1.6%) of its true
+ * value while the whole long range fits in under 4k counters (~30 KB).
+ *
+ * A histogram has a single writer: {@link #record} does a plain read and an ordered write, so another thread can
+ * read or merge it at any time and sees every count up to some recent point. {@link LatencyRecorder} gives each
+ * recording thread its own histogram and merges them on read.
+ */
+public final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 7;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >> 1;
+//  Highest bucket shift is reached by Long.MAX_VALUE (most significant bit 62)
+  private static final int MAX_SHIFT = 62 - (SUB_BUCKET_BITS - 1);
+  private static final int LENGTH = (MAX_SHIFT + 2) * SUB_BUCKET_HALF;
+
+  private final AtomicLongArray counts = new AtomicLongArray(LENGTH);
+//  Single-writer summary fields; volatile so merges on other threads see them
+  private volatile long totalCount;
+  private volatile long sum;
+  private volatile long min = Long.MAX_VALUE;
+  private volatile long max;
+
+  /**
+   * Records one value. Must only be called by the histogram's owning thread; negative values are recorded as 0.
+   */
+  public void record(long value) {
+    long v = Math.max(0, value);
+    int index = indexOf(v);
+    counts.lazySet(index, counts.get(index) + 1);
+    sum += v;
+    if (v < min) {
+      min = v;
+    }
+    if (v > max) {
+      max = v;
+    }
+    totalCount++;
+  }
+
+  /**
+   * Adds another histogram's counts into this one. This histogram must not be recorded into concurrently.
+   */
+  public void add(LatencyHistogram other) {
+    long otherCount = other.totalCount;
+    if (otherCount == 0) {
+      return;
+    }
+    for (int i = 0; i < LENGTH; i++) {
+      long c = other.counts.get(i);
+      if (c != 0) {
+        counts.lazySet(i, counts.get(i) + c);
+      }
+    }
+    sum += other.sum;
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+    totalCount += otherCount;
+  }
+
+  /**
+   * Values recorded since an earlier copy of the same histogram was taken, e.g. the last second of a phase.
+   * The count is summed from the counters rather than taken from totalCount, so a copy made while the writer was
+   * mid-record cannot make the two disagree; min and max are the bounds of the lowest and highest non-empty counter.
+   */
+  public LatencyHistogram since(LatencyHistogram earlier) {
+    LatencyHistogram delta = new LatencyHistogram();
+    long n = 0;
+    int lowest = -1;
+    int highest = -1;
+    for (int i = 0; i < LENGTH; i++) {
+      long c = counts.get(i) - earlier.counts.get(i);
+      if (c > 0) {
+        delta.counts.lazySet(i, c);
+        n += c;
+        if (lowest < 0) {
+          lowest = i;
+        }
+        highest = i;
+      }
+    }
+    if (n > 0) {
+      delta.sum = Math.max(0, sum - earlier.sum);
+      delta.min = lowest == 0 ? 0 : highestValueAt(lowest - 1) + 1;
+      delta.max = Math.min(highestValueAt(highest), max);
+      delta.totalCount = n;
+    }
+    return delta;
+  }
+
+  /**
+   * Writes the histogram compactly (summary fields plus the non-zero counters), e.g. to ship it to another process.
+   */
+  public void writeTo(DataOutput out) throws IOException {
+    long n = totalCount;
+    out.writeLong(n);
+    out.writeLong(sum);
+    out.writeLong(min);
+    out.writeLong(max);
+    int used = 0;
+    for (int i = 0; i < LENGTH; i++) {
+      if (counts.get(i) != 0) {
+        used++;
+      }
+    }
+    out.writeInt(used);
+    for (int i = 0; i < LENGTH && used > 0; i++) {
+      long c = counts.get(i);
+      if (c != 0) {
+        out.writeShort(i);
+        out.writeLong(c);
+        used--;
+      }
+    }
+  }
+
+//  Reads a histogram written by writeTo
+  public static LatencyHistogram readFrom(DataInput in) throws IOException {
+    LatencyHistogram histogram = new LatencyHistogram();
+    long n = in.readLong();
+    histogram.sum = in.readLong();
+    histogram.min = in.readLong();
+    histogram.max = in.readLong();
+    int used = in.readInt();
+    for (int k = 0; k < used; k++) {
+      int index = in.readUnsignedShort();
+      if (index >= LENGTH) {
+        throw new IOException("Histogram counter index out of range: " + index);
+      }
+      histogram.counts.lazySet(index, in.readLong());
+    }
+    histogram.totalCount = n;
+    return histogram;
+  }
+
+  static int indexOf(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+    int shift = (63 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1);
+    return (shift << (SUB_BUCKET_BITS - 1)) + (int) (value >>> shift);
+  }
+
+//  Largest value that maps to the same counter as the given index
+  static long highestValueAt(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+    int shift = (index >> (SUB_BUCKET_BITS - 1)) - 1;
+    long sub = (index & (SUB_BUCKET_HALF - 1)) + SUB_BUCKET_HALF;
+    return ((sub + 1) << shift) - 1;
+  }
+
+  public long getTotalCount() {
+    return totalCount;
+  }
+
+  public double getMean() {
+    long n = totalCount;
+    return n == 0 ? 0 : (double) sum / n;
+  }
+
+  public long getMin() {
+    return totalCount == 0 ? 0 : min;
+  }
+
+  public long getMax() {
+    return max;
+  }
+
+  /**
+   * Value at the given percentile (0-100), reported as the top of its sub-bucket and capped at the recorded max.
+   */
+  public long getValueAtPercentile(double percentile) {
+    long n = totalCount;
+    if (n == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(Math.min(100.0, percentile) / 100.0 * n));
+    long seen = 0;
+    for (int i = 0; i < LENGTH; i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        return Math.min(highestValueAt(i), max);
+      }
+    }
+    return max;
+  }
+}
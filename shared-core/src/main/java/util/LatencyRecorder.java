@@ -0,0 +1,167 @@
+package util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import model.MessageType;
+
+/**
+ * Lock-free latency recorder with overall, per-room and per-message-type breakdowns.
+ *
+ * Each recording thread (the WebSocket container threads that receive acks) gets its own set of
+ * {@link LatencyHistogram}s, so recording never contends with other threads. {@link #snapshot()} merges all of them
+ * and can be called at any time, during a phase for live numbers or after it for the final report.
+ * Memory is fixed per thread and key, independent of the number of messages.
+ */
+public final class LatencyRecorder {
+
+  private final CopyOnWriteArrayList<ThreadRecorder> recorders = new CopyOnWriteArrayList<>();
+  private final ThreadLocal<ThreadRecorder> local = ThreadLocal.withInitial(() -> {
+    ThreadRecorder recorder = new ThreadRecorder();
+    recorders.add(recorder);
+    return recorder;
+  });
+
+  /**
+   * Records one latency for the calling thread.
+   * @param roomId room the message was sent to, may be null
+   * @param type   message type, may be null
+   */
+  public void record(String roomId, MessageType type, long latency) {
+    ThreadRecorder recorder = local.get();
+    recorder.total.record(latency);
+    if (roomId != null) {
+      recorder.byRoom.computeIfAbsent(roomId, k -> new LatencyHistogram()).record(latency);
+    }
+    if (type != null) {
+      recorder.byType[type.ordinal()].record(latency);
+    }
+  }
+
+  /**
+   * Merges every thread's histograms into a new, independent snapshot.
+   */
+  public Snapshot snapshot() {
+    Snapshot snapshot = new Snapshot();
+    for (ThreadRecorder recorder : recorders) {
+      snapshot.merge(recorder.total, recorder.byRoom, recorder.byType);
+    }
+    return snapshot;
+  }
+
+  /**
+   * Merges only the overall histograms, without the room and type breakdowns; cheap enough to call every second.
+   */
+  public LatencyHistogram totalSnapshot() {
+    LatencyHistogram total = new LatencyHistogram();
+    for (ThreadRecorder recorder : recorders) {
+      total.add(recorder.total);
+    }
+    return total;
+  }
+
+  /**
+   * Histograms owned by one recording thread. The room map is concurrent only so snapshot() can iterate it.
+   */
+  private static final class ThreadRecorder {
+    private final LatencyHistogram total = new LatencyHistogram();
+    private final Map<String, LatencyHistogram> byRoom = new ConcurrentHashMap<>();
+    private final LatencyHistogram[] byType = new LatencyHistogram[MessageType.values().length];
+
+    ThreadRecorder() {
+      for (int i = 0; i < byType.length; i++) {
+        byType[i] = new LatencyHistogram();
+      }
+    }
+  }
+
+  /**
+   * Merged, read-only view of a recorder. Snapshots can be combined, e.g. to report a run made of several phases.
+   */
+  public static final class Snapshot {
+    private final LatencyHistogram total = new LatencyHistogram();
+    private final Map<String, LatencyHistogram> byRoom = new TreeMap<>(Snapshot::compareRoomIds);
+    private final Map<MessageType, LatencyHistogram> byType = new EnumMap<>(MessageType.class);
+
+    private void merge(LatencyHistogram otherTotal, Map<String, LatencyHistogram> otherRooms,
+        LatencyHistogram[] otherTypes) {
+      total.add(otherTotal);
+      for (Map.Entry<String, LatencyHistogram> entry : otherRooms.entrySet()) {
+        byRoom.computeIfAbsent(entry.getKey(), k -> new LatencyHistogram()).add(entry.getValue());
+      }
+      MessageType[] types = MessageType.values();
+      for (int i = 0; i < otherTypes.length; i++) {
+        if (otherTypes[i].getTotalCount() > 0) {
+          byType.computeIfAbsent(types[i], k -> new LatencyHistogram()).add(otherTypes[i]);
+        }
+      }
+    }
+
+//    Adds another snapshot's counts into this one
+    public Snapshot add(Snapshot other) {
+      LatencyHistogram[] types = new LatencyHistogram[MessageType.values().length];
+      for (MessageType type : MessageType.values()) {
+        types[type.ordinal()] = other.byType.getOrDefault(type, new LatencyHistogram());
+      }
+      merge(other.total, other.byRoom, types);
+      return this;
+    }
+
+    /**
+     * Writes the snapshot with all its breakdowns, so snapshots from several processes can be merged in one.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+      total.writeTo(out);
+      out.writeInt(byRoom.size());
+      for (Map.Entry<String, LatencyHistogram> entry : byRoom.entrySet()) {
+        out.writeUTF(entry.getKey());
+        entry.getValue().writeTo(out);
+      }
+      out.writeInt(byType.size());
+      for (Map.Entry<MessageType, LatencyHistogram> entry : byType.entrySet()) {
+        out.writeUTF(entry.getKey().name());
+        entry.getValue().writeTo(out);
+      }
+    }
+
+//    Reads a snapshot written by writeTo
+    public static Snapshot readFrom(DataInput in) throws IOException {
+      Snapshot snapshot = new Snapshot();
+      snapshot.total.add(LatencyHistogram.readFrom(in));
+      int rooms = in.readInt();
+      for (int i = 0; i < rooms; i++) {
+        snapshot.byRoom.put(in.readUTF(), LatencyHistogram.readFrom(in));
+      }
+      int types = in.readInt();
+      for (int i = 0; i < types; i++) {
+        snapshot.byType.put(MessageType.valueOf(in.readUTF()), LatencyHistogram.readFrom(in));
+      }
+      return snapshot;
+    }
+
+    public LatencyHistogram getTotal() {
+      return total;
+    }
+
+//    Rooms in numeric order when the ids are numbers
+    public Map<String, LatencyHistogram> getByRoom() {
+      return byRoom;
+    }
+
+    public Map<MessageType, LatencyHistogram> getByType() {
+      return byType;
+    }
+
+    private static int compareRoomIds(String a, String b) {
+      if (a.length() != b.length() && a.chars().allMatch(Character::isDigit) && b.chars().allMatch(Character::isDigit)) {
+        return Integer.compare(a.length(), b.length());
+      }
+      return a.compareTo(b);
+    }
+  }
+}
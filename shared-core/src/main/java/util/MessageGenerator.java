@@ -35,6 +35,20 @@ public class MessageGenerator {
   }
 
   private static final Random r = new Random();
+//  Rooms messages are addressed to; a distributed worker narrows this to the rooms it was assigned
+  private static volatile int firstRoom = 1;
+  private static volatile int roomCount = 20;
+
+  /**
+   * Restricts generated messages to rooms firstRoom .. firstRoom + roomCount - 1. Call before generating.
+   */
+  public static void setRoomRange(int firstRoom, int roomCount) {
+    if (firstRoom < 1 || roomCount < 1) {
+      throw new IllegalArgumentException("Invalid room range " + firstRoom + " + " + roomCount);
+    }
+    MessageGenerator.firstRoom = firstRoom;
+    MessageGenerator.roomCount = roomCount;
+  }
 
   /**
    * Random Client Message generator
@@ -43,7 +57,7 @@ public class MessageGenerator {
   public static ClientMessage generateMessage() {
     String userId = String.valueOf(r.nextInt(100000) + 1);
     String username = "user" + userId;
-    String roomId = String.valueOf(r.nextInt(20) + 1);
+    String roomId = String.valueOf(r.nextInt(roomCount) + firstRoom);
     String message = randomMsg.get(r.nextInt(50));
     String timestamp = Instant.now().toString();
     int msgTypePicker = r.nextInt(100);
@@ -1,6 +1,5 @@
 package util;
 
-import client.ChatClient;
 import client.ConnectionManager;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
@@ -8,19 +7,23 @@ import model.ClientMessage;
 
 /**
  * MessageSender serves as the "Consumer" in a Producer-Consumer threading model.
- * It is responsible for dequeuing messages from the buffer and dispatching them
- * via established WebSocket connections.
+ * It is responsible for taking messages from a {@link MessageSource} (the shared buffer by default) and dispatching
+ * them via established WebSocket connections.
  */
 
 public class MessageSender implements Runnable {
 
-  private final BlockingQueue<ClientMessage> messagesQueue;
+  private final MessageSource messageSource;
   private final CountDownLatch producerLatch;
   private final int taskCount;
 
   public MessageSender(BlockingQueue<ClientMessage> messagesQueue,
       CountDownLatch producerLatch, int taskCount) {
-    this.messagesQueue = messagesQueue;
+    this(MessageSource.of(messagesQueue), producerLatch, taskCount);
+  }
+
+  public MessageSender(MessageSource messageSource, CountDownLatch producerLatch, int taskCount) {
+    this.messageSource = messageSource;
     this.producerLatch = producerLatch;
     this.taskCount = taskCount;
   }
@@ -30,12 +33,7 @@ public class MessageSender implements Runnable {
     ConnectionManager connectionManager = ConnectionManager.getInstance();
     for (int i = 0; i < taskCount; i++) {
       try {
-        ClientMessage clientMessage = messagesQueue.take();
-        String roomId = clientMessage.getRoomId();
-        ChatClient chatClient = connectionManager.getConnectionPool().get(roomId);
-        if (chatClient != null && chatClient.isOpen()) {
-          chatClient.sendMsg(clientMessage);
-        }
+        messageSource.sendNext(connectionManager, 0);
       } catch (InterruptedException e) {
         System.out.println("Thread Error");
         Thread.currentThread().interrupt();
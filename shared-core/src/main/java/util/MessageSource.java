@@ -0,0 +1,47 @@
+package util;
+
+import client.ChatClient;
+import client.ConnectionManager;
+import java.util.concurrent.BlockingQueue;
+import model.ClientMessage;
+
+/**
+ * Where sender threads get the messages they send: a queue of pre-generated {@link ClientMessage}s, a bounded ring
+ * that is filled while sending, or a {@link PayloadPool} that produces pre-encoded messages on demand.
+ */
+public interface MessageSource {
+
+  /**
+   * Produces the next message and sends it on the connection picked for its room.
+   * @param intendedSendNanos scheduled send time in open-loop runs, 0 to start the RTT at the actual send
+   * @return false if the room had no open connection and the message was skipped
+   */
+  boolean sendNext(ConnectionManager connectionManager, long intendedSendNanos) throws InterruptedException;
+
+  /**
+   * Takes messages from a queue filled by {@link BatchMessageGenerator}; blocks while the queue is empty.
+   */
+  static MessageSource of(BlockingQueue<ClientMessage> messagesQueue) {
+    return (connectionManager, intendedSendNanos) ->
+        send(connectionManager, messagesQueue.take(), intendedSendNanos);
+  }
+
+  /**
+   * Takes messages from a ring filled concurrently by {@link StreamingMessageGenerator}; waits while it is empty.
+   */
+  static MessageSource of(MpmcRingBuffer<ClientMessage> ring) {
+    return (connectionManager, intendedSendNanos) -> send(connectionManager, ring.take(), intendedSendNanos);
+  }
+
+//  Stamps the schedule time and hands the message to the connection picked for its room
+  private static boolean send(ConnectionManager connectionManager, ClientMessage clientMessage,
+      long intendedSendNanos) {
+    clientMessage.setIntendedSendNanos(intendedSendNanos);
+    ChatClient chatClient = connectionManager.selectClient(clientMessage.getRoomId());
+    if (chatClient != null && chatClient.isOpen()) {
+      chatClient.sendMsg(clientMessage);
+      return true;
+    }
+    return false;
+  }
+}
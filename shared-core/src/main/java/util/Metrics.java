@@ -1,6 +1,7 @@
 package util;
 
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * A thread-safe metrics holder for tracking system-level counters.
@@ -8,4 +9,32 @@ import java.util.concurrent.atomic.AtomicInteger;
 public final class Metrics {
   public static final AtomicInteger connections = new AtomicInteger(0);
   public static final AtomicInteger reconnections = new AtomicInteger(0);
+//  Frames delivered by the server's room fan-out, counted separately from acknowledgements
+  public static final LongAdder broadcastsReceived = new LongAdder();
+//  Sequenced broadcasts (server sequencing on) that arrived out of order, or never arrived within the reorder window
+  public static final LongAdder broadcastsReordered = new LongAdder();
+  public static final LongAdder broadcastGaps = new LongAdder();
+//  Payload bytes handed to the socket for chat messages (JSON characters or binary frame bytes)
+  public static final LongAdder bytesSent = new LongAdder();
+//  Chat messages handed to the socket, and messages dropped after their last send attempt failed
+  public static final LongAdder messagesSent = new LongAdder();
+  public static final LongAdder sendFailures = new LongAdder();
+//  Sent messages whose ack never arrived: timed out, evicted from a full pending table or orphaned by a reconnect
+  public static final LongAdder lostAcks = new LongAdder();
+
+  /**
+   * Zeroes every counter, so several load tests can run one after another in the same JVM.
+   * Only call it while no connections are open.
+   */
+  public static void reset() {
+    connections.set(0);
+    reconnections.set(0);
+    broadcastsReceived.reset();
+    broadcastsReordered.reset();
+    broadcastGaps.reset();
+    bytesSent.reset();
+    messagesSent.reset();
+    sendFailures.reset();
+    lostAcks.reset();
+  }
 }
@@ -1,5 +1,8 @@
 package util;
 
+import java.util.Map;
+import model.MessageType;
+
 /**
  * This helper class print out performance matrix
  */
@@ -19,4 +22,71 @@ public class MetricsPrintUtil {
     System.out.println("Throughput: " + String.format("%.2f", (successfulMessages / (durationMs / 1000.0))) + " msg/sec");
     System.out.println("Success rate: " + String.format("%.2f", (successfulMessages * 100.0 / messagesSent)) + "%");
   }
+
+  public static void printRateMetrics(String phaseName, PhaseExecutor.OpenLoopResult result) {
+    System.out.println("\n=== " + phaseName + " Open-Loop Rate (" + result.shape + ", target "
+        + String.format("%.0f", result.targetRate) + " msg/sec) ===");
+    System.out.println("Requested rate: " + String.format("%.2f", result.requestedRate) + " msg/sec");
+    System.out.println("Achieved send rate: " + String.format("%.2f", result.achievedRate) + " msg/sec");
+    System.out.println("Messages sent: " + result.sent + " (skipped, no open connection: " + result.skipped + ")");
+    System.out.println("Send lag behind schedule: avg " + String.format("%.2f", result.avgSendLagMs) + " ms, max "
+        + String.format("%.2f", result.maxSendLagMs) + " ms");
+  }
+
+  /**
+   * Prints the concurrency curve an auto-tuned phase explored and the concurrency it settled on.
+   */
+  public static void printAutoTune(String phaseName, ConcurrencyController controller, double phaseThroughput) {
+    int chosen = controller.getChosenLimit();
+    System.out.println("\n=== " + phaseName + " Auto-Tuned Concurrency ===");
+    System.out.println("Senders   Windows   Acks/sec   Mean p99 (us)   Relative acks/sec   Relative p99");
+    for (Map.Entry<Integer, ConcurrencyController.Level> entry : controller.getCurve().entrySet()) {
+      ConcurrencyController.Level level = entry.getValue();
+      System.out.printf("%7d %9d %10.0f %15d %19.2f %14.2f%s%n", entry.getKey(), level.getWindows(),
+          level.getMeanThroughput(), level.getMeanP99(), level.getRelativeThroughput(), level.getRelativeP99(),
+          entry.getKey() == chosen ? "   <- knee" : "");
+    }
+    ConcurrencyController.Level knee = controller.getCurve().get(chosen);
+    System.out.println("Chosen concurrency: " + chosen + " senders"
+        + (knee == null ? "" : String.format(" (%.2fx the long-term ack rate there)", knee.getRelativeThroughput())));
+    System.out.println("Final limit: " + controller.getLimit() + " senders");
+    System.out.println("Phase throughput: " + String.format("%.2f", phaseThroughput) + " msg/sec");
+  }
+
+  /**
+   * Prints overall latency percentiles followed by per-room and per-message-type breakdowns.
+   */
+  public static void printLatencyReport(String title, LatencyRecorder.Snapshot snapshot, String unit) {
+    LatencyHistogram total = snapshot.getTotal();
+    System.out.println("\n===========================================");
+    System.out.println("       " + title);
+    System.out.println("===========================================");
+    if (total.getTotalCount() == 0) {
+      System.out.println("No latency samples recorded.");
+      return;
+    }
+    System.out.printf("Total Messages Processed: %,d%n", total.getTotalCount());
+    System.out.printf("Mean Response Time:       %.2f %s%n", total.getMean(), unit);
+    System.out.printf("Median Response Time:     %d %s%n", total.getValueAtPercentile(50), unit);
+    System.out.printf("95th Percentile (P95):    %d %s%n", total.getValueAtPercentile(95), unit);
+    System.out.printf("99th Percentile (P99):    %d %s%n", total.getValueAtPercentile(99), unit);
+    System.out.printf("99.9th Percentile (P99.9): %d %s%n", total.getValueAtPercentile(99.9), unit);
+    System.out.printf("Min Response Time:        %d %s%n", total.getMin(), unit);
+    System.out.printf("Max Response Time:        %d %s%n", total.getMax(), unit);
+
+    System.out.println("\n--- Per Room (messages, p50 / p99 / max " + unit + ") ---");
+    for (Map.Entry<String, LatencyHistogram> entry : snapshot.getByRoom().entrySet()) {
+      LatencyHistogram h = entry.getValue();
+      System.out.printf("Room %-5s: %d msgs, %d / %d / %d%n", entry.getKey(), h.getTotalCount(),
+          h.getValueAtPercentile(50), h.getValueAtPercentile(99), h.getMax());
+    }
+
+    System.out.println("\n=== Message Type Distribution (p50 / p99 / max " + unit + ") ===");
+    for (Map.Entry<MessageType, LatencyHistogram> entry : snapshot.getByType().entrySet()) {
+      LatencyHistogram h = entry.getValue();
+      System.out.printf("%-10s: %d messages (%.2f%%), %d / %d / %d%n", entry.getKey(), h.getTotalCount(),
+          h.getTotalCount() * 100.0 / total.getTotalCount(), h.getValueAtPercentile(50),
+          h.getValueAtPercentile(99), h.getMax());
+    }
+  }
 }
@@ -0,0 +1,148 @@
+package util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded lock-free multi-producer multi-consumer queue (Dmitry Vyukov's array-based design).
+ *
+ * Every slot carries a sequence number that says whether it is ready to be written for lap n or read for lap n, so
+ * producers and consumers only CAS their own cursor and never take a lock. {@link #put} and {@link #take} add
+ * backpressure on top: a producer facing a full ring, or a consumer facing an empty one, spins briefly, then yields,
+ * then parks in short intervals until the other side catches up.
+ */
+public final class MpmcRingBuffer<E> {
+
+  private static final int SPINS = 100;
+  private static final int YIELDS = 200;
+  private static final long PARK_NANOS = 50_000;
+
+  private final Object[] buffer;
+  private final AtomicLongArray sequences;
+  private final int mask;
+  private final AtomicLong tail = new AtomicLong(0);
+  private final AtomicLong head = new AtomicLong(0);
+//  Times a put found the ring full / a take found it empty
+  private final LongAdder producerStalls = new LongAdder();
+  private final LongAdder consumerStalls = new LongAdder();
+
+  /**
+   * @param capacity maximum queued elements, rounded up to a power of two
+   */
+  public MpmcRingBuffer(int capacity) {
+    int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+    this.buffer = new Object[size];
+    this.sequences = new AtomicLongArray(size);
+    this.mask = size - 1;
+    for (int i = 0; i < size; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  /**
+   * Adds an element if there is room.
+   * @return false if the ring is full
+   */
+  public boolean offer(E element) {
+    long pos = tail.get();
+    while (true) {
+      int slot = (int) pos & mask;
+      long diff = sequences.get(slot) - pos;
+      if (diff == 0) {
+        if (tail.compareAndSet(pos, pos + 1)) {
+          buffer[slot] = element;
+//          Publishes the element to the consumer that reads this sequence
+          sequences.set(slot, pos + 1);
+          return true;
+        }
+      } else if (diff < 0) {
+        return false;
+      }
+      pos = tail.get();
+    }
+  }
+
+  /**
+   * Removes the oldest element.
+   * @return null if the ring is empty
+   */
+  @SuppressWarnings("unchecked")
+  public E poll() {
+    long pos = head.get();
+    while (true) {
+      int slot = (int) pos & mask;
+      long diff = sequences.get(slot) - (pos + 1);
+      if (diff == 0) {
+        if (head.compareAndSet(pos, pos + 1)) {
+          E element = (E) buffer[slot];
+          buffer[slot] = null;
+//          Frees the slot for the producer one lap ahead
+          sequences.set(slot, pos + mask + 1);
+          return element;
+        }
+      } else if (diff < 0) {
+        return null;
+      }
+      pos = head.get();
+    }
+  }
+
+//  Adds an element, waiting while the ring is full
+  public void put(E element) throws InterruptedException {
+    if (offer(element)) {
+      return;
+    }
+    producerStalls.increment();
+    int idle = 0;
+    while (!offer(element)) {
+      idle = backOff(idle);
+    }
+  }
+
+//  Removes the oldest element, waiting while the ring is empty
+  public E take() throws InterruptedException {
+    E element = poll();
+    if (element != null) {
+      return element;
+    }
+    consumerStalls.increment();
+    int idle = 0;
+    while ((element = poll()) == null) {
+      idle = backOff(idle);
+    }
+    return element;
+  }
+
+  private static int backOff(int idle) throws InterruptedException {
+    if (idle < SPINS) {
+      Thread.onSpinWait();
+    } else if (idle < YIELDS) {
+      Thread.yield();
+    } else {
+      LockSupport.parkNanos(PARK_NANOS);
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+    }
+    return idle + 1;
+  }
+
+//  Approximate number of queued elements
+  public int size() {
+    return (int) Math.max(0, Math.min(tail.get() - head.get(), mask + 1));
+  }
+
+  public int capacity() {
+    return mask + 1;
+  }
+
+  public long getProducerStalls() {
+    return producerStalls.sum();
+  }
+
+  public long getConsumerStalls() {
+    return consumerStalls.sum();
+  }
+}
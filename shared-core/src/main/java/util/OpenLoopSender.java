@@ -0,0 +1,80 @@
+package util;
+
+import client.ConnectionManager;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import model.ClientMessage;
+
+/**
+ * Open-loop counterpart of {@link MessageSender}: instead of sending as fast as possible, each thread claims the next
+ * slot of an {@link ArrivalSchedule}, waits until that time and sends. A thread that falls behind sends immediately
+ * but the message keeps its intended send time, so the delay shows up in the recorded latency.
+ */
+public class OpenLoopSender implements Runnable {
+
+  private final MessageSource messageSource;
+  private final CountDownLatch producerLatch;
+  private final ArrivalSchedule schedule;
+  private final long startNanos;
+  private final Stats stats;
+
+  public OpenLoopSender(BlockingQueue<ClientMessage> messagesQueue, CountDownLatch producerLatch,
+      ArrivalSchedule schedule, long startNanos, Stats stats) {
+    this(MessageSource.of(messagesQueue), producerLatch, schedule, startNanos, stats);
+  }
+
+  public OpenLoopSender(MessageSource messageSource, CountDownLatch producerLatch, ArrivalSchedule schedule,
+      long startNanos, Stats stats) {
+    this.messageSource = messageSource;
+    this.producerLatch = producerLatch;
+    this.schedule = schedule;
+    this.startNanos = startNanos;
+    this.stats = stats;
+  }
+
+  @Override
+  public void run() {
+    ConnectionManager connectionManager = ConnectionManager.getInstance();
+    try {
+      long slot;
+      while ((slot = schedule.next()) >= 0) {
+        long wait;
+        while ((wait = startNanos + slot - System.nanoTime()) > 0) {
+          LockSupport.parkNanos(wait);
+        }
+        stats.recordLag(-wait);
+        if (messageSource.sendNext(connectionManager, startNanos + slot)) {
+          stats.sent.increment();
+        } else {
+          stats.skipped.increment();
+        }
+      }
+    } catch (InterruptedException e) {
+      System.out.println("Thread Error");
+      Thread.currentThread().interrupt();
+    } finally {
+      stats.lastSendNanos.accumulateAndGet(System.nanoTime(), Math::max);
+      producerLatch.countDown();
+    }
+  }
+
+  /**
+   * Counters shared by all senders of one phase.
+   */
+  public static final class Stats {
+    final LongAdder sent = new LongAdder();
+    final LongAdder skipped = new LongAdder();
+    final LongAdder lagNanos = new LongAdder();
+    final LongAccumulator maxLagNanos = new LongAccumulator(Math::max, 0);
+    final AtomicLong lastSendNanos = new AtomicLong(0);
+
+    void recordLag(long lag) {
+      lagNanos.add(lag);
+      maxLagNanos.accumulate(lag);
+    }
+  }
+}
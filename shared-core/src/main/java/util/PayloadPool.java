@@ -0,0 +1,48 @@
+package util;
+
+import client.ChatClient;
+import client.ConnectionManager;
+import codec.PayloadTemplate;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Message source that generates on demand instead of materializing every message up front.
+ *
+ * A fixed pool of messages is drawn from {@link MessageGenerator} once and pre-encoded as {@link PayloadTemplate}s.
+ * Each send picks a template with ThreadLocalRandom and patches in the id and timestamp, so generation costs a
+ * random draw and a copy, never contends between sender threads, and the heap holds only the pool.
+ */
+public final class PayloadPool implements MessageSource {
+
+  private final PayloadTemplate[] templates;
+
+  public PayloadPool(int size) {
+    if (size < 1) {
+      throw new IllegalArgumentException("Payload pool needs at least one template");
+    }
+    this.templates = new PayloadTemplate[size];
+    for (int i = 0; i < size; i++) {
+      templates[i] = PayloadTemplate.of(MessageGenerator.generateMessage());
+    }
+  }
+
+//  Random template, safe to call from any number of threads
+  public PayloadTemplate next() {
+    return templates[ThreadLocalRandom.current().nextInt(templates.length)];
+  }
+
+  public int size() {
+    return templates.length;
+  }
+
+  @Override
+  public boolean sendNext(ConnectionManager connectionManager, long intendedSendNanos) {
+    PayloadTemplate template = next();
+    ChatClient chatClient = connectionManager.selectClient(template.getRoomId());
+    if (chatClient != null && chatClient.isOpen()) {
+      chatClient.sendPayload(template, intendedSendNanos);
+      return true;
+    }
+    return false;
+  }
+}
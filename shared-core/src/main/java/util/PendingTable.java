@@ -0,0 +1,97 @@
+package util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongPredicate;
+
+/**
+ * Preallocated, lock-free table from a non-negative sequence number to a long value, used by ChatClient to remember
+ * the send time of every in-flight message.
+ *
+ * Sequences on one connection are handed out in increasing order, so the table is a ring: sequence s lives in slot
+ * s mod capacity and a lookup is one index and one compare, with no hashing, boxing or allocation. A slot is only
+ * reused once capacity newer sequences have been stored; if the older entry is still there at that point it is
+ * evicted and returned by {@link #put}, since an ack that far behind is treated as lost.
+ *
+ * Writers claim a slot by CASing its key to BUSY, write the value and then publish the key; readers validate their
+ * read with a CAS of the key back to EMPTY, so a concurrent reuse of the slot can never hand them the wrong value.
+ */
+public final class PendingTable {
+
+//  Returned by put, remove when there is no matching entry
+  public static final long MISSING = Long.MIN_VALUE;
+
+  private static final long EMPTY = -1L;
+  private static final long BUSY = -2L;
+
+  private final AtomicLongArray keys;
+  private final AtomicLongArray values;
+  private final int mask;
+
+  /**
+   * @param capacity maximum in-flight sequences, rounded up to a power of two
+   */
+  public PendingTable(int capacity) {
+    int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+    this.keys = new AtomicLongArray(size);
+    this.values = new AtomicLongArray(size);
+    this.mask = size - 1;
+    for (int i = 0; i < size; i++) {
+      keys.set(i, EMPTY);
+    }
+  }
+
+  /**
+   * Stores a value for a sequence, replacing any earlier value stored for the same sequence.
+   * @return the value of an older sequence that was evicted from the slot, or {@link #MISSING}
+   */
+  public long put(long sequence, long value) {
+    int slot = (int) sequence & mask;
+    while (true) {
+      long key = keys.get(slot);
+      if (key != BUSY && keys.compareAndSet(slot, key, BUSY)) {
+        long evicted = key == EMPTY || key == sequence ? MISSING : values.get(slot);
+        values.set(slot, value);
+        keys.set(slot, sequence);
+        return evicted;
+      }
+      Thread.onSpinWait();
+    }
+  }
+
+  /**
+   * Removes a sequence.
+   * @return its value, or {@link #MISSING} if it is not in the table (already removed, swept or evicted)
+   */
+  public long remove(long sequence) {
+    int slot = (int) sequence & mask;
+    if (sequence < 0 || keys.get(slot) != sequence) {
+      return MISSING;
+    }
+    long value = values.get(slot);
+    return keys.compareAndSet(slot, sequence, EMPTY) ? value : MISSING;
+  }
+
+  /**
+   * Removes every entry whose value matches, e.g. send times older than a timeout.
+   * @return number of entries removed
+   */
+  public int removeIf(LongPredicate valueTest) {
+    int removed = 0;
+    for (int slot = 0; slot <= mask; slot++) {
+      long key = keys.get(slot);
+      if (key >= 0 && valueTest.test(values.get(slot)) && keys.compareAndSet(slot, key, EMPTY)) {
+        removed++;
+      }
+    }
+    return removed;
+  }
+
+//  Removes everything and returns how many entries there were
+  public int clear() {
+    return removeIf(value -> true);
+  }
+
+  public int capacity() {
+    return mask + 1;
+  }
+}
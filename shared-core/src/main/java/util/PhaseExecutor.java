@@ -2,6 +2,7 @@ package util;
 
 import model.ClientMessage;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Orchestrates the execution of a specific load testing phase.
@@ -9,6 +10,17 @@ import java.util.concurrent.*;
  */
 public class PhaseExecutor {
 
+//  Sender threads: a fixed platform pool by default, or one virtual thread per sender task
+  private final ThreadMode threadMode;
+
+  public PhaseExecutor() {
+    this(ThreadMode.PLATFORM);
+  }
+
+  public PhaseExecutor(ThreadMode threadMode) {
+    this.threadMode = threadMode;
+  }
+
   /**
    * Executes a phase by distributing message load across a pool of workers.
    * @param numThreads    Concurrent threads to spawn.
@@ -16,7 +28,14 @@ public class PhaseExecutor {
    * @param messagesQueue Shared queue containing the message data.
    */
   public void executePhase(int numThreads, int msgCount, BlockingQueue<ClientMessage> messagesQueue) {
-    ExecutorService taskExecutor = Executors.newFixedThreadPool(numThreads);
+    executePhase(numThreads, msgCount, MessageSource.of(messagesQueue));
+  }
+
+  /**
+   * Same as {@link #executePhase(int, int, BlockingQueue)} with messages from any source, e.g. a {@link PayloadPool}.
+   */
+  public void executePhase(int numThreads, int msgCount, MessageSource messageSource) {
+    ExecutorService taskExecutor = threadMode.newExecutor(numThreads);
     CountDownLatch producerLatch = new CountDownLatch(numThreads);
 
     // Distribute load evenly, handling remainders
@@ -25,7 +44,7 @@ public class PhaseExecutor {
 
     for (int i = 0; i < numThreads; i++) {
       int msgForThisThread = base + (i < remainder ? 1 : 0);
-      taskExecutor.execute(new MessageSender(messagesQueue, producerLatch, msgForThisThread));
+      taskExecutor.execute(new MessageSender(messageSource, producerLatch, msgForThisThread));
     }
 
     try {
@@ -39,6 +58,119 @@ public class PhaseExecutor {
     }
   }
 
+  /**
+   * Closed-loop phase whose number of active senders is tuned while it runs. maxThreads sender threads are started,
+   * but only those inside the controller's limit send; every window the ack rate and p99 of the acks recorded in it
+   * are fed to the controller, which moves the limit. The explored curve and chosen concurrency stay in the
+   * controller for the report.
+   * @param maxThreads Sender threads started; the limit never exceeds it.
+   * @param msgCount   Total messages to send in this phase.
+   * @param recorder   Recorder the phase's acks land in.
+   * @param windowMs   Length of one measurement window.
+   */
+  public void executeAutoTunedPhase(int maxThreads, int msgCount, MessageSource messageSource,
+      LatencyRecorder recorder, ConcurrencyController controller, long windowMs) {
+    ExecutorService taskExecutor = threadMode.newExecutor(maxThreads);
+    CountDownLatch producerLatch = new CountDownLatch(maxThreads);
+    AtomicInteger remaining = new AtomicInteger(msgCount);
+
+    for (int i = 0; i < maxThreads; i++) {
+      taskExecutor.execute(new AdaptiveSender(messageSource, producerLatch, remaining, controller, i));
+    }
+
+    try {
+      LatencyHistogram last = recorder.totalSnapshot();
+      long lastNanos = System.nanoTime();
+      while (!producerLatch.await(windowMs, TimeUnit.MILLISECONDS)) {
+        long now = System.nanoTime();
+        LatencyHistogram current = recorder.totalSnapshot();
+        LatencyHistogram window = current.since(last);
+        double throughput = window.getTotalCount() * 1e9 / Math.max(1, now - lastNanos);
+        long p99 = window.getValueAtPercentile(99);
+        int active = controller.getLimit();
+        int next = controller.onWindow(throughput, p99);
+        System.out.printf("Auto-tune: %,.0f acks/sec, p99 %,d us with %d senders -> %d%n", throughput, p99, active,
+            next);
+        last = current;
+        lastNanos = now;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      System.err.println("Phase execution interrupted.");
+    } finally {
+      controller.finish();
+      shutdownExecutor(taskExecutor);
+    }
+  }
+
+  /**
+   * Executes a phase open-loop: messages go out at the times given by the schedule, not as fast as threads can send.
+   * Threads only bound how many sends can be in progress at once; size it so senders keep up with the peak rate.
+   * @param numThreads    Concurrent sender threads.
+   * @param messagesQueue Shared queue containing the message data.
+   * @param schedule      Arrival schedule; its slot count is the number of messages sent.
+   */
+  public OpenLoopResult executeOpenLoopPhase(int numThreads, BlockingQueue<ClientMessage> messagesQueue,
+      ArrivalSchedule schedule) {
+    return executeOpenLoopPhase(numThreads, MessageSource.of(messagesQueue), schedule);
+  }
+
+//  Open-loop phase with messages from any source
+  public OpenLoopResult executeOpenLoopPhase(int numThreads, MessageSource messageSource, ArrivalSchedule schedule) {
+    ExecutorService taskExecutor = threadMode.newExecutor(numThreads);
+    CountDownLatch producerLatch = new CountDownLatch(numThreads);
+    OpenLoopSender.Stats stats = new OpenLoopSender.Stats();
+//    Small lead so every thread is parked on its first slot before the schedule starts
+    long startNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50);
+
+    for (int i = 0; i < numThreads; i++) {
+      taskExecutor.execute(new OpenLoopSender(messageSource, producerLatch, schedule, startNanos, stats));
+    }
+
+    try {
+      producerLatch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      System.err.println("Phase execution interrupted.");
+    } finally {
+      shutdownExecutor(taskExecutor);
+    }
+    long sent = stats.sent.sum();
+    long attempted = sent + stats.skipped.sum();
+    double elapsedSeconds = Math.max(1, stats.lastSendNanos.get() - startNanos) / 1_000_000_000.0;
+    return new OpenLoopResult(schedule.getShape(), schedule.getTargetRate(), schedule.requestedRate(),
+        sent / elapsedSeconds, sent, stats.skipped.sum(),
+        attempted == 0 ? 0 : stats.lagNanos.sum() / attempted / 1_000_000.0,
+        stats.maxLagNanos.get() / 1_000_000.0);
+  }
+
+  /**
+   * Requested vs achieved send rate of an open-loop phase. Send lag is how far behind its slot a message went out;
+   * a growing lag means the senders, not the server, were the bottleneck.
+   */
+  public static class OpenLoopResult {
+    public final ArrivalSchedule.Shape shape;
+    public final double targetRate;
+    public final double requestedRate;
+    public final double achievedRate;
+    public final long sent;
+    public final long skipped;
+    public final double avgSendLagMs;
+    public final double maxSendLagMs;
+
+    public OpenLoopResult(ArrivalSchedule.Shape shape, double targetRate, double requestedRate, double achievedRate,
+        long sent, long skipped, double avgSendLagMs, double maxSendLagMs) {
+      this.shape = shape;
+      this.targetRate = targetRate;
+      this.requestedRate = requestedRate;
+      this.achievedRate = achievedRate;
+      this.sent = sent;
+      this.skipped = skipped;
+      this.avgSendLagMs = avgSendLagMs;
+      this.maxSendLagMs = maxSendLagMs;
+    }
+  }
+
   private void shutdownExecutor(ExecutorService executor) {
     executor.shutdown();
     try {
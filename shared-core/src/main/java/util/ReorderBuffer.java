@@ -0,0 +1,121 @@
+package util;
+
+import java.util.function.Consumer;
+
+/**
+ * Restores the order of a numbered stream, such as the per-room sequence the server stamps on broadcasts.
+ *
+ * Items are released to the sink in sequence order. An item that arrives early waits in a ring of window slots
+ * (sequence s in slot s mod window) until the ones before it arrive. When an item arrives window or more ahead of
+ * the oldest missing sequence, the missing ones are given up on: they are counted as gaps and the items buffered
+ * behind them are released. Items older than the next expected sequence (duplicates, or stragglers already given
+ * up on) are counted as late and dropped.
+ *
+ * The first sequence seen starts the stream, since a connection can join a room mid-stream. Not thread-safe: one
+ * buffer per connection, fed from its message callback.
+ */
+public final class ReorderBuffer<T> {
+
+  private final Object[] slots;
+  private final int mask;
+  private final Consumer<T> sink;
+  private long expected = -1;
+  private int buffered;
+
+  private long released;
+  private long reordered;
+  private long gaps;
+  private long late;
+
+  /**
+   * @param window largest reordering distance tolerated before a missing sequence counts as a gap, rounded up to a
+   *        power of two
+   */
+  public ReorderBuffer(int window, Consumer<T> sink) {
+    int size = Integer.highestOneBit(Math.max(2, window) - 1) << 1;
+    this.slots = new Object[size];
+    this.mask = size - 1;
+    this.sink = sink;
+  }
+
+  public void offer(long sequence, T item) {
+    if (expected < 0) {
+      expected = sequence;
+    }
+    if (sequence < expected) {
+      late++;
+      return;
+    }
+    if (sequence - expected >= slots.length) {
+      skipTo(sequence - slots.length + 1);
+    }
+    int slot = (int) sequence & mask;
+    if (slots[slot] != null) {
+      late++;
+      return;
+    }
+    if (sequence != expected) {
+      reordered++;
+    }
+    slots[slot] = item;
+    buffered++;
+    drain();
+  }
+
+//  Gives up on every missing sequence below target, releasing what was buffered in between
+  private void skipTo(long target) {
+    while (expected < target) {
+      if (buffered == 0) {
+        gaps += target - expected;
+        expected = target;
+        return;
+      }
+      int slot = (int) expected & mask;
+      if (slots[slot] == null) {
+        gaps++;
+        expected++;
+      } else {
+        drain();
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void drain() {
+    int slot = (int) expected & mask;
+    while (slots[slot] != null) {
+      T item = (T) slots[slot];
+      slots[slot] = null;
+      buffered--;
+      released++;
+      expected++;
+      sink.accept(item);
+      slot = (int) expected & mask;
+    }
+  }
+
+//  Items released to the sink in order
+  public long getReleased() {
+    return released;
+  }
+
+//  Items that arrived ahead of a lower, still missing sequence
+  public long getReordered() {
+    return reordered;
+  }
+
+//  Sequences given up on after the window moved past them
+  public long getGaps() {
+    return gaps;
+  }
+
+//  Duplicates and items that arrived after their sequence was given up on
+  public long getLate() {
+    return late;
+  }
+
+//  Items waiting for a missing sequence
+  public int getBuffered() {
+    return buffered;
+  }
+}
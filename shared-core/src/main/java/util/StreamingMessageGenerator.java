@@ -0,0 +1,31 @@
+package util;
+
+import model.ClientMessage;
+
+/**
+ * Streaming counterpart of {@link BatchMessageGenerator}: generates messages into a bounded {@link MpmcRingBuffer}
+ * while the senders are already draining it. When the senders fall behind, the full ring blocks the generator, so
+ * only ring-capacity messages are ever held in memory.
+ */
+public class StreamingMessageGenerator implements Runnable {
+
+  private final MpmcRingBuffer<ClientMessage> ring;
+  private final int numMessages;
+
+  public StreamingMessageGenerator(MpmcRingBuffer<ClientMessage> ring, int numMessages) {
+    this.ring = ring;
+    this.numMessages = numMessages;
+  }
+
+  @Override
+  public void run() {
+    try {
+      for (int i = 0; i < numMessages; i++) {
+        ring.put(MessageGenerator.generateMessage());
+      }
+    } catch (InterruptedException e) {
+      System.err.println("Message generation interrupted");
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,47 @@
+package util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Which kind of thread runs sender tasks and connection handshakes.
+ *
+ * PLATFORM is the original fixed pool of OS threads. VIRTUAL gives every task its own virtual thread, so tens of
+ * thousands of logical senders or connections cost heap rather than OS threads; it needs a Java 21 runtime. The
+ * factory is looked up reflectively so the default Java 11 build still compiles; the java21 Maven profile only
+ * changes the bytecode target.
+ */
+public enum ThreadMode {
+  PLATFORM,
+  VIRTUAL;
+
+  /**
+   * Executor for up to numThreads concurrent tasks: a fixed pool for PLATFORM, one virtual thread per task for VIRTUAL.
+   * @throws IllegalStateException for VIRTUAL on a runtime without virtual threads
+   */
+  public ExecutorService newExecutor(int numThreads) {
+    if (this == PLATFORM) {
+      return Executors.newFixedThreadPool(numThreads);
+    }
+    try {
+      return (ExecutorService) virtualFactory().invoke(null);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Virtual threads need Java 21 or newer, running on "
+          + System.getProperty("java.version"), e);
+    }
+  }
+
+  public static boolean isVirtualAvailable() {
+    try {
+      virtualFactory();
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  private static Method virtualFactory() throws NoSuchMethodException {
+    return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+  }
+}
@@ -0,0 +1,84 @@
+package util;
+
+/**
+ * Measures the cost and resolution of the clocks used for latency measurement, once at startup.
+ * Every RTT sample includes two System.nanoTime() calls, so the overhead reported here is the floor of what a
+ * measured latency can mean; a coarse clock resolution shows up as latencies clustered on multiples of it.
+ */
+public final class TimerCalibration {
+
+  private static final int WARMUP_CALLS = 200_000;
+  private static final int MEASURED_CALLS = 1_000_000;
+//  Keeps the JIT from removing the timed loops
+  private static volatile long blackhole;
+
+  private final double nanoTimeOverheadNs;
+  private final long nanoTimeResolutionNs;
+  private final long currentTimeMillisStepMs;
+
+  private TimerCalibration(double nanoTimeOverheadNs, long nanoTimeResolutionNs, long currentTimeMillisStepMs) {
+    this.nanoTimeOverheadNs = nanoTimeOverheadNs;
+    this.nanoTimeResolutionNs = nanoTimeResolutionNs;
+    this.currentTimeMillisStepMs = currentTimeMillisStepMs;
+  }
+
+  /**
+   * Runs the calibration; takes a few milliseconds.
+   */
+  public static TimerCalibration run() {
+    long sink = 0;
+    for (int i = 0; i < WARMUP_CALLS; i++) {
+      sink += System.nanoTime();
+    }
+
+//    Overhead: average cost of back-to-back calls
+    long start = System.nanoTime();
+    for (int i = 0; i < MEASURED_CALLS; i++) {
+      sink += System.nanoTime();
+    }
+    double overhead = (System.nanoTime() - start) / (double) MEASURED_CALLS;
+
+//    Resolution: smallest non-zero difference between consecutive readings
+    long resolution = Long.MAX_VALUE;
+    long previous = System.nanoTime();
+    for (int i = 0; i < MEASURED_CALLS; i++) {
+      long now = System.nanoTime();
+      if (now != previous) {
+        resolution = Math.min(resolution, now - previous);
+        previous = now;
+      }
+    }
+
+//    Wall clock step: smallest observed change of currentTimeMillis, sampled over a few ticks
+    long step = Long.MAX_VALUE;
+    long last = System.currentTimeMillis();
+    for (int ticks = 0; ticks < 5; ) {
+      long now = System.currentTimeMillis();
+      if (now != last) {
+        step = Math.min(step, now - last);
+        last = now;
+        ticks++;
+      }
+    }
+    blackhole = sink;
+    return new TimerCalibration(overhead, resolution, step);
+  }
+
+  public double getNanoTimeOverheadNs() {
+    return nanoTimeOverheadNs;
+  }
+
+  public long getNanoTimeResolutionNs() {
+    return nanoTimeResolutionNs;
+  }
+
+  public long getCurrentTimeMillisStepMs() {
+    return currentTimeMillisStepMs;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("System.nanoTime() overhead %.1f ns, resolution %d ns; currentTimeMillis() step %d ms",
+        nanoTimeOverheadNs, nanoTimeResolutionNs, currentTimeMillisStepMs);
+  }
+}
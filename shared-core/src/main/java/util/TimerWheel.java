@@ -0,0 +1,321 @@
+package util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timer wheel shared by every client connection for retries, reconnects and heartbeats.
+ *
+ * One daemon thread advances the wheel once per tick. A timeout lands in bucket (deadline / tick) mod wheelSize and
+ * carries the number of full rotations left before it is due, so scheduling and cancelling are O(1) no matter how
+ * many timeouts are pending. Both only touch a lock-free queue; the wheel thread is the only one that links timeouts
+ * into or out of buckets. Timers fire up to one tick late, never early.
+ *
+ * Expired tasks run on a small shared task pool rather than the wheel thread, because a reconnect blocks in
+ * connectToServer and must not delay every other timer.
+ *
+ * Tunables (JVM system properties):
+ *   chat.client.timerTickMs   wheel resolution in milliseconds (default 10)
+ *   chat.client.timerThreads  threads running expired tasks (default 2)
+ */
+public final class TimerWheel {
+
+  private static final int WHEEL_SIZE = 512;
+//  Upper bound on new timeouts linked in per tick, so a burst of schedules cannot stall expiry
+  private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+  private static final int ST_INIT = 0;
+  private static final int ST_CANCELLED = 1;
+  private static final int ST_EXPIRED = 2;
+
+  private static volatile TimerWheel shared;
+
+  private final long tickNanos;
+  private final Bucket[] wheel = new Bucket[WHEEL_SIZE];
+  private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+  private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+  private final AtomicLong pendingCount = new AtomicLong(0);
+  private final ExecutorService taskPool;
+  private final Thread worker;
+  private final long startNanos;
+  private volatile boolean running = true;
+//  Ticks completed by the worker; read only by the worker thread
+  private long tick;
+
+  public TimerWheel(long tick, TimeUnit unit, int taskThreads, String name) {
+    this.tickNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(1), unit.toNanos(tick));
+    for (int i = 0; i < WHEEL_SIZE; i++) {
+      wheel[i] = new Bucket();
+    }
+    AtomicInteger threadCount = new AtomicInteger(0);
+    this.taskPool = Executors.newFixedThreadPool(Math.max(1, taskThreads), r -> {
+      Thread t = new Thread(r, name + "-task-" + threadCount.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+    this.startNanos = System.nanoTime();
+    this.worker = new Thread(this::run, name);
+    this.worker.setDaemon(true);
+    this.worker.start();
+  }
+
+  /**
+   * Process-wide wheel used by ChatClient and ConnectionManager, created on first use.
+   */
+  public static TimerWheel shared() {
+    TimerWheel wheel = shared;
+    if (wheel == null) {
+      synchronized (TimerWheel.class) {
+        wheel = shared;
+        if (wheel == null) {
+          wheel = new TimerWheel(Long.getLong("chat.client.timerTickMs", 10L), TimeUnit.MILLISECONDS,
+              Integer.getInteger("chat.client.timerThreads", 2), "timer-wheel");
+          shared = wheel;
+        }
+      }
+    }
+    return wheel;
+  }
+
+  /**
+   * Runs the task once after the delay.
+   * @return handle that can cancel the task before it fires
+   * @throws RejectedExecutionException if the wheel has been stopped
+   */
+  public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+    return scheduleAt(task, now() + Math.max(0, unit.toNanos(delay)));
+  }
+
+  private Timeout scheduleAt(Runnable task, long deadline) {
+    if (!running) {
+      throw new RejectedExecutionException("Timer wheel is stopped");
+    }
+    Timeout timeout = new Timeout(task, deadline);
+    pendingCount.incrementAndGet();
+    pending.add(timeout);
+    return timeout;
+  }
+
+  /**
+   * Runs the task every period after the initial delay until the returned handle is cancelled.
+   * Deadlines are derived from the first one, so a late tick does not shift later runs.
+   */
+  public Periodic scheduleAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit unit) {
+    Periodic periodic = new Periodic(task, unit.toNanos(period), now() + Math.max(0, unit.toNanos(initialDelay)));
+    periodic.next = scheduleAt(periodic, periodic.deadline);
+    return periodic;
+  }
+
+//  Nanoseconds since the wheel started, the time base of every deadline
+  private long now() {
+    return System.nanoTime() - startNanos;
+  }
+
+//  Timeouts scheduled but not yet fired or cancelled
+  public long pendingTimeouts() {
+    return pendingCount.get();
+  }
+
+  public long getTickNanos() {
+    return tickNanos;
+  }
+
+  /**
+   * Stops the wheel thread and the task pool. Timeouts still pending never fire.
+   */
+  public void stop() {
+    running = false;
+    worker.interrupt();
+    taskPool.shutdownNow();
+  }
+
+  private void run() {
+    while (running) {
+      long deadline = tickNanos * (tick + 1);
+      long sleep = deadline - now();
+      if (sleep > 0) {
+        LockSupport.parkNanos(this, sleep);
+        continue;
+      }
+      removeCancelled();
+      transferPending();
+      wheel[(int) (tick & (WHEEL_SIZE - 1))].expire(deadline);
+      tick++;
+    }
+  }
+
+  private void transferPending() {
+    for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+      Timeout timeout = pending.poll();
+      if (timeout == null) {
+        return;
+      }
+      if (timeout.state.get() != ST_INIT) {
+        continue;
+      }
+      long calculated = timeout.deadline / tickNanos;
+      timeout.remainingRounds = (calculated - tick) / WHEEL_SIZE;
+//      Already overdue: put it in the current bucket so it fires this tick
+      long ticks = Math.max(calculated, tick);
+      wheel[(int) (ticks & (WHEEL_SIZE - 1))].add(timeout);
+    }
+  }
+
+  private void removeCancelled() {
+    Timeout timeout;
+    while ((timeout = cancelled.poll()) != null) {
+      if (timeout.bucket != null) {
+        timeout.bucket.remove(timeout);
+      }
+    }
+  }
+
+  private void dispatch(Timeout timeout) {
+    pendingCount.decrementAndGet();
+    try {
+      taskPool.execute(() -> {
+        try {
+          timeout.task.run();
+        } catch (RuntimeException e) {
+          System.err.println("Timer task failed: " + e.getMessage());
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      // Task pool stopped together with the wheel
+    }
+  }
+
+  /**
+   * A single scheduled task. Cancelling is a CAS plus a queue offer; the wheel thread unlinks it on its next tick.
+   */
+  public final class Timeout {
+    private final Runnable task;
+//    Nanoseconds since the wheel started
+    private final long deadline;
+    private final AtomicInteger state = new AtomicInteger(ST_INIT);
+//    Bucket links, touched only by the wheel thread
+    private long remainingRounds;
+    private Bucket bucket;
+    private Timeout prev;
+    private Timeout next;
+
+    private Timeout(Runnable task, long deadline) {
+      this.task = task;
+      this.deadline = deadline;
+    }
+
+    /**
+     * @return true if the task had not fired yet and now never will
+     */
+    public boolean cancel() {
+      if (!state.compareAndSet(ST_INIT, ST_CANCELLED)) {
+        return false;
+      }
+      pendingCount.decrementAndGet();
+      cancelled.add(this);
+      return true;
+    }
+
+    public boolean isCancelled() {
+      return state.get() == ST_CANCELLED;
+    }
+  }
+
+  /**
+   * Handle for a fixed-rate task; each run schedules the next one before executing.
+   */
+  public final class Periodic implements Runnable {
+    private final Runnable task;
+    private final long periodNanos;
+//    Deadline of the run in progress; runs never overlap because the next one is scheduled a period later
+    private long deadline;
+    private volatile Timeout next;
+    private volatile boolean cancelled;
+
+    private Periodic(Runnable task, long periodNanos, long firstDeadline) {
+      this.task = task;
+      this.periodNanos = periodNanos;
+      this.deadline = firstDeadline;
+    }
+
+    @Override
+    public void run() {
+      if (cancelled || !running) {
+        return;
+      }
+      deadline += periodNanos;
+      next = scheduleAt(this, deadline);
+      task.run();
+    }
+
+    public void cancel() {
+      cancelled = true;
+      Timeout current = next;
+      if (current != null) {
+        current.cancel();
+      }
+    }
+  }
+
+  /**
+   * Doubly linked list of timeouts hashed to one wheel slot.
+   */
+  private final class Bucket {
+    private Timeout head;
+    private Timeout tail;
+
+    void add(Timeout timeout) {
+      timeout.bucket = this;
+      if (head == null) {
+        head = tail = timeout;
+      } else {
+        tail.next = timeout;
+        timeout.prev = tail;
+        tail = timeout;
+      }
+    }
+
+//    Fires every timeout in this slot whose rounds have run out
+    void expire(long tickDeadline) {
+      Timeout timeout = head;
+      while (timeout != null) {
+        Timeout next = timeout.next;
+        if (timeout.remainingRounds <= 0) {
+          remove(timeout);
+          if (timeout.deadline <= tickDeadline && timeout.state.compareAndSet(ST_INIT, ST_EXPIRED)) {
+            dispatch(timeout);
+          }
+        } else {
+          timeout.remainingRounds--;
+        }
+        timeout = next;
+      }
+    }
+
+    void remove(Timeout timeout) {
+      if (timeout.bucket != this) {
+        return;
+      }
+      if (timeout.prev != null) {
+        timeout.prev.next = timeout.next;
+      } else {
+        head = timeout.next;
+      }
+      if (timeout.next != null) {
+        timeout.next.prev = timeout.prev;
+      } else {
+        tail = timeout.prev;
+      }
+      timeout.prev = null;
+      timeout.next = null;
+      timeout.bucket = null;
+    }
+  }
+}